@@ -0,0 +1,99 @@
+package oth.ics.wtp.relaybackend;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+@Configuration
+@EnableScheduling
+public class AsyncConfiguration {
+
+    @Value("${relay.timeline.fanout-async:true}")
+    private boolean fanoutAsync;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    @Value("${relay.passwords.threads:0}")
+    private int passwordThreads;
+
+    @Value("${relay.passwords.queue-capacity:32}")
+    private int passwordQueueCapacity;
+
+    /**
+     * Runs timeline fan-out off the request thread. When the queue is full the posting
+     * thread does the fan-out itself, which slows authors down instead of dropping posts.
+     * With virtual threads each fan-out gets its own thread instead, and posting threads wait
+     * once 16 are running.
+     */
+    @Bean
+    public TaskExecutor timelineExecutor() {
+        if (!fanoutAsync) {
+            return new SyncTaskExecutor();
+        }
+        if (virtualThreads) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("timeline-");
+            executor.setVirtualThreads(true);
+            executor.setConcurrencyLimit(16);
+            return executor;
+        }
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("timeline-");
+        executor.setCorePoolSize(2);
+        executor.setMaxPoolSize(4);
+        executor.setQueueCapacity(10_000);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Writes live timeline events to SSE connections. A write can block on a slow client, so
+     * writes never run on request threads; with virtual threads each write gets its own thread.
+     */
+    @Bean
+    public TaskExecutor streamExecutor() {
+        if (!fanoutAsync) {
+            return new SyncTaskExecutor();
+        }
+        if (virtualThreads) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("stream-");
+            executor.setVirtualThreads(true);
+            return executor;
+        }
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("stream-");
+        executor.setCorePoolSize(4);
+        executor.setMaxPoolSize(4);
+        executor.setQueueCapacity(100_000);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Runs BCrypt off the request threads on a fixed number of threads, by default half the
+     * cores, so a login burst cannot take all CPUs. A full queue rejects the task instead of
+     * queueing more work than can finish in time. This pool stays on platform threads even in
+     * virtual-thread mode, since hashing never blocks and must stay bounded.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor passwordExecutor() {
+        int threads = passwordThreads > 0 ? passwordThreads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("password-");
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(passwordQueueCapacity);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.initialize();
+        return executor;
+    }
+}
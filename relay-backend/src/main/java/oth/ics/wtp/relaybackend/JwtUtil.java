@@ -1,47 +1,119 @@
 package oth.ics.wtp.relaybackend;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * Issues and verifies JWTs. Verified tokens are remembered by their SHA-256 digest together with
+ * subject and expiry, so a client repeating its bearer token skips signature check and claims
+ * parsing until the token expires. At most {@code relay.jwt.cache-size} tokens are remembered,
+ * least recently used first out; hits and misses are counted in {@code relay.jwt.cache}.
+ */
 @Component
 public class JwtUtil {
 
-    @Value("${jwt.secret}")
-    private String secret;
-
     private static final long EXPIRATION_MS = 7L * 24 * 60 * 60 * 1000; // 7 days
 
+    private final SecretKey key;
+    private final JwtParser parser;
+    private final MessageDigest digestPrototype;
+    private final Map<ByteBuffer, VerifiedToken> verified;
+    // A lock rather than synchronized, so contending virtual threads unmount instead of pinning
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Counter hits;
+    private final Counter misses;
+
+    public JwtUtil(@Value("${jwt.secret}") String secret,
+                   @Value("${relay.jwt.cache-size:10000}") int cacheSize,
+                   MeterRegistry meterRegistry) {
+        this.key = buildKey(secret);
+        this.parser = Jwts.parser().verifyWith(key).build();
+        try {
+            this.digestPrototype = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        this.verified = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ByteBuffer, VerifiedToken> eldest) {
+                return size() > cacheSize;
+            }
+        };
+        this.hits = Counter.builder("relay.jwt.cache").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("relay.jwt.cache").tag("result", "miss").register(meterRegistry);
+    }
+
     public String generateToken(String username) {
         return Jwts.builder()
                 .subject(username)
                 .issuedAt(new Date())
                 .expiration(new Date(System.currentTimeMillis() + EXPIRATION_MS))
-                .signWith(getKey())
+                .signWith(key)
                 .compact();
     }
 
     public String validateToken(String token) {
-        Claims claims = Jwts.parser()
-                .verifyWith(getKey())
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
+        ByteBuffer digest = digest(token);
+        VerifiedToken cached;
+        lock.lock();
+        try {
+            cached = verified.get(digest);
+        } finally {
+            lock.unlock();
+        }
+        if (cached != null && cached.expiresAtMillis() > System.currentTimeMillis()) {
+            hits.increment();
+            return cached.subject();
+        }
+        misses.increment();
+        // Also rejects a cached token that has expired meanwhile
+        Claims claims = parser.parseSignedClaims(token).getPayload();
+        Date expiration = claims.getExpiration();
+        if (expiration != null) {
+            lock.lock();
+            try {
+                verified.put(digest, new VerifiedToken(claims.getSubject(), expiration.getTime()));
+            } finally {
+                lock.unlock();
+            }
+        }
         return claims.getSubject();
     }
 
-    private SecretKey getKey() {
+    private ByteBuffer digest(String token) {
+        try {
+            MessageDigest digest = (MessageDigest) digestPrototype.clone();
+            return ByteBuffer.wrap(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static SecretKey buildKey(String secret) {
         byte[] keyBytes = secret.getBytes(StandardCharsets.UTF_8);
         if (keyBytes.length < 32) {
             keyBytes = Arrays.copyOf(keyBytes, 32);
         }
         return Keys.hmacShaKeyFor(keyBytes);
     }
+
+    private record VerifiedToken(String subject, long expiresAtMillis) {
+    }
 }
@@ -0,0 +1,73 @@
+package oth.ics.wtp.relaybackend;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.stream.Collectors;
+
+/**
+ * Finds code that pins virtual threads to their carrier, typically blocking inside
+ * {@code synchronized}. When {@code relay.threads.pinning-monitor} is on, a JFR stream
+ * reports every {@code jdk.VirtualThreadPinned} event above the threshold with the top of its
+ * stack, and counts them in {@code relay.threads.pinned}.
+ */
+@Component
+public class PinningMonitor implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(PinningMonitor.class);
+    private static final int STACK_DEPTH = 8;
+
+    private final boolean enabled;
+    private final Duration threshold;
+    private final Counter pinned;
+    private RecordingStream stream;
+
+    public PinningMonitor(MeterRegistry meterRegistry,
+                          @Value("${relay.threads.pinning-monitor:false}") boolean enabled,
+                          @Value("${relay.threads.pinning-threshold-ms:20}") long thresholdMillis) {
+        this.enabled = enabled;
+        this.threshold = Duration.ofMillis(thresholdMillis);
+        this.pinned = meterRegistry.counter("relay.threads.pinned");
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (!enabled) {
+            return;
+        }
+        stream = new RecordingStream();
+        stream.enable("jdk.VirtualThreadPinned").withThreshold(threshold).withStackTrace();
+        stream.onEvent("jdk.VirtualThreadPinned", this::report);
+        stream.startAsync();
+    }
+
+    private void report(RecordedEvent event) {
+        pinned.increment();
+        String frames = event.getStackTrace() == null ? "(no stack trace)" : event.getStackTrace().getFrames().stream()
+                .limit(STACK_DEPTH)
+                .map(PinningMonitor::format)
+                .collect(Collectors.joining("\n\tat "));
+        log.warn("Virtual thread pinned for {} ms\n\tat {}", event.getDuration().toMillis(), frames);
+    }
+
+    private static String format(RecordedFrame frame) {
+        return frame.getMethod().getType().getName() + "." + frame.getMethod().getName() + ":" + frame.getLineNumber();
+    }
+
+    @PreDestroy
+    public void close() {
+        if (stream != null) {
+            stream.close();
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package oth.ics.wtp.relaybackend;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import oth.ics.wtp.relaybackend.dtos.PageDto;
+import oth.ics.wtp.relaybackend.dtos.PostDto;
+import oth.ics.wtp.relaybackend.services.PostFragments;
+
+import java.io.IOException;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+
+/**
+ * Writes pages of posts from {@link PostFragments} instead of through Jackson, gzip-encoded when
+ * the client accepts it and {@code relay.post-cache.gzip} is on. A gzipped body's ETag is made
+ * weak, as the bytes differ from the plain body under the same tag. Every other body, including
+ * pages of anything but posts, is left to the default converters.
+ */
+public class PostPageConverter extends AbstractGenericHttpMessageConverter<PageDto<PostDto>> {
+
+    private final PostFragments postFragments;
+    private final boolean gzip;
+
+    public PostPageConverter(PostFragments postFragments, boolean gzip) {
+        super(MediaType.APPLICATION_JSON);
+        this.postFragments = postFragments;
+        this.gzip = gzip;
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return false;
+    }
+
+    @Override
+    public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    public boolean canWrite(Type type, Class<?> clazz, MediaType mediaType) {
+        return type instanceof ParameterizedType page
+                && page.getRawType() == PageDto.class
+                && page.getActualTypeArguments()[0] == PostDto.class
+                && canWrite(mediaType);
+    }
+
+    @Override
+    protected void writeInternal(PageDto<PostDto> page, Type type, HttpOutputMessage outputMessage) throws IOException {
+        outputMessage.getHeaders().add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        ServletRequestAttributes attributes = RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes current
+                ? current : null;
+        if (gzip && attributes != null && acceptsGzip(attributes.getRequest())) {
+            HttpServletResponse response = attributes.getResponse();
+            String etag = response == null ? null : response.getHeader(HttpHeaders.ETAG);
+            if (etag != null && !etag.startsWith("W/")) {
+                response.setHeader(HttpHeaders.ETAG, "W/" + etag);
+            }
+            outputMessage.getHeaders().set(HttpHeaders.CONTENT_ENCODING, "gzip");
+            postFragments.writeGzip(page, outputMessage.getBody());
+        } else {
+            postFragments.writeJson(page, outputMessage.getBody());
+        }
+    }
+
+    @Override
+    public PageDto<PostDto> read(Type type, Class<?> contextClass, HttpInputMessage inputMessage) {
+        throw notReadable(inputMessage);
+    }
+
+    @Override
+    protected PageDto<PostDto> readInternal(Class<? extends PageDto<PostDto>> clazz, HttpInputMessage inputMessage) {
+        throw notReadable(inputMessage);
+    }
+
+    // canRead is always false, so these are only reached by calling the converter directly
+    private static HttpMessageNotReadableException notReadable(HttpInputMessage inputMessage) {
+        return new HttpMessageNotReadableException("Pages of posts are only written, never read", inputMessage);
+    }
+
+    private static boolean acceptsGzip(HttpServletRequest request) {
+        String accepted = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        if (accepted == null) {
+            return false;
+        }
+        for (String coding : accepted.split(",")) {
+            String[] parts = coding.trim().split(";");
+            if (parts[0].trim().equalsIgnoreCase("gzip")) {
+                return parts.length == 1 || !parts[1].replace(" ", "").matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+}
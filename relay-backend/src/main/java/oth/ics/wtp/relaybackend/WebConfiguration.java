@@ -3,8 +3,12 @@ package oth.ics.wtp.relaybackend;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import oth.ics.wtp.relaybackend.services.PostFragments;
+
+import java.util.List;
 
 @Configuration
 public class WebConfiguration {
@@ -25,4 +29,16 @@ public class WebConfiguration {
             }
         };
     }
+
+    @Bean
+    public WebMvcConfigurer postPageConfigurer(PostFragments postFragments,
+                                               @Value("${relay.post-cache.gzip:true}") boolean gzip) {
+        return new WebMvcConfigurer() {
+            @Override
+            public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+                // Ahead of Jackson, which would otherwise take pages of posts too
+                converters.add(0, new PostPageConverter(postFragments, gzip));
+            }
+        };
+    }
 }
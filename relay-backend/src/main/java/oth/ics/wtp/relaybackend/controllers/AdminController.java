@@ -0,0 +1,58 @@
+package oth.ics.wtp.relaybackend.controllers;
+
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import oth.ics.wtp.relaybackend.dtos.AccountDeletionDto;
+import oth.ics.wtp.relaybackend.dtos.RecomputeResultDto;
+import oth.ics.wtp.relaybackend.services.AccountDeletions;
+import oth.ics.wtp.relaybackend.services.AuthService;
+import oth.ics.wtp.relaybackend.services.AuthenticatedUser;
+import oth.ics.wtp.relaybackend.services.UserStatsService;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/admin")
+public class AdminController {
+
+    private final AuthService authService;
+    private final UserStatsService userStatsService;
+    private final AccountDeletions accountDeletions;
+    private final List<String> adminUsernames;
+
+    public AdminController(AuthService authService,
+                           UserStatsService userStatsService,
+                           AccountDeletions accountDeletions,
+                           @Value("${relay.admin.usernames:}") List<String> adminUsernames) {
+        this.authService = authService;
+        this.userStatsService = userStatsService;
+        this.accountDeletions = accountDeletions;
+        this.adminUsernames = adminUsernames;
+    }
+
+    @SecurityRequirement(name = "basicAuth")
+    @PostMapping(value = "/user-stats/recompute", produces = MediaType.APPLICATION_JSON_VALUE)
+    public RecomputeResultDto recomputeUserStats(HttpServletRequest request) {
+        requireAdmin(request);
+        return new RecomputeResultDto(userStatsService.recomputeAll());
+    }
+
+    @SecurityRequirement(name = "basicAuth")
+    @GetMapping(value = "/account-deletions/{userId}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public AccountDeletionDto getAccountDeletion(@PathVariable Long userId, HttpServletRequest request) {
+        requireAdmin(request);
+        return accountDeletions.getProgress(userId);
+    }
+
+    private void requireAdmin(HttpServletRequest request) {
+        AuthenticatedUser user = authService.getPrincipal(request);
+        if (!adminUsernames.contains(user.username())) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Admin access required");
+        }
+    }
+}
@@ -6,12 +6,18 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import oth.ics.wtp.relaybackend.dtos.BatchDto;
 import oth.ics.wtp.relaybackend.dtos.CreatePostDto;
+import oth.ics.wtp.relaybackend.dtos.PageDto;
 import oth.ics.wtp.relaybackend.dtos.PostDto;
 import oth.ics.wtp.relaybackend.dtos.CommentDto;
-import oth.ics.wtp.relaybackend.entities.User;
 import oth.ics.wtp.relaybackend.services.AuthService;
+import oth.ics.wtp.relaybackend.services.AuthenticatedUser;
 import oth.ics.wtp.relaybackend.services.PostService;
+import oth.ics.wtp.relaybackend.services.TimelineStreams;
+import oth.ics.wtp.relaybackend.services.VersionStamps;
 
 import java.util.List;
 
@@ -22,10 +28,14 @@ public class PostController {
 
     private final PostService postService;
     private final AuthService authService;
+    private final TimelineStreams timelineStreams;
+    private final VersionStamps versionStamps;
 
-    public PostController(PostService postService, AuthService authService) {
+    public PostController(PostService postService, AuthService authService, TimelineStreams timelineStreams, VersionStamps versionStamps) {
         this.postService = postService;
         this.authService = authService;
+        this.timelineStreams = timelineStreams;
+        this.versionStamps = versionStamps;
     }
 
     @PostMapping(produces = MediaType.APPLICATION_JSON_VALUE, consumes = MediaType.APPLICATION_JSON_VALUE)
@@ -33,22 +43,77 @@ public class PostController {
     public PostDto createPost(
             @RequestBody CreatePostDto createPostDto,
             HttpServletRequest request) {
-        User currentUser = authService.getAuthenticatedUser(request);
-        return postService.createPost(createPostDto, currentUser.getUsername());
+        AuthenticatedUser currentUser = authService.getPrincipal(request);
+        return postService.createPost(createPostDto, currentUser.username());
     }
 
     @GetMapping(value = "/timeline", produces = MediaType.APPLICATION_JSON_VALUE)
-    public List<PostDto> getTimeline(HttpServletRequest request) {
-        User currentUser = authService.getAuthenticatedUser(request);
-        return postService.getTimelinePosts(currentUser.getUsername());
+    public PageDto<PostDto> getTimeline(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int limit,
+            HttpServletRequest request) {
+        AuthenticatedUser currentUser = authService.getPrincipal(request);
+        return postService.getTimelinePosts(currentUser.username(), cursor, limit);
+    }
+
+    @GetMapping(value = "/timeline/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamTimeline(
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId,
+            HttpServletRequest request) {
+        AuthenticatedUser currentUser = authService.getPrincipal(request);
+        return timelineStreams.subscribe(currentUser.username(), lastEventId);
+    }
+
+    @PostMapping(value = "/batch", produces = MediaType.APPLICATION_JSON_VALUE, consumes = MediaType.APPLICATION_JSON_VALUE)
+    public BatchDto<PostDto> getPosts(
+            @RequestBody List<Long> ids,
+            HttpServletRequest request) {
+        String currentUsername = authService.getAuthenticatedUsername(request).orElse(null);
+        return postService.getPosts(ids, currentUsername);
     }
 
     @GetMapping(value = "/user/{username}", produces = MediaType.APPLICATION_JSON_VALUE)
-    public List<PostDto> getUserPosts(
+    public PageDto<PostDto> getUserPosts(
             @PathVariable String username,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int limit,
+            HttpServletRequest request,
+            WebRequest webRequest) {
+        String currentUsername = authService.getAuthenticatedUsername(request).orElse(null);
+        if (webRequest.checkNotModified(versionStamps.postsTag(username, currentUsername, cursor, limit))) {
+            return null;
+        }
+        return postService.getUserPosts(username, currentUsername, cursor, limit);
+    }
+
+    @GetMapping(value = "/tag/{tag}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public PageDto<PostDto> getTagPosts(
+            @PathVariable String tag,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int limit,
+            HttpServletRequest request) {
+        String currentUsername = authService.getAuthenticatedUsername(request).orElse(null);
+        return postService.getTagPosts(tag, currentUsername, cursor, limit);
+    }
+
+    @GetMapping(value = "/search", produces = MediaType.APPLICATION_JSON_VALUE)
+    public PageDto<PostDto> searchPosts(
+            @RequestParam String q,
+            @RequestParam(defaultValue = "recent") String order,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int limit,
             HttpServletRequest request) {
         String currentUsername = authService.getAuthenticatedUsername(request).orElse(null);
-        return postService.getUserPosts(username, currentUsername);
+        return postService.searchPosts(q, order, currentUsername, cursor, limit);
+    }
+
+    @GetMapping(value = "/trending", produces = MediaType.APPLICATION_JSON_VALUE)
+    public PageDto<PostDto> getTrendingPosts(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int limit,
+            HttpServletRequest request) {
+        String currentUsername = authService.getAuthenticatedUsername(request).orElse(null);
+        return postService.getTrendingPosts(currentUsername, cursor, limit);
     }
 
     @PostMapping("/{postId}/like")
@@ -56,8 +121,8 @@ public class PostController {
     public void likePost(
             @PathVariable Long postId,
             HttpServletRequest request) {
-        User currentUser = authService.getAuthenticatedUser(request);
-        postService.likePost(postId, currentUser.getUsername());
+        AuthenticatedUser currentUser = authService.getPrincipal(request);
+        postService.likePost(postId, currentUser.username());
     }
 
     @DeleteMapping("/{postId}/like")
@@ -65,33 +130,36 @@ public class PostController {
     public void unlikePost(
             @PathVariable Long postId,
             HttpServletRequest request) {
-        User currentUser = authService.getAuthenticatedUser(request);
-        postService.unlikePost(postId, currentUser.getUsername());
+        AuthenticatedUser currentUser = authService.getPrincipal(request);
+        postService.unlikePost(postId, currentUser.username());
     }
 
     @DeleteMapping("/{postId}")
     public ResponseEntity<Void> deletePost(@PathVariable Long postId, HttpServletRequest request) {
-        User currentUser = authService.getAuthenticatedUser(request);
-        postService.deletePost(postId, currentUser.getUsername());
+        AuthenticatedUser currentUser = authService.getPrincipal(request);
+        postService.deletePost(postId, currentUser.username());
         return ResponseEntity.noContent().build();
     }
 
     @GetMapping("/{postId}/comments")
-    public List<CommentDto> getComments(@PathVariable Long postId) {
-        return postService.getCommentsForPost(postId);
+    public PageDto<CommentDto> getComments(
+            @PathVariable Long postId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int limit) {
+        return postService.getCommentsForPost(postId, cursor, limit);
     }
 
     @PostMapping("/{postId}/comments")
     @ResponseStatus(HttpStatus.CREATED)
     public CommentDto addComment(@PathVariable Long postId, @RequestBody String content, HttpServletRequest request) {
-        User currentUser = authService.getAuthenticatedUser(request);
-        return postService.addCommentToPost(postId, currentUser.getUsername(), content);
+        AuthenticatedUser currentUser = authService.getPrincipal(request);
+        return postService.addCommentToPost(postId, currentUser.username(), content);
     }
 
     @DeleteMapping("/comments/{commentId}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
     public void deleteComment(@PathVariable Long commentId, HttpServletRequest request) {
-        User currentUser = authService.getAuthenticatedUser(request);
-        postService.deleteComment(commentId, currentUser.getUsername());
+        AuthenticatedUser currentUser = authService.getPrincipal(request);
+        postService.deleteComment(commentId, currentUser.username());
     }
 }
\ No newline at end of file
@@ -0,0 +1,26 @@
+package oth.ics.wtp.relaybackend.controllers;
+
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import oth.ics.wtp.relaybackend.dtos.TrendDto;
+import oth.ics.wtp.relaybackend.services.TrendingTags;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/trends")
+public class TrendController {
+
+    private final TrendingTags trendingTags;
+
+    public TrendController(TrendingTags trendingTags) {
+        this.trendingTags = trendingTags;
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    public List<TrendDto> getTrends(
+            @RequestParam(defaultValue = "1h") String window,
+            @RequestParam(defaultValue = "10") int limit) {
+        return trendingTags.top(TrendingTags.Window.of(window), limit);
+    }
+}
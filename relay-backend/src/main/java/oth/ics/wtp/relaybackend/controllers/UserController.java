@@ -6,15 +6,21 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import oth.ics.wtp.relaybackend.JwtUtil;
+import oth.ics.wtp.relaybackend.dtos.AccountDeletionDto;
+import oth.ics.wtp.relaybackend.dtos.BatchDto;
 import oth.ics.wtp.relaybackend.dtos.CreateUserDto;
 import oth.ics.wtp.relaybackend.dtos.LoginResponseDto;
+import oth.ics.wtp.relaybackend.dtos.PageDto;
 import oth.ics.wtp.relaybackend.dtos.UserDto;
 import oth.ics.wtp.relaybackend.dtos.UserSearchDto;
 import oth.ics.wtp.relaybackend.entities.User;
 import oth.ics.wtp.relaybackend.services.AuthService;
+import oth.ics.wtp.relaybackend.services.AuthenticatedUser;
 import oth.ics.wtp.relaybackend.services.FollowService;
 import oth.ics.wtp.relaybackend.services.UserService;
+import oth.ics.wtp.relaybackend.services.VersionStamps;
 
 import java.util.List;
 
@@ -26,12 +32,14 @@ public class UserController {
     private final AuthService authService;
     private final FollowService followService;
     private final JwtUtil jwtUtil;
+    private final VersionStamps versionStamps;
 
-    public UserController(UserService userService, AuthService authService, FollowService followService, JwtUtil jwtUtil) {
+    public UserController(UserService userService, AuthService authService, FollowService followService, JwtUtil jwtUtil, VersionStamps versionStamps) {
         this.userService = userService;
         this.authService = authService;
         this.followService = followService;
         this.jwtUtil = jwtUtil;
+        this.versionStamps = versionStamps;
     }
 
     @PostMapping(value = "/register", produces = MediaType.APPLICATION_JSON_VALUE)
@@ -64,16 +72,30 @@ public class UserController {
 
     @SecurityRequirement(name = "basicAuth")
     @GetMapping(value = "/search", produces = MediaType.APPLICATION_JSON_VALUE)
-    public List<UserSearchDto> searchUsers(
+    public PageDto<UserSearchDto> searchUsers(
             @RequestParam String q,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int limit,
             HttpServletRequest request) {
         String currentUsername = authService.getAuthenticatedUsername(request).orElse(null);
-        return userService.searchUsers(q, currentUsername);
+        return userService.searchUsers(q, currentUsername, cursor, limit);
+    }
+
+    @SecurityRequirement(name = "basicAuth")
+    @PostMapping(value = "/batch", produces = MediaType.APPLICATION_JSON_VALUE, consumes = MediaType.APPLICATION_JSON_VALUE)
+    public BatchDto<UserDto> getUsers(
+            @RequestBody List<String> usernames,
+            HttpServletRequest request) {
+        String currentUsername = authService.getAuthenticatedUsername(request).orElse(null);
+        return userService.getUsers(usernames, currentUsername);
     }
 
     @SecurityRequirement(name = "basicAuth")
     @GetMapping(value = "/{username}", produces = MediaType.APPLICATION_JSON_VALUE)
-    public UserDto getUser(@PathVariable String username) {
+    public UserDto getUser(@PathVariable String username, WebRequest webRequest) {
+        if (webRequest.checkNotModified(versionStamps.profileTag(username))) {
+            return null;
+        }
         return userService.getUserByUsername(username);
     }
 
@@ -83,8 +105,8 @@ public class UserController {
     public void followUser(
             @PathVariable String username,
             HttpServletRequest request) {
-        User currentUser = authService.getAuthenticatedUser(request);
-        followService.followUser(currentUser.getUsername(), username);
+        AuthenticatedUser currentUser = authService.getPrincipal(request);
+        followService.followUser(currentUser.username(), username);
     }
 
     @SecurityRequirement(name = "basicAuth")
@@ -93,23 +115,32 @@ public class UserController {
     public void unfollowUser(
             @PathVariable String username,
             HttpServletRequest request) {
-        User currentUser = authService.getAuthenticatedUser(request);
-        followService.unfollowUser(currentUser.getUsername(), username);
+        AuthenticatedUser currentUser = authService.getPrincipal(request);
+        followService.unfollowUser(currentUser.username(), username);
     }
 
     @SecurityRequirement(name = "basicAuth")
     @GetMapping("/me")
     public UserDto getCurrentUserProfile(HttpServletRequest request) {
-        User user = authService.getAuthenticatedUser(request);
-        return userService.getUserByUsername(user.getUsername());
+        AuthenticatedUser user = authService.getPrincipal(request);
+        return userService.getUserByUsername(user.username());
+    }
+
+    /** Accepted at once; the account's rows are deleted in the background. */
+    @SecurityRequirement(name = "basicAuth")
+    @DeleteMapping(value = "/me", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public AccountDeletionDto deleteCurrentUser(HttpServletRequest request) {
+        AuthenticatedUser user = authService.getPrincipal(request);
+        return userService.deleteUser(user.username());
     }
 
     @SecurityRequirement(name = "basicAuth")
     @PutMapping("/me")
     public UserDto updateCurrentUserProfile(@RequestBody UserDto userDto, HttpServletRequest request) {
-        User user = authService.getAuthenticatedUser(request);
+        AuthenticatedUser user = authService.getPrincipal(request);
         return userService.updateUserProfile(
-            user.getUsername(),
+            user.username(),
             userDto.fullName(),
             userDto.email(),
             userDto.biography()
@@ -118,13 +149,19 @@ public class UserController {
 
     @SecurityRequirement(name = "basicAuth")
     @GetMapping(value = "/{username}/followers", produces = MediaType.APPLICATION_JSON_VALUE)
-    public List<UserSearchDto> getFollowers(@PathVariable String username) {
+    public List<UserSearchDto> getFollowers(@PathVariable String username, WebRequest webRequest) {
+        if (webRequest.checkNotModified(versionStamps.followsTag(username))) {
+            return null;
+        }
         return userService.getFollowers(username);
     }
 
     @SecurityRequirement(name = "basicAuth")
     @GetMapping(value = "/{username}/following", produces = MediaType.APPLICATION_JSON_VALUE)
-    public List<UserSearchDto> getFollowing(@PathVariable String username) {
+    public List<UserSearchDto> getFollowing(@PathVariable String username, WebRequest webRequest) {
+        if (webRequest.checkNotModified(versionStamps.followsTag(username))) {
+            return null;
+        }
         return userService.getFollowing(username);
     }
 }
\ No newline at end of file
@@ -0,0 +1,16 @@
+package oth.ics.wtp.relaybackend.dtos;
+
+import java.time.LocalDateTime;
+
+/** Progress of an account deletion; {@code finishedAt} is null while rows are still being deleted. */
+public record AccountDeletionDto(
+        Long userId,
+        String username,
+        LocalDateTime requestedAt,
+        LocalDateTime finishedAt,
+        long follows,
+        long likes,
+        long comments,
+        long posts
+) {
+}
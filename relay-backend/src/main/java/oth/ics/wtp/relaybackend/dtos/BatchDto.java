@@ -0,0 +1,13 @@
+package oth.ics.wtp.relaybackend.dtos;
+
+import java.util.List;
+
+/**
+ * Answer to a batch lookup: one item per requested key in request order, {@code null} where the
+ * key was not found, and those keys again in {@code notFound}.
+ */
+public record BatchDto<T>(
+        List<T> items,
+        List<String> notFound
+) {
+}
@@ -0,0 +1,10 @@
+package oth.ics.wtp.relaybackend.dtos;
+
+import java.util.List;
+
+/** One page of a keyset-paginated list; {@code nextCursor} is absent on the last page. */
+public record PageDto<T>(
+        List<T> items,
+        String nextCursor
+) {
+}
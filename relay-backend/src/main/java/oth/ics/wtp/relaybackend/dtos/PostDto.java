@@ -8,6 +8,7 @@ public record PostDto(
         String authorUsername,
         LocalDateTime createdAt,
         int likeCount,
+        int commentCount,
         boolean isLikedByCurrentUser
 ) {
 }
\ No newline at end of file
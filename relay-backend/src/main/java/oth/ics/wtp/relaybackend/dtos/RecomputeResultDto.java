@@ -0,0 +1,3 @@
+package oth.ics.wtp.relaybackend.dtos;
+
+public record RecomputeResultDto(int recomputed) {}
@@ -0,0 +1,7 @@
+package oth.ics.wtp.relaybackend.dtos;
+
+public record TrendDto(
+        String tag,
+        long count
+) {
+}
@@ -2,12 +2,15 @@ package oth.ics.wtp.relaybackend.dtos;
 
 import java.time.Instant;
 
+/** A profile; {@code isFollowing} is only filled in where the viewer is known, as in batch lookups. */
 public record UserDto(
         String username,
         Instant registeredAt,
         int followerCount,
         int followingCount,
+        int postCount,
         String fullName,
         String email,
-        String biography
+        String biography,
+        Boolean isFollowing
 ) {}
\ No newline at end of file
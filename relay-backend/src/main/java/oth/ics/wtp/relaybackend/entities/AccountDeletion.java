@@ -0,0 +1,94 @@
+package oth.ics.wtp.relaybackend.entities;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/**
+ * A requested account deletion and how far it has got. The counters are advanced in the same
+ * transaction as the rows they count, so after a crash the job resumes exactly where it stopped.
+ * Finished rows are kept as a record; the user id carries no foreign key.
+ */
+@Entity
+@Table(name = "account_deletions", indexes = {
+        @Index(name = "idx_account_deletion_open", columnList = "finishedAt, requestedAt")
+})
+public class AccountDeletion {
+
+    @Id
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(length = 50, nullable = false)
+    private String username;
+
+    @Column(nullable = false)
+    private LocalDateTime requestedAt;
+
+    private LocalDateTime finishedAt;
+
+    @Column(nullable = false)
+    private long follows;
+
+    @Column(nullable = false)
+    private long likes;
+
+    @Column(nullable = false)
+    private long comments;
+
+    @Column(nullable = false)
+    private long posts;
+
+    public AccountDeletion() {}
+
+    public AccountDeletion(Long userId, String username) {
+        this.userId = userId;
+        this.username = username;
+        this.requestedAt = LocalDateTime.now();
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public LocalDateTime getRequestedAt() {
+        return requestedAt;
+    }
+
+    public LocalDateTime getFinishedAt() {
+        return finishedAt;
+    }
+
+    public long getFollows() {
+        return follows;
+    }
+
+    public long getLikes() {
+        return likes;
+    }
+
+    public long getComments() {
+        return comments;
+    }
+
+    public long getPosts() {
+        return posts;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        AccountDeletion that = (AccountDeletion) o;
+        return Objects.equals(userId, that.userId);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(userId);
+    }
+}
@@ -5,7 +5,9 @@ import java.time.Instant;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
 @Entity
-@Table(name = "comments")
+@Table(name = "comments", indexes = {
+        @Index(name = "idx_comment_post_created", columnList = "post_id, createdAt, id")
+})
 public class Comment {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -17,7 +19,7 @@ public class Comment {
     private Post post;
 
     @ManyToOne(optional = false, fetch = FetchType.LAZY)
-    @JoinColumn(name = "user_username")
+    @JoinColumn(name = "user_id")
     private User user;
 
     @Column(nullable = false, length = 500)
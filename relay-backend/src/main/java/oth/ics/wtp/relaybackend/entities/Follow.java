@@ -4,22 +4,23 @@ import jakarta.persistence.*;
 import java.io.Serializable;
 import java.time.LocalDateTime;
 import java.util.Objects;
-import static jakarta.persistence.FetchType.EAGER;
+import static jakarta.persistence.FetchType.LAZY;
 
 @Entity
 @Table(name = "user_follows",
-        uniqueConstraints = @UniqueConstraint(columnNames = {"follower_username", "followed_username"}))
+        uniqueConstraints = @UniqueConstraint(columnNames = {"follower_id", "followed_id"}),
+        indexes = @Index(name = "idx_follow_followed", columnList = "followed_id"))
 @IdClass(Follow.FollowId.class)
 public class Follow {
 
     @Id
-    @ManyToOne(fetch = EAGER, optional = false)
-    @JoinColumn(name = "follower_username", nullable = false)
+    @ManyToOne(fetch = LAZY, optional = false)
+    @JoinColumn(name = "follower_id", nullable = false)
     private User follower;
 
     @Id
-    @ManyToOne(fetch = EAGER, optional = false)
-    @JoinColumn(name = "followed_username", nullable = false)
+    @ManyToOne(fetch = LAZY, optional = false)
+    @JoinColumn(name = "followed_id", nullable = false)
     private User followed;
 
     @Column(nullable = false)
@@ -60,29 +61,29 @@ public class Follow {
     }
 
     public static class FollowId implements Serializable {
-        private String follower;
-        private String followed;
+        private Long follower;
+        private Long followed;
 
         public FollowId() {}
 
-        public FollowId(String follower, String followed) {
+        public FollowId(Long follower, Long followed) {
             this.follower = follower;
             this.followed = followed;
         }
 
-        public String getFollower() {
+        public Long getFollower() {
             return follower;
         }
 
-        public void setFollower(String follower) {
+        public void setFollower(Long follower) {
             this.follower = follower;
         }
 
-        public String getFollowed() {
+        public Long getFollowed() {
             return followed;
         }
 
-        public void setFollowed(String followed) {
+        public void setFollowed(Long followed) {
             this.followed = followed;
         }
 
@@ -4,26 +4,26 @@ import jakarta.persistence.*;
 import java.io.Serializable;
 import java.time.LocalDateTime;
 import java.util.Objects;
-import static jakarta.persistence.FetchType.EAGER;
+import static jakarta.persistence.FetchType.LAZY;
 
 @Entity
-@Table(name = "likes")
+@Table(name = "likes", indexes = @Index(name = "idx_like_post", columnList = "post_id"))
 @IdClass(Like.LikeId.class)
 public class Like {
 
     @Id
-    @Column(name = "user_username", nullable = false)
-    private String user;
+    @Column(name = "user_id", nullable = false)
+    private Long user;
 
     @Id
     @Column(name = "post_id", nullable = false)
     private Long post;
 
-    @ManyToOne(fetch = EAGER, optional = false)
-    @JoinColumn(name = "user_username", referencedColumnName = "username", insertable = false, updatable = false)
+    @ManyToOne(fetch = LAZY, optional = false)
+    @JoinColumn(name = "user_id", referencedColumnName = "id", insertable = false, updatable = false)
     private User userEntity;
 
-    @ManyToOne(fetch = EAGER, optional = false)
+    @ManyToOne(fetch = LAZY, optional = false)
     @JoinColumn(name = "post_id", referencedColumnName = "id", insertable = false, updatable = false)
     private Post postEntity;
 
@@ -35,24 +35,24 @@ public class Like {
     }
 
     public Like(User user, Long post) {
-        this.user = user.getUsername();
+        this.user = user.getId();
         this.post = post;
         this.likedAt = LocalDateTime.now();
     }
 
     public Like(User userEntity, Post postEntity) {
-        this.user = userEntity.getUsername();
+        this.user = userEntity.getId();
         this.post = postEntity.getId();
         this.userEntity = userEntity;
         this.postEntity = postEntity;
         this.likedAt = LocalDateTime.now();
     }
 
-    public String getUser() {
+    public Long getUser() {
         return user;
     }
 
-    public void setUser(String user) {
+    public void setUser(Long user) {
         this.user = user;
     }
 
@@ -66,17 +66,17 @@ public class Like {
 
 
     public static class LikeId implements Serializable {
-        private String user;
+        private Long user;
         private Long post;
 
         public LikeId() {}
 
 
-        public String getUser() {
+        public Long getUser() {
             return user;
         }
 
-        public void setUser(String user) {
+        public void setUser(Long user) {
             this.user = user;
         }
 
@@ -1,10 +1,13 @@
 package oth.ics.wtp.relaybackend.entities;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.SQLRestriction;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.List;
-import static jakarta.persistence.FetchType.EAGER;
+import static jakarta.persistence.FetchType.LAZY;
 import static jakarta.persistence.CascadeType.ALL;
 import static jakarta.persistence.GenerationType.IDENTITY;
 import java.util.Objects;
@@ -12,8 +15,11 @@ import java.util.Objects;
 @Entity
 @Table(name = "posts", indexes = {
         @Index(name = "idx_post_created", columnList = "createdAt DESC"),
-        @Index(name = "idx_post_author", columnList = "author_username")
+        @Index(name = "idx_post_author_created", columnList = "author_id, createdAt DESC, id DESC"),
+        @Index(name = "idx_post_deleted", columnList = "deleted_at")
 })
+// Deleted posts stay as tombstones until PostPurger has removed their likes and comments
+@SQLRestriction("deleted_at IS NULL")
 public class Post {
 
     @Id
@@ -26,33 +32,42 @@ public class Post {
     @Column(nullable = false)
     private LocalDateTime createdAt;
 
-    @ManyToOne(fetch = EAGER, optional = false)
-    @JoinColumn(name = "author_username", nullable = false)
+    // Maintained in batches by LikeCounters; pending in-memory deltas are added on read
+    @Column(name = "like_count", nullable = false)
+    @ColumnDefault("0")
+    private long likeCount;
+
+    // Changed in the transaction of the comment; db/backfill-comment-counts.sql counts existing posts
+    @Column(name = "comment_count", nullable = false)
+    @ColumnDefault("0")
+    private long commentCount;
+
+    @Column(name = "deleted_at")
+    private LocalDateTime deletedAt;
+
+    @ManyToOne(fetch = LAZY, optional = false)
+    @JoinColumn(name = "author_id", nullable = false)
     private User author;
 
-    @OneToMany(mappedBy = "post", fetch = EAGER, cascade = ALL, orphanRemoval = true)
+    @OneToMany(mappedBy = "post", cascade = ALL, orphanRemoval = true)
     private List<Like> likes = new ArrayList<>();
 
-    @OneToMany(mappedBy = "post", cascade = ALL, orphanRemoval = true, fetch = EAGER)
+    @OneToMany(mappedBy = "post", cascade = ALL, orphanRemoval = true)
     private List<Comment> comments = new ArrayList<>();
 
     public Post() {
-        this.createdAt = LocalDateTime.now();
+        this.createdAt = now();
     }
 
     public Post(String content, User author) {
         this.content = content;
         this.author = author;
-        this.createdAt = LocalDateTime.now();
-    }
-
-    public int getLikeCount() {
-        return likes.size();
+        this.createdAt = now();
     }
 
-    public boolean isLikedByUser(String username) {
-        return likes.stream()
-                .anyMatch(like -> like.getUser().equals(username));
+    // Timestamp columns keep microseconds; truncating up front keeps in-memory copies and cursors exact
+    private static LocalDateTime now() {
+        return LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
     }
 
     public Long getId() {
@@ -67,6 +82,14 @@ public class Post {
         return createdAt;
     }
 
+    public long getLikeCount() {
+        return likeCount;
+    }
+
+    public long getCommentCount() {
+        return commentCount;
+    }
+
     public User getAuthor() {
         return author;
     }
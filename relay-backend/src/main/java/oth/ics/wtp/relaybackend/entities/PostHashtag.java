@@ -0,0 +1,82 @@
+package oth.ics.wtp.relaybackend.entities;
+
+import jakarta.persistence.*;
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * One hashtag of a post, lower-cased and without the leading {@code #}.
+ * Like timeline entries, rows carry no foreign key; the tag feed joins back to posts.
+ */
+@Entity
+@Table(name = "post_hashtags", indexes = {
+        @Index(name = "idx_hashtag_feed", columnList = "tag, post_id DESC")
+})
+@IdClass(PostHashtag.PostHashtagId.class)
+public class PostHashtag {
+
+    public static final int MAX_LENGTH = 50;
+
+    @Id
+    @Column(name = "post_id", nullable = false)
+    private Long postId;
+
+    @Id
+    @Column(length = MAX_LENGTH, nullable = false)
+    private String tag;
+
+    public PostHashtag() {}
+
+    public PostHashtag(Long postId, String tag) {
+        this.postId = postId;
+        this.tag = tag;
+    }
+
+    public Long getPostId() {
+        return postId;
+    }
+
+    public String getTag() {
+        return tag;
+    }
+
+    public static class PostHashtagId implements Serializable {
+        private Long postId;
+        private String tag;
+
+        public PostHashtagId() {}
+
+        public PostHashtagId(Long postId, String tag) {
+            this.postId = postId;
+            this.tag = tag;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            PostHashtagId that = (PostHashtagId) o;
+            return Objects.equals(postId, that.postId) &&
+                    Objects.equals(tag, that.tag);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(postId, tag);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        PostHashtag that = (PostHashtag) o;
+        return Objects.equals(postId, that.postId) &&
+                Objects.equals(tag, that.tag);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(postId, tag);
+    }
+}
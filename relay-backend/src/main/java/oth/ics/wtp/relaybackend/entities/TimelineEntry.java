@@ -0,0 +1,99 @@
+package oth.ics.wtp.relaybackend.entities;
+
+import jakarta.persistence.*;
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/**
+ * One post id in a user's materialized home timeline.
+ * Rows carry no foreign keys so that fan-out and post deletion never contend on
+ * the posts table; reads join back to posts, which drops entries of deleted posts.
+ */
+@Entity
+@Table(name = "timeline_entries", indexes = {
+        @Index(name = "idx_timeline_owner_created", columnList = "owner_id, createdAt DESC, post_id DESC"),
+        @Index(name = "idx_timeline_post", columnList = "post_id")
+})
+@IdClass(TimelineEntry.TimelineEntryId.class)
+public class TimelineEntry {
+
+    @Id
+    @Column(name = "owner_id", nullable = false)
+    private Long owner;
+
+    @Id
+    @Column(name = "post_id", nullable = false)
+    private Long postId;
+
+    @Column(name = "author_id", nullable = false)
+    private Long author;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    public TimelineEntry() {}
+
+    public TimelineEntry(Long owner, Long postId, Long author, LocalDateTime createdAt) {
+        this.owner = owner;
+        this.postId = postId;
+        this.author = author;
+        this.createdAt = createdAt;
+    }
+
+    public Long getOwner() {
+        return owner;
+    }
+
+    public Long getPostId() {
+        return postId;
+    }
+
+    public Long getAuthor() {
+        return author;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public static class TimelineEntryId implements Serializable {
+        private Long owner;
+        private Long postId;
+
+        public TimelineEntryId() {}
+
+        public TimelineEntryId(Long owner, Long postId) {
+            this.owner = owner;
+            this.postId = postId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            TimelineEntryId that = (TimelineEntryId) o;
+            return Objects.equals(owner, that.owner) &&
+                    Objects.equals(postId, that.postId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(owner, postId);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        TimelineEntry that = (TimelineEntry) o;
+        return Objects.equals(owner, that.owner) &&
+                Objects.equals(postId, that.postId);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(owner, postId);
+    }
+}
@@ -0,0 +1,72 @@
+package oth.ics.wtp.relaybackend.entities;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/**
+ * Marks a user's home timeline as materialized. Fan-out only writes into timelines
+ * that have a state row, so inactive users cost nothing until they read again.
+ */
+@Entity
+@Table(name = "timeline_states", indexes = {
+        @Index(name = "idx_timeline_state_read", columnList = "lastReadAt")
+})
+public class TimelineState {
+
+    @Id
+    @Column(name = "owner_id", nullable = false)
+    private Long owner;
+
+    @Column(nullable = false)
+    private LocalDateTime builtAt;
+
+    @Column(nullable = false)
+    private LocalDateTime lastReadAt;
+
+    /** Set when a rebuild or backfill hit the capacity, i.e. older posts exist that were not materialized. */
+    @Column(nullable = false)
+    private boolean truncated;
+
+    public TimelineState() {}
+
+    public TimelineState(Long owner, boolean truncated) {
+        this.owner = owner;
+        this.builtAt = LocalDateTime.now();
+        this.lastReadAt = this.builtAt;
+        this.truncated = truncated;
+    }
+
+    public Long getOwner() {
+        return owner;
+    }
+
+    public LocalDateTime getBuiltAt() {
+        return builtAt;
+    }
+
+    public LocalDateTime getLastReadAt() {
+        return lastReadAt;
+    }
+
+    public void setLastReadAt(LocalDateTime lastReadAt) {
+        this.lastReadAt = lastReadAt;
+    }
+
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        TimelineState that = (TimelineState) o;
+        return Objects.equals(owner, that.owner);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(owner);
+    }
+}
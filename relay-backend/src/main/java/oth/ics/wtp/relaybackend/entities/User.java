@@ -5,15 +5,20 @@ import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import static jakarta.persistence.CascadeType.*;
-import static jakarta.persistence.FetchType.EAGER;
+import static jakarta.persistence.GenerationType.IDENTITY;
 import java.util.Objects;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
 @Entity
-@Table(name = "relay_users")
+@Table(name = "relay_users", indexes = {
+        @Index(name = "uk_user_username", columnList = "username", unique = true)
+})
 public class User {
 
     @Id
+    @GeneratedValue(strategy = IDENTITY)
+    private Long id;
+
     @Column(length = 50, nullable = false)
     private String username;
 
@@ -32,11 +37,11 @@ public class User {
     @Column(nullable = false)
     private LocalDateTime registeredAt;
 
-    @OneToMany(mappedBy = "author", fetch = EAGER, cascade = ALL, orphanRemoval = true)
+    @OneToMany(mappedBy = "author", cascade = ALL, orphanRemoval = true)
     @JsonIgnore
     private List<Post> posts = new ArrayList<>();
 
-    @OneToMany(mappedBy = "user", fetch = EAGER, cascade = ALL, orphanRemoval = true)
+    @OneToMany(mappedBy = "user", cascade = ALL, orphanRemoval = true)
     @JsonIgnore
     private List<Like> likes = new ArrayList<>();
 
@@ -50,6 +55,10 @@ public class User {
         this.registeredAt = LocalDateTime.now();
     }
 
+    public Long getId() {
+        return id;
+    }
+
     public String getUsername() {
         return username;
     }
@@ -58,6 +67,10 @@ public class User {
         return hashedPassword;
     }
 
+    public void setHashedPassword(String hashedPassword) {
+        this.hashedPassword = hashedPassword;
+    }
+
     public LocalDateTime getRegisteredAt() {
         return registeredAt;
     }
@@ -77,12 +90,14 @@ public class User {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         User user = (User) o;
-        return Objects.equals(username, user.username);
+        // Keyed on the id: the username changes when the account is deleted
+        return id != null && Objects.equals(id, user.id);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(username);
+        // Constant, so a user keeps its hash from before it was persisted
+        return getClass().hashCode();
     }
 
     public void setUsername(String username) {
@@ -0,0 +1,62 @@
+package oth.ics.wtp.relaybackend.entities;
+
+import jakarta.persistence.*;
+import java.util.Objects;
+
+/**
+ * Denormalized profile counters, kept in step with follows and posts by the writes that
+ * change them so that profile reads never count rows. Rows carry no foreign key; a missing
+ * row is recomputed from the source tables on first use.
+ */
+@Entity
+@Table(name = "user_stats")
+public class UserStats {
+
+    @Id
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(nullable = false)
+    private long followers;
+
+    @Column(nullable = false)
+    private long following;
+
+    @Column(nullable = false)
+    private long posts;
+
+    public UserStats() {}
+
+    public UserStats(Long userId) {
+        this.userId = userId;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public long getFollowers() {
+        return followers;
+    }
+
+    public long getFollowing() {
+        return following;
+    }
+
+    public long getPosts() {
+        return posts;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        UserStats that = (UserStats) o;
+        return Objects.equals(userId, that.userId);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(userId);
+    }
+}
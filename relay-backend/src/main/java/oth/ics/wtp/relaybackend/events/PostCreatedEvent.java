@@ -0,0 +1,12 @@
+package oth.ics.wtp.relaybackend.events;
+
+import java.time.LocalDateTime;
+
+/** Published by {@code PostService.createPost}; listeners run after the post is committed. */
+public record PostCreatedEvent(
+        Long postId,
+        Long authorId,
+        String authorUsername,
+        LocalDateTime createdAt
+) {
+}
@@ -0,0 +1,33 @@
+package oth.ics.wtp.relaybackend.repositories;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import oth.ics.wtp.relaybackend.entities.AccountDeletion;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface AccountDeletionRepository extends JpaRepository<AccountDeletion, Long> {
+
+    @Query("SELECT d.userId FROM AccountDeletion d WHERE d.finishedAt IS NULL ORDER BY d.requestedAt")
+    List<Long> findOpenIds();
+
+    long countByFinishedAtIsNull();
+
+    @Modifying
+    @Query("UPDATE AccountDeletion d SET d.follows = d.follows + :follows, d.likes = d.likes + :likes, " +
+            "d.comments = d.comments + :comments, d.posts = d.posts + :posts WHERE d.userId = :userId")
+    int addProgress(@Param("userId") Long userId,
+                    @Param("follows") long follows,
+                    @Param("likes") long likes,
+                    @Param("comments") long comments,
+                    @Param("posts") long posts);
+
+    @Modifying
+    @Query("UPDATE AccountDeletion d SET d.finishedAt = :finishedAt WHERE d.userId = :userId")
+    int markFinished(@Param("userId") Long userId, @Param("finishedAt") LocalDateTime finishedAt);
+}
@@ -1,17 +1,54 @@
 package oth.ics.wtp.relaybackend.repositories;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import oth.ics.wtp.relaybackend.entities.Comment;
 import oth.ics.wtp.relaybackend.entities.Post;
+
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 
 public interface CommentRepository extends JpaRepository<Comment, Long> {
-    List<Comment> findByPostOrderByCreatedAtAsc(Post post);
-    
+    @EntityGraph(attributePaths = "user")
+    List<Comment> findByPostIdOrderByCreatedAtAscIdAsc(Long postId, Pageable pageable);
+
+    @Query("SELECT c FROM Comment c WHERE c.post.id = :postId " +
+            "AND (c.createdAt > :createdAt OR (c.createdAt = :createdAt AND c.id > :id)) " +
+            "ORDER BY c.createdAt ASC, c.id ASC")
+    @EntityGraph(attributePaths = "user")
+    List<Comment> findByPostAfter(@Param("postId") Long postId,
+                                  @Param("createdAt") Instant createdAt,
+                                  @Param("id") Long id,
+                                  Pageable pageable);
+
+    /** (commenter username, post id, post author username) of a comment, without loading either entity. */
+    @Query("SELECT c.user.username, c.post.id, c.post.author.username FROM Comment c WHERE c.id = :id")
+    List<Object[]> findOwnership(@Param("id") Long id);
+
+    @Modifying
+    @Query("DELETE FROM Comment c WHERE c.id = :id")
+    int deleteOne(@Param("id") Long id);
+
     @Modifying
     @Query("DELETE FROM Comment c WHERE c.post = :post")
     void deleteByPost(@Param("post") Post post);
-} 
\ No newline at end of file
+
+    /** Up to {@code limit} (id, post_id) rows of the user's comments. */
+    @Query(value = "SELECT id, post_id FROM comments WHERE user_id = :userId LIMIT :limit", nativeQuery = true)
+    List<Object[]> findBatchOfUser(@Param("userId") Long userId, @Param("limit") int limit);
+
+    @Modifying
+    @Query("DELETE FROM Comment c WHERE c.id IN :ids")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
+
+    /** Deletes at most {@code limit} comments of the post, so one batch holds few row locks. */
+    @Modifying
+    @Query(value = "DELETE FROM comments WHERE id IN " +
+            "(SELECT id FROM comments WHERE post_id = :postId LIMIT :limit)", nativeQuery = true)
+    int deleteBatchOfPost(@Param("postId") Long postId, @Param("limit") int limit);
+}
@@ -1,18 +1,21 @@
 package oth.ics.wtp.relaybackend.repositories;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import oth.ics.wtp.relaybackend.entities.Follow;
 import oth.ics.wtp.relaybackend.entities.User;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface FollowRepository extends JpaRepository<Follow, Follow.FollowId> {
 
-    boolean existsByFollowerUsernameAndFollowedUsername(String followerUsername, String followedUsername);
+    boolean existsByFollowerIdAndFollowedId(Long followerId, Long followedId);
 
     @Query("SELECT f.followed FROM Follow f WHERE f.follower.username = :username")
     List<User> findFollowingByUsername(@Param("username") String username);
@@ -20,10 +23,34 @@ public interface FollowRepository extends JpaRepository<Follow, Follow.FollowId>
     @Query("SELECT f.follower FROM Follow f WHERE f.followed.username = :username")
     List<User> findFollowersByUsername(@Param("username") String username);
 
+    /**
+     * (follower, followed) username pairs of all follows except those of accounts being deleted;
+     * must be consumed inside a transaction.
+     */
+    @Query("SELECT f.follower.username, f.followed.username FROM Follow f WHERE NOT EXISTS " +
+            "(SELECT d FROM AccountDeletion d WHERE d.userId = f.follower.id OR d.userId = f.followed.id)")
+    Stream<Object[]> streamAllEdges();
+
     @Query("SELECT f FROM Follow f WHERE f.follower.username = :username")
     List<Follow> findByFollowerUsername(@Param("username") String username);
 
     long countByFollowerUsername(String followerUsername);
 
     long countByFollowedUsername(String followedUsername);
-}
\ No newline at end of file
+
+    @Query("SELECT f.followed.username FROM Follow f GROUP BY f.followed.username HAVING COUNT(f) > :threshold")
+    List<String> findUsernamesWithFollowersAbove(@Param("threshold") long threshold);
+
+    /** Up to {@code limit} (follower_id, followed_id) rows of follows from or to the user. */
+    @Query(value = "SELECT follower_id, followed_id FROM user_follows " +
+            "WHERE follower_id = :userId OR followed_id = :userId LIMIT :limit", nativeQuery = true)
+    List<Object[]> findEdgesOf(@Param("userId") Long userId, @Param("limit") int limit);
+
+    @Modifying
+    @Query("DELETE FROM Follow f WHERE f.follower.id = :userId AND f.followed.id IN :followedIds")
+    int deleteFollowing(@Param("userId") Long userId, @Param("followedIds") Collection<Long> followedIds);
+
+    @Modifying
+    @Query("DELETE FROM Follow f WHERE f.followed.id = :userId AND f.follower.id IN :followerIds")
+    int deleteFollowers(@Param("userId") Long userId, @Param("followerIds") Collection<Long> followerIds);
+}
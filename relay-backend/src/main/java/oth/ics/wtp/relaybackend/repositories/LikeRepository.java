@@ -7,15 +7,36 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import oth.ics.wtp.relaybackend.entities.Like;
 
+import java.util.Collection;
+import java.util.List;
+
 @Repository
 public interface LikeRepository extends JpaRepository<Like, Like.LikeId> {
-    boolean existsByUserAndPost(String user, Long post);
+    boolean existsByUserAndPost(Long user, Long post);
     int countByPost(Long post);
+
+    @Query("SELECT l.post FROM Like l WHERE l.userEntity.username = :username AND l.post IN :posts")
+    List<Long> findLikedPostIds(@Param("username") String username, @Param("posts") Collection<Long> posts);
+
     @Modifying
     @Query("DELETE FROM Like l WHERE l.user = :user AND l.post = :post")
-    void deleteByUserAndPost(@Param("user") String user, @Param("post") Long post);
+    int deleteByUserAndPost(@Param("user") Long user, @Param("post") Long post);
     
     @Modifying
     @Query("DELETE FROM Like l WHERE l.post = :postId")
     void deleteByPost(@Param("postId") Long postId);
-}
\ No newline at end of file
+
+    /** Ids of up to {@code limit} posts the user likes. */
+    @Query(value = "SELECT post_id FROM likes WHERE user_id = :userId LIMIT :limit", nativeQuery = true)
+    List<Long> findPostIdsLikedBy(@Param("userId") Long userId, @Param("limit") int limit);
+
+    @Modifying
+    @Query("DELETE FROM Like l WHERE l.user = :user AND l.post IN :posts")
+    int deleteByUserAndPostIn(@Param("user") Long user, @Param("posts") Collection<Long> posts);
+
+    /** Deletes at most {@code limit} likes of the post, so one batch holds few row locks. */
+    @Modifying
+    @Query(value = "DELETE FROM likes WHERE post_id = :postId AND user_id IN " +
+            "(SELECT user_id FROM likes WHERE post_id = :postId LIMIT :limit)", nativeQuery = true)
+    int deleteBatchOfPost(@Param("postId") Long postId, @Param("limit") int limit);
+}
@@ -0,0 +1,33 @@
+package oth.ics.wtp.relaybackend.repositories;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import oth.ics.wtp.relaybackend.entities.Post;
+import oth.ics.wtp.relaybackend.entities.PostHashtag;
+
+import java.util.List;
+
+@Repository
+public interface PostHashtagRepository extends JpaRepository<PostHashtag, PostHashtag.PostHashtagId> {
+
+    /** Newest posts with the tag; a range scan of {@code idx_hashtag_feed}, whatever the tag's size. */
+    @Query("SELECT p FROM PostHashtag h JOIN Post p ON p.id = h.postId JOIN FETCH p.author " +
+            "WHERE h.tag = :tag ORDER BY h.postId DESC")
+    List<Post> findTagPosts(@Param("tag") String tag, Pageable pageable);
+
+    @Query("SELECT p FROM PostHashtag h JOIN Post p ON p.id = h.postId JOIN FETCH p.author " +
+            "WHERE h.tag = :tag AND h.postId < :postId ORDER BY h.postId DESC")
+    List<Post> findTagPostsBefore(@Param("tag") String tag,
+                                  @Param("postId") Long postId,
+                                  Pageable pageable);
+
+    /** Deletes at most {@code limit} tags of the post, so one batch holds few row locks. */
+    @Modifying
+    @Query(value = "DELETE FROM post_hashtags WHERE post_id = :postId AND tag IN " +
+            "(SELECT tag FROM post_hashtags WHERE post_id = :postId LIMIT :limit)", nativeQuery = true)
+    int deleteBatchOfPost(@Param("postId") Long postId, @Param("limit") int limit);
+}
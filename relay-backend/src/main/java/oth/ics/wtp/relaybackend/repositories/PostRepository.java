@@ -1,19 +1,140 @@
 package oth.ics.wtp.relaybackend.repositories;
 
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import oth.ics.wtp.relaybackend.entities.Post;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface PostRepository extends JpaRepository<Post, Long> {
-    List<Post> findByAuthorUsernameOrderByCreatedAtDesc(String username, Pageable pageable);
+    @EntityGraph(attributePaths = "author")
+    Optional<Post> findWithAuthorById(Long id);
+
+    @Query("SELECT p.author.username FROM Post p WHERE p.id = :id")
+    Optional<String> findAuthorUsernameById(@Param("id") Long id);
+
+    @EntityGraph(attributePaths = "author")
+    List<Post> findByIdIn(Collection<Long> ids);
+
+    /** The newest {@code perAuthor} posts of each author as (id, author_username, created_at) rows. */
+    @Query(value = "SELECT r.id, r.username, r.created_at FROM (" +
+            "SELECT p.id, u.username, p.created_at, ROW_NUMBER() OVER " +
+            "(PARTITION BY p.author_id ORDER BY p.created_at DESC, p.id DESC) AS rn " +
+            "FROM posts p JOIN relay_users u ON u.id = p.author_id " +
+            "WHERE u.username IN (:usernames) AND p.deleted_at IS NULL) r " +
+            "WHERE r.rn <= :perAuthor", nativeQuery = true)
+    List<Object[]> findRecentPerAuthor(@Param("usernames") Collection<String> usernames,
+                                       @Param("perAuthor") int perAuthor);
+
+    @EntityGraph(attributePaths = "author")
+    List<Post> findByAuthorIdOrderByCreatedAtDescIdDesc(Long authorId, Pageable pageable);
+
+    @Query("SELECT p FROM Post p WHERE p.author.id = :authorId " +
+            "AND (p.createdAt < :createdAt OR (p.createdAt = :createdAt AND p.id < :id)) " +
+            "ORDER BY p.createdAt DESC, p.id DESC")
+    @EntityGraph(attributePaths = "author")
+    List<Post> findByAuthorIdBefore(@Param("authorId") Long authorId,
+                                          @Param("createdAt") LocalDateTime createdAt,
+                                          @Param("id") Long id,
+                                          Pageable pageable);
+
+    @EntityGraph(attributePaths = "author")
+    List<Post> findByAuthorUsernameInOrderByCreatedAtDescIdDesc(Collection<String> usernames, Pageable pageable);
+
+    @Query("SELECT p FROM Post p WHERE p.author.username IN :usernames " +
+            "AND (p.createdAt < :createdAt OR (p.createdAt = :createdAt AND p.id < :id)) " +
+            "ORDER BY p.createdAt DESC, p.id DESC")
+    @EntityGraph(attributePaths = "author")
+    List<Post> findByAuthorUsernameInBefore(@Param("usernames") Collection<String> usernames,
+                                            @Param("createdAt") LocalDateTime createdAt,
+                                            @Param("id") Long id,
+                                            Pageable pageable);
+
+    /** Pull-based timeline, only used to page past the oldest materialized timeline entry. */
+    @Query("SELECT p FROM Post p WHERE p.author.id = :userId OR p.author.id IN " +
+            "(SELECT f.followed.id FROM Follow f WHERE f.follower.id = :userId) " +
+            "ORDER BY p.createdAt DESC, p.id DESC")
+    @EntityGraph(attributePaths = "author")
+    List<Post> findFollowedUsersPosts(@Param("userId") Long userId, Pageable pageable);
+
+    @Query("SELECT p FROM Post p WHERE (p.author.id = :userId OR p.author.id IN " +
+            "(SELECT f.followed.id FROM Follow f WHERE f.follower.id = :userId)) " +
+            "AND (p.createdAt < :createdAt OR (p.createdAt = :createdAt AND p.id < :id)) " +
+            "ORDER BY p.createdAt DESC, p.id DESC")
+    @EntityGraph(attributePaths = "author")
+    List<Post> findFollowedUsersPostsBefore(@Param("userId") Long userId,
+                                            @Param("createdAt") LocalDateTime createdAt,
+                                            @Param("id") Long id,
+                                            Pageable pageable);
+
+    @Query("SELECT p.id, p.likeCount FROM Post p WHERE p.id IN :ids")
+    List<Object[]> findLikeCounts(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query("UPDATE Post p SET p.likeCount = p.likeCount + :delta WHERE p.id IN :ids")
+    int addToLikeCounts(@Param("ids") Collection<Long> ids, @Param("delta") long delta);
+
+    @Modifying
+    @Query("UPDATE Post p SET p.commentCount = p.commentCount + :delta WHERE p.id = :id")
+    int addToCommentCount(@Param("id") Long id, @Param("delta") long delta);
+
+    /** Hides the post from every read; returns 0 if it is already gone. */
+    @Modifying
+    @Query("UPDATE Post p SET p.deletedAt = :deletedAt WHERE p.id = :id")
+    int tombstone(@Param("id") Long id, @Param("deletedAt") LocalDateTime deletedAt);
+
+    /** Ids and contents of deleted posts still waiting for PostPurger, oldest deletion first. */
+    @Query(value = "SELECT id, content FROM posts WHERE deleted_at IS NOT NULL ORDER BY deleted_at, id LIMIT :limit",
+            nativeQuery = true)
+    List<Object[]> findTombstones(@Param("limit") int limit);
+
+    @Modifying
+    @Query("UPDATE Post p SET p.deletedAt = :deletedAt WHERE p.author.id = :authorId")
+    int tombstoneAllOf(@Param("authorId") Long authorId, @Param("deletedAt") LocalDateTime deletedAt);
+
+    @Query(value = "SELECT id FROM posts WHERE author_id = :authorId AND deleted_at IS NOT NULL LIMIT :limit",
+            nativeQuery = true)
+    List<Long> findTombstonesOf(@Param("authorId") Long authorId, @Param("limit") int limit);
+
+    @Query(value = "SELECT id, content FROM posts WHERE author_id = :authorId AND deleted_at IS NOT NULL LIMIT :limit",
+            nativeQuery = true)
+    List<Object[]> findTombstoneContentsOf(@Param("authorId") Long authorId, @Param("limit") int limit);
+
+    @Query(value = "SELECT COUNT(*), MIN(deleted_at) FROM posts WHERE deleted_at IS NOT NULL", nativeQuery = true)
+    List<Object[]> findTombstoneBacklog();
+
+    @Modifying
+    @Query(value = "DELETE FROM posts WHERE id = :id AND deleted_at IS NOT NULL", nativeQuery = true)
+    int deleteTombstone(@Param("id") Long id);
+
+    /** Resets drifted like counts of posts with ids in [fromId, toId) to the number of like rows. */
+    @Modifying
+    @Query(value = "UPDATE posts SET like_count = (SELECT COUNT(*) FROM likes l WHERE l.post_id = posts.id) " +
+            "WHERE id >= :fromId AND id < :toId " +
+            "AND like_count <> (SELECT COUNT(*) FROM likes l WHERE l.post_id = posts.id)", nativeQuery = true)
+    int reconcileLikeCounts(@Param("fromId") long fromId, @Param("toId") long toId);
+
+    /** (id, content) of all posts; must be consumed inside a transaction. */
+    @Query("SELECT p.id, p.content FROM Post p")
+    Stream<Object[]> streamAllContents();
+
+    /** Must be consumed inside a transaction. */
+    @Query("SELECT p.id FROM Post p")
+    Stream<Long> streamAllIds();
+
+    @Query("SELECT p.id, p.content FROM Post p WHERE p.id IN :ids")
+    List<Object[]> findContentsByIdIn(@Param("ids") Collection<Long> ids);
 
-    @Query("SELECT p FROM Post p WHERE p.author.username = :username OR p.author IN " +
-            "(SELECT f.followed FROM Follow f WHERE f.follower.username = :username) " +
-            "ORDER BY p.createdAt DESC")
-    List<Post> findFollowedUsersPosts(@Param("username") String username, Pageable pageable);
-}
\ No newline at end of file
+    @Query("SELECT COALESCE(MAX(p.id), 0) FROM Post p")
+    long findMaxId();
+}
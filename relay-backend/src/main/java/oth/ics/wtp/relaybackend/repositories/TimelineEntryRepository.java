@@ -0,0 +1,85 @@
+package oth.ics.wtp.relaybackend.repositories;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import oth.ics.wtp.relaybackend.entities.Post;
+import oth.ics.wtp.relaybackend.entities.TimelineEntry;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface TimelineEntryRepository extends JpaRepository<TimelineEntry, TimelineEntry.TimelineEntryId> {
+
+    @Query("SELECT p FROM TimelineEntry t JOIN Post p ON p.id = t.postId JOIN FETCH p.author " +
+            "WHERE t.owner = :owner ORDER BY t.createdAt DESC, t.postId DESC")
+    List<Post> findTimelinePosts(@Param("owner") Long owner, Pageable pageable);
+
+    @Query("SELECT p FROM TimelineEntry t JOIN Post p ON p.id = t.postId JOIN FETCH p.author " +
+            "WHERE t.owner = :owner AND (t.createdAt < :createdAt OR (t.createdAt = :createdAt AND t.postId < :postId)) " +
+            "ORDER BY t.createdAt DESC, t.postId DESC")
+    List<Post> findTimelinePostsBefore(@Param("owner") Long owner,
+                                       @Param("createdAt") LocalDateTime createdAt,
+                                       @Param("postId") Long postId,
+                                       Pageable pageable);
+
+    /**
+     * Pushes a new post into the author's own and all followers' timelines in one statement.
+     * Only timelines with a {@code timeline_states} row are written; the rest get rebuilt on their next read.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO timeline_entries (owner_id, post_id, author_id, created_at) " +
+            "SELECT s.owner_id, CAST(:postId AS BIGINT), CAST(:author AS BIGINT), CAST(:createdAt AS TIMESTAMP) " +
+            "FROM timeline_states s WHERE (s.owner_id = :author OR s.owner_id IN " +
+            "(SELECT f.follower_id FROM user_follows f WHERE f.followed_id = :author)) AND NOT EXISTS " +
+            "(SELECT 1 FROM timeline_entries t WHERE t.owner_id = s.owner_id AND t.post_id = :postId)", nativeQuery = true)
+    int fanOut(@Param("postId") Long postId, @Param("author") Long author, @Param("createdAt") LocalDateTime createdAt);
+
+    /** Copies the most recent posts of one author into a single timeline, skipping posts already present. */
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO timeline_entries (owner_id, post_id, author_id, created_at) " +
+            "SELECT CAST(:owner AS BIGINT), p.id, p.author_id, p.created_at FROM posts p " +
+            "WHERE p.author_id = :author AND p.deleted_at IS NULL AND NOT EXISTS " +
+            "(SELECT 1 FROM timeline_entries t WHERE t.owner_id = :owner AND t.post_id = p.id) " +
+            "ORDER BY p.created_at DESC LIMIT :limit", nativeQuery = true)
+    int backfill(@Param("owner") Long owner, @Param("author") Long author, @Param("limit") int limit);
+
+    /** Materializes a timeline from scratch out of the owner's and all followed authors' posts. */
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO timeline_entries (owner_id, post_id, author_id, created_at) " +
+            "SELECT CAST(:owner AS BIGINT), p.id, p.author_id, p.created_at FROM posts p " +
+            "WHERE (p.author_id = :owner OR p.author_id IN " +
+            "(SELECT f.followed_id FROM user_follows f WHERE f.follower_id = :owner)) AND p.deleted_at IS NULL " +
+            "ORDER BY p.created_at DESC LIMIT :limit", nativeQuery = true)
+    int rebuild(@Param("owner") Long owner, @Param("limit") int limit);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM TimelineEntry t WHERE t.owner = :owner AND t.author = :author")
+    int deleteByOwnerAndAuthor(@Param("owner") Long owner, @Param("author") Long author);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM TimelineEntry t WHERE t.owner = :owner")
+    int deleteByOwner(@Param("owner") Long owner);
+
+    /** Deletes at most {@code limit} entries of the owner's timeline. */
+    @Modifying
+    @Query(value = "DELETE FROM timeline_entries WHERE owner_id = :owner AND post_id IN " +
+            "(SELECT post_id FROM timeline_entries WHERE owner_id = :owner LIMIT :limit)", nativeQuery = true)
+    int deleteBatchOfOwner(@Param("owner") Long owner, @Param("limit") int limit);
+
+    /** Deletes at most {@code limit} entries of the post, so one batch holds few row locks. */
+    @Modifying
+    @Query(value = "DELETE FROM timeline_entries WHERE post_id = :postId AND owner_id IN " +
+            "(SELECT owner_id FROM timeline_entries WHERE post_id = :postId LIMIT :limit)", nativeQuery = true)
+    int deleteBatchOfPost(@Param("postId") Long postId, @Param("limit") int limit);
+}
@@ -0,0 +1,36 @@
+package oth.ics.wtp.relaybackend.repositories;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import oth.ics.wtp.relaybackend.entities.TimelineState;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface TimelineStateRepository extends JpaRepository<TimelineState, Long> {
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE TimelineState s SET s.lastReadAt = :now WHERE s.owner = :owner")
+    int touch(@Param("owner") Long owner, @Param("now") LocalDateTime now);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE TimelineState s SET s.truncated = true WHERE s.owner = :owner")
+    int markTruncated(@Param("owner") Long owner);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM TimelineEntry t WHERE t.owner IN " +
+            "(SELECT s.owner FROM TimelineState s WHERE s.lastReadAt < :cutoff)")
+    int deleteEntriesOfInactive(@Param("cutoff") LocalDateTime cutoff);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM TimelineState s WHERE s.lastReadAt < :cutoff")
+    int deleteInactive(@Param("cutoff") LocalDateTime cutoff);
+}
@@ -1,16 +1,37 @@
 package oth.ics.wtp.relaybackend.repositories;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import oth.ics.wtp.relaybackend.entities.User;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
-public interface UserRepository extends JpaRepository<User, String> {
+public interface UserRepository extends JpaRepository<User, Long> {
     boolean existsByUsername(String username);
 
-    @Query("SELECT u FROM User u WHERE LOWER(u.username) LIKE LOWER(:pattern)")
-    List<User> searchByUsernamePattern(@Param("pattern") String usernamePattern);
+    Optional<User> findByUsername(String username);
+
+    List<User> findByUsernameIn(Collection<String> usernames);
+
+    @Query("SELECT u.id FROM User u WHERE u.username = :username")
+    Optional<Long> findIdByUsername(@Param("username") String username);
+
+    /** All usernames except those of accounts being deleted; must be consumed inside a transaction. */
+    @Query("SELECT u.username FROM User u WHERE NOT EXISTS (SELECT d FROM AccountDeletion d WHERE d.userId = u.id)")
+    Stream<String> streamAllUsernames();
+
+    @Query("SELECT u.id FROM User u WHERE u.id > :after ORDER BY u.id")
+    List<Long> findIdsAfter(@Param("after") long after, Pageable pageable);
+
+    /** Deletes the row alone; its posts, likes and follows must be gone already. */
+    @Modifying
+    @Query("DELETE FROM User u WHERE u.id = :id")
+    int deleteRow(@Param("id") Long id);
 }
\ No newline at end of file
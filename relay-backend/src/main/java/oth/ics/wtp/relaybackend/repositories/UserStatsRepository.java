@@ -0,0 +1,54 @@
+package oth.ics.wtp.relaybackend.repositories;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import oth.ics.wtp.relaybackend.entities.UserStats;
+
+import java.util.Collection;
+
+@Repository
+public interface UserStatsRepository extends JpaRepository<UserStats, Long> {
+
+    @Modifying
+    @Query("UPDATE UserStats s SET s.followers = s.followers + :delta WHERE s.userId = :userId")
+    int addFollowers(@Param("userId") Long userId, @Param("delta") long delta);
+
+    @Modifying
+    @Query("UPDATE UserStats s SET s.following = s.following + :delta WHERE s.userId = :userId")
+    int addFollowing(@Param("userId") Long userId, @Param("delta") long delta);
+
+    @Modifying
+    @Query("UPDATE UserStats s SET s.posts = s.posts + :delta WHERE s.userId = :userId")
+    int addPosts(@Param("userId") Long userId, @Param("delta") long delta);
+
+    @Modifying
+    @Query("UPDATE UserStats s SET s.followers = s.followers + :delta WHERE s.userId IN :userIds")
+    int addToFollowers(@Param("userIds") Collection<Long> userIds, @Param("delta") long delta);
+
+    @Modifying
+    @Query("UPDATE UserStats s SET s.following = s.following + :delta WHERE s.userId IN :userIds")
+    int addToFollowing(@Param("userIds") Collection<Long> userIds, @Param("delta") long delta);
+
+    /** Recounts the existing rows of the given users from the follow and post tables. */
+    @Modifying
+    @Query(value = "UPDATE user_stats SET " +
+            "followers = (SELECT COUNT(*) FROM user_follows f WHERE f.followed_id = user_stats.user_id), " +
+            "following = (SELECT COUNT(*) FROM user_follows f WHERE f.follower_id = user_stats.user_id), " +
+            "posts = (SELECT COUNT(*) FROM posts p WHERE p.author_id = user_stats.user_id AND p.deleted_at IS NULL) " +
+            "WHERE user_id IN (:userIds)", nativeQuery = true)
+    int recount(@Param("userIds") Collection<Long> userIds);
+
+    /** Creates the missing rows of the given users with counted values. */
+    @Modifying
+    @Query(value = "INSERT INTO user_stats (user_id, followers, following, posts) " +
+            "SELECT u.id, " +
+            "(SELECT COUNT(*) FROM user_follows f WHERE f.followed_id = u.id), " +
+            "(SELECT COUNT(*) FROM user_follows f WHERE f.follower_id = u.id), " +
+            "(SELECT COUNT(*) FROM posts p WHERE p.author_id = u.id AND p.deleted_at IS NULL) " +
+            "FROM relay_users u WHERE u.id IN (:userIds) " +
+            "AND NOT EXISTS (SELECT 1 FROM user_stats s WHERE s.user_id = u.id)", nativeQuery = true)
+    int insertCounted(@Param("userIds") Collection<Long> userIds);
+}
@@ -0,0 +1,219 @@
+package oth.ics.wtp.relaybackend.services;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+import oth.ics.wtp.relaybackend.dtos.AccountDeletionDto;
+import oth.ics.wtp.relaybackend.entities.AccountDeletion;
+import oth.ics.wtp.relaybackend.repositories.AccountDeletionRepository;
+import oth.ics.wtp.relaybackend.repositories.CommentRepository;
+import oth.ics.wtp.relaybackend.repositories.FollowRepository;
+import oth.ics.wtp.relaybackend.repositories.LikeRepository;
+import oth.ics.wtp.relaybackend.repositories.PostRepository;
+import oth.ics.wtp.relaybackend.repositories.TimelineEntryRepository;
+import oth.ics.wtp.relaybackend.repositories.TimelineStateRepository;
+import oth.ics.wtp.relaybackend.repositories.UserRepository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Deletes the rows of deleted accounts in the background. {@link UserService#deleteUser} only
+ * records the deletion and hides the account; this job then removes its follows, likes,
+ * comments, timeline and posts in chunks of {@code relay.account-deletion.chunk-size} rows, one
+ * transaction per chunk, adjusting the counters of the users and posts on the other ends as it
+ * goes. Nothing is loaded beyond one chunk of ids, so memory stays bounded however long the
+ * history. Each chunk advances the progress counters of its {@code account_deletions} row in the
+ * same transaction, and unfinished rows are picked up again by the next run, also after a restart.
+ */
+@Service
+public class AccountDeletions {
+
+    private static final Logger log = LoggerFactory.getLogger(AccountDeletions.class);
+
+    private final AccountDeletionRepository accountDeletionRepository;
+    private final FollowRepository followRepository;
+    private final LikeRepository likeRepository;
+    private final CommentRepository commentRepository;
+    private final PostRepository postRepository;
+    private final TimelineEntryRepository timelineEntryRepository;
+    private final TimelineStateRepository timelineStateRepository;
+    private final UserRepository userRepository;
+    private final UserStatsService userStatsService;
+    private final PostPurger postPurger;
+    private final VersionStamps versionStamps;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    // One run at a time, so the scheduled job and an explicit run never work on the same account
+    private final ReentrantLock running = new ReentrantLock();
+    private final AtomicLong pending = new AtomicLong();
+
+    public AccountDeletions(AccountDeletionRepository accountDeletionRepository,
+                            FollowRepository followRepository,
+                            LikeRepository likeRepository,
+                            CommentRepository commentRepository,
+                            PostRepository postRepository,
+                            TimelineEntryRepository timelineEntryRepository,
+                            TimelineStateRepository timelineStateRepository,
+                            UserRepository userRepository,
+                            UserStatsService userStatsService,
+                            PostPurger postPurger,
+                            VersionStamps versionStamps,
+                            PlatformTransactionManager transactionManager,
+                            MeterRegistry meterRegistry,
+                            @Value("${relay.account-deletion.chunk-size:500}") int chunkSize) {
+        this.accountDeletionRepository = accountDeletionRepository;
+        this.followRepository = followRepository;
+        this.likeRepository = likeRepository;
+        this.commentRepository = commentRepository;
+        this.postRepository = postRepository;
+        this.timelineEntryRepository = timelineEntryRepository;
+        this.timelineStateRepository = timelineStateRepository;
+        this.userRepository = userRepository;
+        this.userStatsService = userStatsService;
+        this.postPurger = postPurger;
+        this.versionStamps = versionStamps;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+        Gauge.builder("relay.account-deletion.pending", pending, AtomicLong::get).register(meterRegistry);
+    }
+
+    public AccountDeletionDto getProgress(Long userId) {
+        return accountDeletionRepository.findById(userId).map(AccountDeletions::toDto)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Account deletion not found"));
+    }
+
+    /** Works through every unfinished deletion, oldest first; one that fails is retried by the next run. */
+    @Scheduled(fixedDelayString = "${relay.account-deletion.interval-ms:1000}")
+    public void run() {
+        running.lock();
+        try {
+            for (Long userId : accountDeletionRepository.findOpenIds()) {
+                try {
+                    process(userId);
+                } catch (RuntimeException e) {
+                    // Its finished chunks are kept; the accounts queued behind it go on
+                    log.warn("Deletion of account {} failed, retrying with the next run", userId, e);
+                }
+            }
+            pending.set(accountDeletionRepository.countByFinishedAtIsNull());
+        } finally {
+            running.unlock();
+        }
+    }
+
+    static AccountDeletionDto toDto(AccountDeletion deletion) {
+        return new AccountDeletionDto(deletion.getUserId(), deletion.getUsername(), deletion.getRequestedAt(),
+                deletion.getFinishedAt(), deletion.getFollows(), deletion.getLikes(), deletion.getComments(),
+                deletion.getPosts());
+    }
+
+    private void process(Long userId) {
+        // Follows first, so the account drops out of other users' counters and follow lists soonest
+        inChunks(() -> deleteFollows(userId));
+        inChunks(() -> deleteLikes(userId));
+        inChunks(() -> deleteComments(userId));
+        inChunks(() -> timelineEntryRepository.deleteBatchOfOwner(userId, chunkSize));
+        int posts;
+        do {
+            posts = postPurger.purgeTombstonesOf(userId, chunkSize);
+            if (posts > 0) {
+                int purged = posts;
+                transactionTemplate.executeWithoutResult(status ->
+                        accountDeletionRepository.addProgress(userId, 0, 0, 0, purged));
+            }
+        } while (posts > 0);
+        if (!postRepository.findTombstonesOf(userId, 1).isEmpty()) {
+            // A post could not be purged yet; the next run tries again
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            timelineStateRepository.deleteById(userId);
+            userStatsService.onUserDeleted(userId);
+            userRepository.deleteRow(userId);
+            accountDeletionRepository.markFinished(userId, LocalDateTime.now());
+        });
+        log.info("Deleted account {}: {}", userId, getProgress(userId));
+    }
+
+    private void inChunks(Chunk chunk) {
+        int deleted;
+        do {
+            deleted = transactionTemplate.execute(status -> chunk.delete());
+        } while (deleted >= chunkSize);
+    }
+
+    private int deleteFollows(Long userId) {
+        List<Long> followed = new ArrayList<>();
+        List<Long> followers = new ArrayList<>();
+        for (Object[] edge : followRepository.findEdgesOf(userId, chunkSize)) {
+            Long follower = ((Number) edge[0]).longValue();
+            Long followee = ((Number) edge[1]).longValue();
+            if (follower.equals(userId)) {
+                followed.add(followee);
+            } else {
+                followers.add(follower);
+            }
+        }
+        if (!followed.isEmpty()) {
+            followRepository.deleteFollowing(userId, followed);
+        }
+        if (!followers.isEmpty()) {
+            followRepository.deleteFollowers(userId, followers);
+        }
+        userStatsService.onEdgesDeleted(followed, followers);
+        return record(userId, followed.size() + followers.size(), 0, 0);
+    }
+
+    private int deleteLikes(Long userId) {
+        List<Long> postIds = likeRepository.findPostIdsLikedBy(userId, chunkSize);
+        if (!postIds.isEmpty()) {
+            postRepository.addToLikeCounts(postIds, -1);
+            likeRepository.deleteByUserAndPostIn(userId, postIds);
+        }
+        return record(userId, 0, postIds.size(), 0);
+    }
+
+    private int deleteComments(Long userId) {
+        List<Long> ids = new ArrayList<>();
+        Map<Long, Integer> perPost = new HashMap<>();
+        for (Object[] row : commentRepository.findBatchOfUser(userId, chunkSize)) {
+            ids.add(((Number) row[0]).longValue());
+            perPost.merge(((Number) row[1]).longValue(), 1, Integer::sum);
+        }
+        if (!ids.isEmpty()) {
+            commentRepository.deleteByIdIn(ids);
+            perPost.forEach((postId, count) -> postRepository.addToCommentCount(postId, -count));
+        }
+        return record(userId, 0, 0, ids.size());
+    }
+
+    /** Adds a chunk to the progress and returns its size. */
+    private int record(Long userId, int follows, int likes, int comments) {
+        int total = follows + likes + comments;
+        if (total > 0) {
+            accountDeletionRepository.addProgress(userId, follows, likes, comments, 0);
+            // Counts shown on other users' profiles and posts changed
+            versionStamps.invalidateAll();
+        }
+        return total;
+    }
+
+    @FunctionalInterface
+    private interface Chunk {
+        int delete();
+    }
+}
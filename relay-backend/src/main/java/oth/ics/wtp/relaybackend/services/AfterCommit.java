@@ -0,0 +1,35 @@
+package oth.ics.wtp.relaybackend.services;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/** Defers in-memory updates until the database changes they mirror have committed. */
+final class AfterCommit {
+    private AfterCommit() {
+    }
+
+    /** Runs the action once the surrounding transaction commits, or right away outside of one. */
+    static void afterCommitOrNow(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            register(action);
+        } else {
+            action.run();
+        }
+    }
+
+    /** Runs the action again once the surrounding transaction commits, for callers that applied it already. */
+    static void alsoAfterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            register(action);
+        }
+    }
+
+    private static void register(Runnable action) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
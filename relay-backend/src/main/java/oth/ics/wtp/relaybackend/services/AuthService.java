@@ -15,10 +15,15 @@ import java.util.Optional;
 public class AuthService {
 
     private static final String SESSION_USER_NAME = "userName";
+    private static final String PRINCIPAL_ATTRIBUTE = AuthenticatedUser.class.getName();
     private final UserRepository userRepository;
+    private final UserIds userIds;
+    private final PasswordHasher passwordHasher;
 
-    public AuthService(UserRepository userRepository) {
+    public AuthService(UserRepository userRepository, UserIds userIds, PasswordHasher passwordHasher) {
         this.userRepository = userRepository;
+        this.userIds = userIds;
+        this.passwordHasher = passwordHasher;
     }
 
     public User logIn(HttpServletRequest request) {
@@ -38,12 +43,16 @@ public class AuthService {
             String userName = parts[0];
             String password = parts[1];
 
-            User user = userRepository.findById(userName)
+            User user = userRepository.findByUsername(userName)
                     .orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Incorrect username or password"));
 
-            if (!WeakCrypto.verifyPassword(password, user.getHashedPassword())) {
+            if (!passwordHasher.verify(password, user.getHashedPassword())) {
                 throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Incorrect username or password");
             }
+            if (passwordHasher.needsRehash(user.getHashedPassword())) {
+                user.setHashedPassword(passwordHasher.hash(password));
+                user = userRepository.save(user);
+            }
 
             request.getSession().setAttribute(SESSION_USER_NAME, userName);
 
@@ -68,8 +77,28 @@ public class AuthService {
         if (userName == null) {
             throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Not authenticated");
         }
-        return userRepository.findById(userName)
+        return userRepository.findByUsername(userName)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED, "User not found"));
+    }
+
+    /**
+     * The authenticated user without loading the entity: existence is answered by {@link UserIds},
+     * which forgets deleted users, and the result is kept on the request for later calls.
+     */
+    public AuthenticatedUser getPrincipal(HttpServletRequest request) {
+        AuthenticatedUser principal = (AuthenticatedUser) request.getAttribute(PRINCIPAL_ATTRIBUTE);
+        if (principal != null) {
+            return principal;
+        }
+        String userName = resolveUsername(request);
+        if (userName == null) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Not authenticated");
+        }
+        Long id = userIds.find(userName)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED, "User not found"));
+        principal = new AuthenticatedUser(id, userName);
+        request.setAttribute(PRINCIPAL_ATTRIBUTE, principal);
+        return principal;
     }
 
     public boolean isAuthenticated(HttpServletRequest request) {
@@ -82,8 +111,7 @@ public class AuthService {
     }
 
     public void requireUser(HttpServletRequest request, String username) {
-        User currentUser = getAuthenticatedUser(request);
-        if (!currentUser.getUsername().equals(username)) {
+        if (!getPrincipal(request).username().equals(username)) {
             throw new ResponseStatusException(HttpStatus.FORBIDDEN,
                     "You can only access your own resources");
         }
@@ -0,0 +1,5 @@
+package oth.ics.wtp.relaybackend.services;
+
+/** The user a request is authenticated as, known to exist when the request was authorized. */
+public record AuthenticatedUser(Long id, String username) {
+}
@@ -0,0 +1,49 @@
+package oth.ics.wtp.relaybackend.services;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import oth.ics.wtp.relaybackend.dtos.BatchDto;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/** Checks and answers batch lookups: results come back in request order, with a slot for every key. */
+final class Batches {
+
+    static final int MAX_SIZE = 250;
+
+    private Batches() {
+    }
+
+    /** The distinct keys of a batch request, rejecting empty, oversized and null entries. */
+    static <K> Set<K> distinct(List<K> keys) {
+        if (keys == null || keys.isEmpty() || keys.size() > MAX_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "A batch must have between 1 and " + MAX_SIZE + " entries");
+        }
+        Set<K> distinct = new LinkedHashSet<>(keys.size());
+        for (K key : keys) {
+            if (key == null) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "A batch cannot contain null");
+            }
+            distinct.add(key);
+        }
+        return distinct;
+    }
+
+    /** One item per requested key, null where nothing was found; those keys are also listed as not found. */
+    static <K, T> BatchDto<T> answer(List<K> keys, Map<K, T> found) {
+        List<T> items = new ArrayList<>(keys.size());
+        Set<String> notFound = new LinkedHashSet<>();
+        for (K key : keys) {
+            T item = found.get(key);
+            items.add(item);
+            if (item == null) {
+                notFound.add(String.valueOf(key));
+            }
+        }
+        return new BatchDto<>(items, List.copyOf(notFound));
+    }
+}
@@ -0,0 +1,241 @@
+package oth.ics.wtp.relaybackend.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import oth.ics.wtp.relaybackend.repositories.FollowRepository;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static oth.ics.wtp.relaybackend.services.AfterCommit.afterCommitOrNow;
+
+/**
+ * In-memory copy of {@code user_follows}. Usernames are interned to dense int ids and every user
+ * has two sorted {@code int[]} adjacency lists (followed and followers), about 8 bytes per edge.
+ * Edge checks are a binary search. Writes are serialized and replace a user's list with a
+ * modified copy, so readers never lock. The graph is bulk-loaded before the web server starts
+ * and follows the database after each follow transaction commits.
+ */
+@Service
+public class FollowGraph implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(FollowGraph.class);
+    private static final int[] NONE = new int[0];
+
+    private final FollowRepository followRepository;
+    private final TransactionTemplate readTransaction;
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    // Volatile re-assignment after each element store publishes the store to readers
+    private volatile String[] names = new String[1024];
+    private volatile int[][] following = new int[1024][];
+    private volatile int[][] followers = new int[1024][];
+    private int size;
+
+    public FollowGraph(FollowRepository followRepository, PlatformTransactionManager transactionManager) {
+        this.followRepository = followRepository;
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setReadOnly(true);
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        load();
+    }
+
+    /** Replaces the graph with the edges currently in the database. */
+    public synchronized void load() {
+        Map<Integer, IntList> out = new HashMap<>();
+        Map<Integer, IntList> in = new HashMap<>();
+        long[] edges = {0};
+        readTransaction.executeWithoutResult(status -> followRepository.streamAllEdges().forEach(edge -> {
+            int follower = intern((String) edge[0]);
+            int followed = intern((String) edge[1]);
+            out.computeIfAbsent(follower, id -> new IntList()).add(followed);
+            in.computeIfAbsent(followed, id -> new IntList()).add(follower);
+            edges[0]++;
+        }));
+        int[][] newFollowing = new int[names.length][];
+        int[][] newFollowers = new int[names.length][];
+        out.forEach((id, list) -> newFollowing[id] = list.sorted());
+        in.forEach((id, list) -> newFollowers[id] = list.sorted());
+        following = newFollowing;
+        followers = newFollowers;
+        log.info("Loaded follow graph with {} users and {} edges", size, edges[0]);
+    }
+
+    public boolean follows(String followerUsername, String followedUsername) {
+        Integer follower = ids.get(followerUsername);
+        Integer followed = ids.get(followedUsername);
+        return follower != null && followed != null
+                && Arrays.binarySearch(adjacency(following, follower), followed) >= 0;
+    }
+
+    /** The subset of {@code candidates} that the user follows, in no particular order. */
+    public Set<String> followedAmong(String username, Collection<String> candidates) {
+        Integer id = ids.get(username);
+        if (id == null) {
+            return Set.of();
+        }
+        int[] followed = adjacency(following, id);
+        Set<String> found = new HashSet<>();
+        for (String candidate : candidates) {
+            Integer candidateId = ids.get(candidate);
+            if (candidateId != null && Arrays.binarySearch(followed, candidateId) >= 0) {
+                found.add(candidate);
+            }
+        }
+        return found;
+    }
+
+    public List<String> following(String username) {
+        return resolve(following, username);
+    }
+
+    public List<String> followers(String username) {
+        return resolve(followers, username);
+    }
+
+    public int followerCount(String username) {
+        Integer id = ids.get(username);
+        return id == null ? 0 : adjacency(followers, id).length;
+    }
+
+    /** Applies the follow once the surrounding transaction, if any, has committed. */
+    public void onFollow(String followerUsername, String followedUsername) {
+        afterCommitOrNow(() -> addEdge(followerUsername, followedUsername));
+    }
+
+    public void onUnfollow(String followerUsername, String followedUsername) {
+        afterCommitOrNow(() -> removeEdge(followerUsername, followedUsername));
+    }
+
+    public void onUserDeleted(String username) {
+        afterCommitOrNow(() -> removeUser(username));
+    }
+
+    synchronized void addEdge(String followerUsername, String followedUsername) {
+        int follower = intern(followerUsername);
+        int followed = intern(followedUsername);
+        following[follower] = insert(adjacency(following, follower), followed);
+        followers[followed] = insert(adjacency(followers, followed), follower);
+        publish();
+    }
+
+    synchronized void removeEdge(String followerUsername, String followedUsername) {
+        Integer follower = ids.get(followerUsername);
+        Integer followed = ids.get(followedUsername);
+        if (follower == null || followed == null) {
+            return;
+        }
+        following[follower] = delete(adjacency(following, follower), followed);
+        followers[followed] = delete(adjacency(followers, followed), follower);
+        publish();
+    }
+
+    synchronized void removeUser(String username) {
+        Integer id = ids.get(username);
+        if (id == null) {
+            return;
+        }
+        for (int followed : adjacency(following, id)) {
+            followers[followed] = delete(adjacency(followers, followed), id);
+        }
+        for (int follower : adjacency(followers, id)) {
+            following[follower] = delete(adjacency(following, follower), id);
+        }
+        // The id stays interned, so a user registering the same name later simply reuses it
+        following[id] = NONE;
+        followers[id] = NONE;
+        publish();
+    }
+
+    private List<String> resolve(int[][] lists, String username) {
+        Integer id = ids.get(username);
+        if (id == null) {
+            return List.of();
+        }
+        String[] snapshot = names;
+        int[] adjacent = adjacency(lists, id);
+        List<String> usernames = new ArrayList<>(adjacent.length);
+        for (int other : adjacent) {
+            usernames.add(snapshot[other]);
+        }
+        return usernames;
+    }
+
+    private int intern(String username) {
+        Integer existing = ids.get(username);
+        if (existing != null) {
+            return existing;
+        }
+        int id = size++;
+        if (id == names.length) {
+            int capacity = names.length * 2;
+            names = Arrays.copyOf(names, capacity);
+            following = Arrays.copyOf(following, capacity);
+            followers = Arrays.copyOf(followers, capacity);
+        }
+        names[id] = username;
+        publish();
+        ids.put(username, id);
+        return id;
+    }
+
+    private void publish() {
+        names = names;
+        following = following;
+        followers = followers;
+    }
+
+    private static int[] adjacency(int[][] lists, int id) {
+        int[] list = id < lists.length ? lists[id] : null;
+        return list == null ? NONE : list;
+    }
+
+    private static int[] insert(int[] sorted, int value) {
+        int position = Arrays.binarySearch(sorted, value);
+        if (position >= 0) {
+            return sorted;
+        }
+        position = -position - 1;
+        int[] copy = new int[sorted.length + 1];
+        System.arraycopy(sorted, 0, copy, 0, position);
+        copy[position] = value;
+        System.arraycopy(sorted, position, copy, position + 1, sorted.length - position);
+        return copy;
+    }
+
+    private static int[] delete(int[] sorted, int value) {
+        int position = Arrays.binarySearch(sorted, value);
+        if (position < 0) {
+            return sorted;
+        }
+        int[] copy = new int[sorted.length - 1];
+        System.arraycopy(sorted, 0, copy, 0, position);
+        System.arraycopy(sorted, position + 1, copy, position, sorted.length - position - 1);
+        return copy;
+    }
+
+    /** Growable primitive list used while bulk loading. */
+    private static final class IntList {
+        private int[] values = new int[4];
+        private int length;
+
+        void add(int value) {
+            if (length == values.length) {
+                values = Arrays.copyOf(values, length * 2);
+            }
+            values[length++] = value;
+        }
+
+        int[] sorted() {
+            int[] result = Arrays.copyOf(values, length);
+            Arrays.sort(result);
+            return result;
+        }
+    }
+}
@@ -14,10 +14,18 @@ public class FollowService {
 
     private final UserRepository userRepository;
     private final FollowRepository followRepository;
+    private final TimelineService timelineService;
+    private final UserStatsService userStatsService;
+    private final FollowGraph followGraph;
+    private final VersionStamps versionStamps;
 
-    public FollowService(UserRepository userRepository, FollowRepository followRepository) {
+    public FollowService(UserRepository userRepository, FollowRepository followRepository, TimelineService timelineService, UserStatsService userStatsService, FollowGraph followGraph, VersionStamps versionStamps) {
         this.userRepository = userRepository;
         this.followRepository = followRepository;
+        this.timelineService = timelineService;
+        this.userStatsService = userStatsService;
+        this.followGraph = followGraph;
+        this.versionStamps = versionStamps;
     }
 
     @Transactional
@@ -26,43 +34,53 @@ public class FollowService {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Cannot follow yourself");
         }
 
-        User follower = userRepository.findById(followerUsername)
+        User follower = userRepository.findByUsername(followerUsername)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Follower not found"));
 
-        User followed = userRepository.findById(followedUsername)
+        User followed = userRepository.findByUsername(followedUsername)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "User to follow not found"));
 
-        if (followRepository.existsByFollowerUsernameAndFollowedUsername(followerUsername, followedUsername)) {
+        if (followRepository.existsByFollowerIdAndFollowedId(follower.getId(), followed.getId())) {
             throw new ResponseStatusException(HttpStatus.CONFLICT, "Already following this user");
         }
 
         Follow follow = new Follow(follower, followed);
         followRepository.save(follow);
+        userStatsService.onFollow(follower.getId(), followed.getId());
+        followGraph.onFollow(followerUsername, followedUsername);
+        versionStamps.bump(VersionStamps.Kind.FOLLOWS, followerUsername);
+        versionStamps.bump(VersionStamps.Kind.FOLLOWS, followedUsername);
+        timelineService.onFollow(follower, followed);
     }
 
     @Transactional
     public void unfollowUser(String followerUsername, String followedUsername) {
-        User follower = userRepository.findById(followerUsername)
+        User follower = userRepository.findByUsername(followerUsername)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Follower not found"));
 
-        User followed = userRepository.findById(followedUsername)
+        User followed = userRepository.findByUsername(followedUsername)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "User to unfollow not found"));
 
-        if (!followRepository.existsByFollowerUsernameAndFollowedUsername(followerUsername, followedUsername)) {
+        if (!followRepository.existsByFollowerIdAndFollowedId(follower.getId(), followed.getId())) {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Not following this user");
         }
 
-        Follow.FollowId followId = new Follow.FollowId(followerUsername, followedUsername);
+        Follow.FollowId followId = new Follow.FollowId(follower.getId(), followed.getId());
         followRepository.deleteById(followId);
+        userStatsService.onUnfollow(follower.getId(), followed.getId());
+        followGraph.onUnfollow(followerUsername, followedUsername);
+        versionStamps.bump(VersionStamps.Kind.FOLLOWS, followerUsername);
+        versionStamps.bump(VersionStamps.Kind.FOLLOWS, followedUsername);
+        timelineService.onUnfollow(follower, followed);
     }
 
     public boolean isFollowing(String followerUsername, String followedUsername) {
-        User follower = userRepository.findById(followerUsername)
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Follower not found"));
-
-        User followed = userRepository.findById(followedUsername)
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found"));
-
-        return followRepository.existsByFollowerUsernameAndFollowedUsername(followerUsername, followedUsername);
+        if (!userRepository.existsByUsername(followerUsername)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Follower not found");
+        }
+        if (!userRepository.existsByUsername(followedUsername)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found");
+        }
+        return followGraph.follows(followerUsername, followedUsername);
     }
 }
\ No newline at end of file
@@ -0,0 +1,42 @@
+package oth.ics.wtp.relaybackend.services;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import oth.ics.wtp.relaybackend.entities.PostHashtag;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/** Hashtag parsing: {@code #} plus letters, digits and underscores, compared case-insensitively. */
+public final class Hashtags {
+
+    private static final String TAG = "[\\p{L}\\p{N}_]{1," + PostHashtag.MAX_LENGTH + "}";
+    // A tag starts at a word boundary and must end there too, so over-long tags are ignored
+    private static final Pattern IN_TEXT = Pattern.compile("(?<![\\p{L}\\p{N}_#])#(" + TAG + ")(?![\\p{L}\\p{N}_])");
+    private static final Pattern ALONE = Pattern.compile("#?(" + TAG + ")");
+
+    private Hashtags() {}
+
+    /** The distinct tags of the text in order of appearance, lower-cased and without {@code #}. */
+    public static List<String> parse(String text) {
+        Set<String> tags = new LinkedHashSet<>();
+        Matcher matcher = IN_TEXT.matcher(text);
+        while (matcher.find()) {
+            tags.add(matcher.group(1).toLowerCase(Locale.ROOT));
+        }
+        return List.copyOf(tags);
+    }
+
+    /** Normalizes a tag given on its own, e.g. in a request path, with or without {@code #}. */
+    public static String normalize(String tag) {
+        Matcher matcher = ALONE.matcher(tag.trim());
+        if (!matcher.matches()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid hashtag");
+        }
+        return matcher.group(1).toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,191 @@
+package oth.ics.wtp.relaybackend.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import oth.ics.wtp.relaybackend.entities.Post;
+import oth.ics.wtp.relaybackend.repositories.PostRepository;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static oth.ics.wtp.relaybackend.services.AfterCommit.afterCommitOrNow;
+
+/**
+ * Write-behind like counts. Likes and unlikes only add to an in-memory {@link LongAdder} per post;
+ * a scheduled flush moves the accumulated deltas into {@code posts.like_count} with one UPDATE per
+ * distinct delta. Readers add the deltas not yet flushed to the persisted count, so a like is
+ * visible immediately. For posts in a batch being flushed or just flushed, readers re-read the
+ * column under the lock the flush holds while it commits, so such a delta is counted exactly once
+ * whether or not the loaded post already had it. Deltas lost in a crash are repaired by
+ * recounting at startup.
+ */
+@Service
+public class LikeCounters implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(LikeCounters.class);
+    private static final int UPDATE_BATCH_SIZE = 500;
+
+    private final PostRepository postRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int reconcileChunk;
+    // Writers and readers share the read lock; the flush takes the write lock to swap the maps and to commit
+    private final ReadWriteLock swapLock = new ReentrantReadWriteLock();
+    private volatile Map<Long, LongAdder> pending = new ConcurrentHashMap<>();
+    private volatile Map<Long, LongAdder> flushing = Map.of();
+    // The last committed batch; posts loaded just before its commit do not have it yet
+    private volatile Map<Long, LongAdder> flushed = Map.of();
+
+    public LikeCounters(PostRepository postRepository,
+                        PlatformTransactionManager transactionManager,
+                        @Value("${relay.likes.reconcile-chunk:10000}") int reconcileChunk) {
+        this.postRepository = postRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.reconcileChunk = reconcileChunk;
+    }
+
+    /** Recounts before the web server accepts requests, so no delta can be counted twice. */
+    @Override
+    public void afterSingletonsInstantiated() {
+        reconcile();
+    }
+
+    /** Records a like or unlike once the surrounding transaction, if any, has committed. */
+    public void add(Long postId, long delta) {
+        afterCommitOrNow(() -> apply(postId, delta));
+    }
+
+    /** Like counts of the posts, flushed and unflushed, by post id. */
+    public Map<Long, Long> counts(Collection<Post> posts) {
+        Map<Long, Long> counts = new HashMap<>();
+        swapLock.readLock().lock();
+        try {
+            List<Long> settling = posts.stream().map(Post::getId)
+                    .filter(id -> flushing.containsKey(id) || flushed.containsKey(id)).toList();
+            Map<Long, Long> stored = new HashMap<>();
+            if (!settling.isEmpty()) {
+                postRepository.findLikeCounts(settling).forEach(row -> stored.put((Long) row[0], ((Number) row[1]).longValue()));
+            }
+            for (Post post : posts) {
+                counts.put(post.getId(), stored.getOrDefault(post.getId(), post.getLikeCount()) + unflushed(post.getId()));
+            }
+        } finally {
+            swapLock.readLock().unlock();
+        }
+        return counts;
+    }
+
+    /** Likes of the post that are not in {@code posts.like_count} yet. */
+    public long unflushed(Long postId) {
+        return sum(pending.get(postId)) + sum(flushing.get(postId));
+    }
+
+    @Scheduled(fixedDelayString = "${relay.likes.flush-interval-ms:1000}")
+    public void flush() {
+        swapLock.writeLock().lock();
+        try {
+            if (pending.isEmpty()) {
+                return;
+            }
+            flushing = pending;
+            pending = new ConcurrentHashMap<>();
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+
+        // Most deltas are +1 or -1, so grouping by delta turns a flush into a handful of statements
+        Map<Long, LongAdder> batch = flushing;
+        Map<Long, List<Long>> postsByDelta = new HashMap<>();
+        batch.forEach((postId, adder) -> {
+            long delta = adder.sum();
+            if (delta != 0) {
+                postsByDelta.computeIfAbsent(delta, d -> new ArrayList<>()).add(postId);
+            }
+        });
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void beforeCompletion() {
+                        // Held until the batch is out of memory, so readers see it either here or in the column
+                        swapLock.writeLock().lock();
+                    }
+
+                    @Override
+                    public void afterCompletion(int status) {
+                        try {
+                            settle(batch, status == STATUS_COMMITTED);
+                        } finally {
+                            swapLock.writeLock().unlock();
+                        }
+                    }
+                });
+                postsByDelta.forEach((delta, postIds) -> {
+                    for (int i = 0; i < postIds.size(); i += UPDATE_BATCH_SIZE) {
+                        postRepository.addToLikeCounts(postIds.subList(i, Math.min(i + UPDATE_BATCH_SIZE, postIds.size())), delta);
+                    }
+                });
+            });
+        } catch (RuntimeException e) {
+            log.warn("Like count flush failed, retrying with the next flush", e);
+        }
+        if (flushing == batch) {
+            // The transaction never started
+            settle(batch, false);
+        }
+    }
+
+    /** Resets every post's like count to its number of like rows, in id ranges of one transaction each. */
+    public int reconcile() {
+        long maxId = postRepository.findMaxId();
+        int fixed = 0;
+        for (long from = 1; from <= maxId; from += reconcileChunk) {
+            long start = from;
+            Integer updated = transactionTemplate.execute(status ->
+                    postRepository.reconcileLikeCounts(start, start + reconcileChunk));
+            fixed += updated == null ? 0 : updated;
+        }
+        if (fixed > 0) {
+            log.info("Reconciled {} drifted like counts", fixed);
+        }
+        return fixed;
+    }
+
+    /** Drops a flushed batch; one that did not commit goes back to the pending deltas. */
+    private void settle(Map<Long, LongAdder> batch, boolean committed) {
+        swapLock.writeLock().lock();
+        try {
+            if (committed) {
+                flushed = batch;
+            } else {
+                batch.forEach((postId, adder) -> pending.computeIfAbsent(postId, id -> new LongAdder()).add(adder.sum()));
+            }
+            flushing = Map.of();
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+    }
+
+    private void apply(Long postId, long delta) {
+        swapLock.readLock().lock();
+        try {
+            pending.computeIfAbsent(postId, id -> new LongAdder()).add(delta);
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+
+    private static long sum(LongAdder adder) {
+        return adder == null ? 0 : adder.sum();
+    }
+}
@@ -0,0 +1,97 @@
+package oth.ics.wtp.relaybackend.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * BCrypt hashing and verification on the bounded {@code passwordExecutor}. Callers still wait
+ * for the result, but at most a fixed number of hashes run at once; when the queue is full the
+ * request fails fast with 503 and {@code Retry-After}. Hashes made with another cost than
+ * {@code relay.passwords.bcrypt-cost} are reported by {@link #needsRehash} so logins can upgrade
+ * them.
+ */
+@Service
+public class PasswordHasher {
+
+    private final ThreadPoolTaskExecutor executor;
+    private final BCryptPasswordEncoder encoder;
+    private final int cost;
+    private final String retryAfterSeconds;
+    private final Timer hashTimer;
+    private final Timer verifyTimer;
+    private final Counter rejected;
+
+    public PasswordHasher(@Qualifier("passwordExecutor") ThreadPoolTaskExecutor executor,
+                          MeterRegistry meterRegistry,
+                          @Value("${relay.passwords.bcrypt-cost:12}") int cost,
+                          @Value("${relay.passwords.retry-after-seconds:2}") int retryAfterSeconds) {
+        this.executor = executor;
+        this.encoder = new BCryptPasswordEncoder(cost);
+        this.cost = cost;
+        this.retryAfterSeconds = String.valueOf(retryAfterSeconds);
+        this.hashTimer = Timer.builder("relay.passwords").tag("operation", "hash").register(meterRegistry);
+        this.verifyTimer = Timer.builder("relay.passwords").tag("operation", "verify").register(meterRegistry);
+        this.rejected = meterRegistry.counter("relay.passwords.rejected");
+        Gauge.builder("relay.passwords.queue", executor, e -> e.getThreadPoolExecutor().getQueue().size())
+                .register(meterRegistry);
+    }
+
+    public String hash(String password) {
+        return run(() -> hashTimer.record(() -> encoder.encode(password)));
+    }
+
+    public boolean verify(String password, String storedHash) {
+        return run(() -> verifyTimer.record(() -> encoder.matches(password, storedHash)));
+    }
+
+    /** Whether the hash was made with a cost other than the configured one. */
+    public boolean needsRehash(String storedHash) {
+        // BCrypt hashes look like $2a$12$..., the cost being the two digits after the version
+        try {
+            return Integer.parseInt(storedHash.substring(4, 6)) != cost;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    private <T> T run(Callable<T> task) {
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (TaskRejectedException e) {
+            rejected.increment();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Server busy, try again shortly") {
+                @Override
+                public HttpHeaders getHeaders() {
+                    HttpHeaders headers = new HttpHeaders();
+                    headers.set(HttpHeaders.RETRY_AFTER, retryAfterSeconds);
+                    return headers;
+                }
+            };
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Interrupted");
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
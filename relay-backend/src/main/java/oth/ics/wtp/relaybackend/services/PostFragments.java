@@ -0,0 +1,357 @@
+package oth.ics.wtp.relaybackend.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import oth.ics.wtp.relaybackend.dtos.PageDto;
+import oth.ics.wtp.relaybackend.dtos.PostDto;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import static oth.ics.wtp.relaybackend.services.AfterCommit.alsoAfterCommit;
+
+/**
+ * Serialized posts kept off the heap, so pages of posts are written by splicing bytes instead of
+ * running Jackson over every post again. A post's fragment is its JSON up to the count fields,
+ * which never changes, together with the same bytes deflated on their own; like count, comment
+ * count and like flag are appended per response, so likes and comments need no invalidation.
+ * <p>
+ * Fragments live in one direct buffer of {@code relay.post-cache.capacity}, filled like a ring:
+ * new fragments overwrite the oldest, and an index entry whose bytes were overwritten counts as a
+ * miss. Each deflated fragment ends with a full flush, so the fragments of a page, with the bytes
+ * in between as stored blocks, form one gzip stream without compressing anything per response.
+ */
+@Service
+public class PostFragments {
+
+    // Larger fragments are served but not cached; also the size of the copy buffers
+    private static final int MAX_FRAGMENT = 4096;
+    private static final int MAX_POOLED_BUFFERS = 256;
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+    private static final byte[] ITEMS_START = ascii("{\"items\":[");
+    private static final byte[] NEXT_CURSOR = ascii(",\"nextCursor\":");
+    private static final byte[] TRUE_END = ascii("true}");
+    private static final byte[] FALSE_END = ascii("false}");
+
+    private final ObjectMapper objectMapper;
+    private final int capacity;
+    private final ByteBuffer slab;
+    private final Map<Long, Slot> slots = new ConcurrentHashMap<>();
+    private final ReadWriteLock slabLock = new ReentrantReadWriteLock();
+    // End of the last stored fragment, counted from the first one across all laps of the ring
+    private long written;
+    private final Deflater deflater;
+    private final ReentrantLock deflaterLock = new ReentrantLock();
+    // Copy buffers handed from response to response, so a cached page allocates next to nothing
+    private final Queue<Buffers> pool = new ConcurrentLinkedQueue<>();
+    private final byte[] zeroCountsTail;
+    private final byte[] likeCountField;
+    private final byte[] commentCountField;
+    private final byte[] likedField;
+    private final Counter hits;
+    private final Counter misses;
+
+    public PostFragments(ObjectMapper objectMapper,
+                         MeterRegistry meterRegistry,
+                         @Value("${relay.post-cache.capacity:32MB}") DataSize capacity,
+                         @Value("${relay.post-cache.compression-level:6}") int compressionLevel) {
+        this.objectMapper = objectMapper;
+        this.capacity = (int) capacity.toBytes();
+        this.slab = ByteBuffer.allocateDirect(this.capacity);
+        this.deflater = new Deflater(compressionLevel, true);
+        // Take the count fields exactly as Jackson writes them
+        String counts = ",\"likeCount\":0,\"commentCount\":0";
+        String probe = json(new PostDto(1L, "", "", LocalDateTime.of(2000, 1, 1, 0, 0), 0, 0, false));
+        int start = probe.lastIndexOf(counts + ",");
+        if (start < 0 || !probe.endsWith(":false}")) {
+            throw new IllegalStateException("Unexpected PostDto layout " + probe);
+        }
+        String tail = probe.substring(start);
+        this.zeroCountsTail = ascii(tail);
+        this.likeCountField = ascii(",\"likeCount\":");
+        this.commentCountField = ascii(",\"commentCount\":");
+        this.likedField = ascii(tail.substring(counts.length(), tail.length() - "false}".length()));
+        this.hits = Counter.builder("relay.post-cache").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("relay.post-cache").tag("result", "miss").register(meterRegistry);
+    }
+
+    /** Writes the page as Jackson would. */
+    public void writeJson(PageDto<PostDto> page, OutputStream out) throws IOException {
+        Buffers buffers = borrow();
+        try {
+            Pending pending = buffers.pending();
+            pending.write(ITEMS_START);
+            List<PostDto> items = page.items();
+            for (int i = 0; i < items.size(); i++) {
+                if (i > 0) {
+                    pending.write(',');
+                }
+                PostDto post = items.get(i);
+                Fragment fragment = fragment(post, buffers.fragment());
+                pending.flushTo(out);
+                out.write(fragment.bytes(), 0, fragment.jsonLength());
+                writeCounts(post, pending);
+            }
+            writeEnd(page, pending);
+            pending.flushTo(out);
+        } finally {
+            giveBack(buffers);
+        }
+    }
+
+    /** Writes the page as a gzip stream of the cached deflated fragments and stored blocks for the rest. */
+    public void writeGzip(PageDto<PostDto> page, OutputStream out) throws IOException {
+        Buffers buffers = borrow();
+        try {
+            Pending pending = buffers.pending();
+            CRC32 crc = new CRC32();
+            long size = 0;
+            out.write(GZIP_HEADER);
+            pending.write(ITEMS_START);
+            List<PostDto> items = page.items();
+            for (int i = 0; i < items.size(); i++) {
+                if (i > 0) {
+                    pending.write(',');
+                }
+                PostDto post = items.get(i);
+                Fragment fragment = fragment(post, buffers.fragment());
+                size += stored(pending, false, crc, out);
+                out.write(fragment.bytes(), fragment.jsonLength(), fragment.deflatedLength());
+                crc.update(fragment.bytes(), 0, fragment.jsonLength());
+                size += fragment.jsonLength();
+                writeCounts(post, pending);
+            }
+            writeEnd(page, pending);
+            size += stored(pending, true, crc, out);
+            writeIntLe(out, (int) crc.getValue());
+            writeIntLe(out, (int) size);
+        } finally {
+            giveBack(buffers);
+        }
+    }
+
+    public void onPostDeleted(Long postId) {
+        slots.remove(postId);
+        alsoAfterCommit(() -> slots.remove(postId));
+    }
+
+    int cachedCount() {
+        return slots.size();
+    }
+
+    private Fragment fragment(PostDto post, byte[] scratch) {
+        Slot slot = slots.get(post.id());
+        if (slot != null) {
+            slabLock.readLock().lock();
+            try {
+                if (slot.start() >= written - capacity) {
+                    slab.get((int) (slot.start() % capacity), scratch, 0, slot.jsonLength() + slot.deflatedLength());
+                    hits.increment();
+                    return new Fragment(scratch, slot.jsonLength(), slot.deflatedLength());
+                }
+            } finally {
+                slabLock.readLock().unlock();
+            }
+        }
+        misses.increment();
+        Fragment fragment = build(post);
+        store(post.id(), fragment);
+        return fragment;
+    }
+
+    private Fragment build(PostDto post) {
+        byte[] json;
+        try {
+            json = objectMapper.writeValueAsBytes(new PostDto(post.id(), post.content(), post.authorUsername(),
+                    post.createdAt(), 0, 0, false));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        int jsonLength = json.length - zeroCountsTail.length;
+        byte[] bytes = Arrays.copyOf(json, jsonLength + jsonLength + 64);
+        deflaterLock.lock();
+        try {
+            deflater.reset();
+            deflater.setInput(json, 0, jsonLength);
+            int deflatedLength = 0;
+            while (true) {
+                deflatedLength += deflater.deflate(bytes, jsonLength + deflatedLength,
+                        bytes.length - jsonLength - deflatedLength, Deflater.FULL_FLUSH);
+                if (jsonLength + deflatedLength < bytes.length) {
+                    return new Fragment(bytes, jsonLength, deflatedLength);
+                }
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+        } finally {
+            deflaterLock.unlock();
+        }
+    }
+
+    private void store(Long postId, Fragment fragment) {
+        int length = fragment.jsonLength() + fragment.deflatedLength();
+        if (length > MAX_FRAGMENT || length > capacity) {
+            return;
+        }
+        slabLock.writeLock().lock();
+        try {
+            long start = written;
+            int offset = (int) (start % capacity);
+            if (offset + length > capacity) {
+                // Start the next lap rather than splitting the fragment
+                start += capacity - offset;
+                offset = 0;
+            }
+            written = start + length;
+            slab.put(offset, fragment.bytes(), 0, length);
+            slots.put(postId, new Slot(start, fragment.jsonLength(), fragment.deflatedLength()));
+            if (offset == 0) {
+                slots.values().removeIf(slot -> slot.start() < written - capacity);
+            }
+        } finally {
+            slabLock.writeLock().unlock();
+        }
+    }
+
+    private void writeCounts(PostDto post, Pending out) {
+        out.write(likeCountField);
+        out.writeDecimal(post.likeCount());
+        out.write(commentCountField);
+        out.writeDecimal(post.commentCount());
+        out.write(likedField);
+        out.write(post.isLikedByCurrentUser() ? TRUE_END : FALSE_END);
+    }
+
+    private void writeEnd(PageDto<PostDto> page, Pending out) throws IOException {
+        out.write(']');
+        if (page.nextCursor() != null) {
+            out.write(NEXT_CURSOR);
+            out.write(objectMapper.writeValueAsBytes(page.nextCursor()));
+        }
+        out.write('}');
+    }
+
+    /** Writes the pending bytes as stored deflate blocks and empties them; returns their length. */
+    private static int stored(Pending pending, boolean last, CRC32 crc, OutputStream out) throws IOException {
+        byte[] bytes = pending.bytes();
+        int count = pending.size();
+        pending.reset();
+        int offset = 0;
+        do {
+            int length = Math.min(count - offset, 0xffff);
+            boolean fin = last && offset + length == count;
+            // Every fragment ends byte-aligned, so the three header bits are padded to a whole byte
+            out.write(fin ? 1 : 0);
+            out.write(length & 0xff);
+            out.write(length >>> 8);
+            out.write(~length & 0xff);
+            out.write((~length >>> 8) & 0xff);
+            out.write(bytes, offset, length);
+            offset += length;
+        } while (offset < count);
+        crc.update(bytes, 0, count);
+        return count;
+    }
+
+    private static void writeIntLe(OutputStream out, int value) throws IOException {
+        out.write(value & 0xff);
+        out.write((value >>> 8) & 0xff);
+        out.write((value >>> 16) & 0xff);
+        out.write((value >>> 24) & 0xff);
+    }
+
+    private Buffers borrow() {
+        Buffers buffers = pool.poll();
+        return buffers != null ? buffers : new Buffers(new byte[MAX_FRAGMENT], new Pending());
+    }
+
+    private void giveBack(Buffers buffers) {
+        buffers.pending().reset();
+        // Only sizes that came from the pool go back; a rare large cursor should not stay around
+        if (buffers.pending().bytes().length <= MAX_FRAGMENT && pool.size() < MAX_POOLED_BUFFERS) {
+            pool.offer(buffers);
+        }
+    }
+
+    private String json(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /** Where a post's fragment starts in the ring, counted across laps. */
+    private record Slot(long start, int jsonLength, int deflatedLength) {
+    }
+
+    /** JSON in {@code bytes[0, jsonLength)}, followed by its deflated form. */
+    private record Fragment(byte[] bytes, int jsonLength, int deflatedLength) {
+    }
+
+    private record Buffers(byte[] fragment, Pending pending) {
+    }
+
+    /** The bytes between fragments: brackets, commas and like fields. */
+    private static final class Pending extends ByteArrayOutputStream {
+
+        Pending() {
+            super(256);
+        }
+
+        byte[] bytes() {
+            return buf;
+        }
+
+        @Override
+        public void write(byte[] bytes) {
+            write(bytes, 0, bytes.length);
+        }
+
+        void writeDecimal(int number) {
+            long value = number;
+            if (value < 0) {
+                write('-');
+                value = -value;
+            }
+            int start = count;
+            do {
+                write((int) ('0' + value % 10));
+                value /= 10;
+            } while (value > 0);
+            // Digits came out least significant first
+            for (int i = start, j = count - 1; i < j; i++, j--) {
+                byte digit = buf[i];
+                buf[i] = buf[j];
+                buf[j] = digit;
+            }
+        }
+
+        void flushTo(OutputStream out) throws IOException {
+            out.write(buf, 0, count);
+            reset();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package oth.ics.wtp.relaybackend.services;
+
+import org.springframework.stereotype.Service;
+import oth.ics.wtp.relaybackend.dtos.PostDto;
+import oth.ics.wtp.relaybackend.entities.Post;
+import oth.ics.wtp.relaybackend.repositories.LikeRepository;
+
+import java.util.*;
+
+/**
+ * Turns a page of posts into {@link PostDto}s with a fixed number of queries: like counts come
+ * from the posts themselves plus {@link LikeCounters}, and for a signed-in viewer one lookup
+ * finds which of the page's posts the viewer liked.
+ */
+@Service
+public class PostHydrator {
+
+    private final LikeRepository likeRepository;
+    private final LikeCounters likeCounters;
+
+    public PostHydrator(LikeRepository likeRepository, LikeCounters likeCounters) {
+        this.likeRepository = likeRepository;
+        this.likeCounters = likeCounters;
+    }
+
+    public List<PostDto> hydrate(List<Post> posts, String currentUsername) {
+        if (posts.isEmpty()) {
+            return List.of();
+        }
+        List<Long> postIds = posts.stream().map(Post::getId).toList();
+
+        Set<Long> liked = currentUsername == null
+                ? Set.of()
+                : new HashSet<>(likeRepository.findLikedPostIds(currentUsername, postIds));
+
+        Map<Long, Long> likeCounts = likeCounters.counts(posts);
+        List<PostDto> dtos = new ArrayList<>(posts.size());
+        for (Post post : posts) {
+            dtos.add(new PostDto(
+                    post.getId(),
+                    post.getContent(),
+                    post.getAuthor().getUsername(),
+                    post.getCreatedAt(),
+                    likeCounts.get(post.getId()).intValue(),
+                    (int) post.getCommentCount(),
+                    liked.contains(post.getId())
+            ));
+        }
+        return dtos;
+    }
+
+    public PostDto hydrate(Post post, String currentUsername) {
+        return hydrate(List.of(post), currentUsername).get(0);
+    }
+}
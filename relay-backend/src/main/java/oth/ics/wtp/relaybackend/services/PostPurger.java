@@ -0,0 +1,170 @@
+package oth.ics.wtp.relaybackend.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import oth.ics.wtp.relaybackend.repositories.CommentRepository;
+import oth.ics.wtp.relaybackend.repositories.LikeRepository;
+import oth.ics.wtp.relaybackend.repositories.PostHashtagRepository;
+import oth.ics.wtp.relaybackend.repositories.PostRepository;
+import oth.ics.wtp.relaybackend.repositories.TimelineEntryRepository;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Removes deleted posts in the background. Deleting a post only tombstones it, which hides it
+ * from every read at once; this purger then deletes its likes, comments, timeline entries and tags in
+ * batches of {@code relay.purge.batch-size} rows, each in its own transaction, so a post with
+ * thousands of likes never holds their row locks for longer than one batch. The post row goes
+ * last. {@code relay.purge.pending} and {@code relay.purge.lag} report how far it is behind.
+ */
+@Service
+public class PostPurger {
+
+    private static final Logger log = LoggerFactory.getLogger(PostPurger.class);
+    // Tombstones fetched per round; a run takes rounds until none are left
+    private static final int TOMBSTONES_PER_ROUND = 100;
+
+    private final PostRepository postRepository;
+    private final LikeRepository likeRepository;
+    private final CommentRepository commentRepository;
+    private final TimelineEntryRepository timelineEntryRepository;
+    private final PostHashtagRepository postHashtagRepository;
+    private final PostSearchIndex postSearchIndex;
+    private final TrendingPosts trendingPosts;
+    private final PostFragments postFragments;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final AtomicLong pending = new AtomicLong();
+    private final AtomicLong lagSeconds = new AtomicLong();
+    private final Counter likesPurged;
+    private final Counter commentsPurged;
+    private final Counter entriesPurged;
+    private final Counter tagsPurged;
+    private final Counter postsPurged;
+
+    public PostPurger(PostRepository postRepository,
+                      LikeRepository likeRepository,
+                      CommentRepository commentRepository,
+                      TimelineEntryRepository timelineEntryRepository,
+                      PostHashtagRepository postHashtagRepository,
+                      PostSearchIndex postSearchIndex,
+                      TrendingPosts trendingPosts,
+                      PostFragments postFragments,
+                      PlatformTransactionManager transactionManager,
+                      MeterRegistry meterRegistry,
+                      @Value("${relay.purge.batch-size:500}") int batchSize) {
+        this.postRepository = postRepository;
+        this.likeRepository = likeRepository;
+        this.commentRepository = commentRepository;
+        this.timelineEntryRepository = timelineEntryRepository;
+        this.postHashtagRepository = postHashtagRepository;
+        this.postSearchIndex = postSearchIndex;
+        this.trendingPosts = trendingPosts;
+        this.postFragments = postFragments;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        Gauge.builder("relay.purge.pending", pending, AtomicLong::get).register(meterRegistry);
+        Gauge.builder("relay.purge.lag", lagSeconds, AtomicLong::get).baseUnit("seconds").register(meterRegistry);
+        this.likesPurged = purgedRows("likes", meterRegistry);
+        this.commentsPurged = purgedRows("comments", meterRegistry);
+        this.entriesPurged = purgedRows("timeline_entries", meterRegistry);
+        this.tagsPurged = purgedRows("post_hashtags", meterRegistry);
+        this.postsPurged = purgedRows("posts", meterRegistry);
+    }
+
+    /** Purges every tombstone there is; ones that fail are skipped until the next run. */
+    @Scheduled(fixedDelayString = "${relay.purge.interval-ms:1000}")
+    public void purge() {
+        Set<Long> failed = new HashSet<>();
+        List<Object[]> tombstones;
+        do {
+            // Failed tombstones stay at the front, so fetch past them
+            tombstones = postRepository.findTombstones(TOMBSTONES_PER_ROUND + failed.size()).stream()
+                    .filter(row -> !failed.contains(((Number) row[0]).longValue()))
+                    .toList();
+            for (Object[] row : tombstones) {
+                Long postId = ((Number) row[0]).longValue();
+                if (purge(postId, (String) row[1]) == 0) {
+                    failed.add(postId);
+                }
+            }
+        } while (!tombstones.isEmpty());
+        updateBacklog();
+    }
+
+    /** Purges up to {@code limit} of the author's tombstones now; returns how many post rows went. */
+    public int purgeTombstonesOf(Long authorId, int limit) {
+        int purged = 0;
+        for (Object[] row : postRepository.findTombstoneContentsOf(authorId, limit)) {
+            purged += purge(((Number) row[0]).longValue(), (String) row[1]);
+        }
+        return purged;
+    }
+
+    /** Purges one tombstone; returns 0 if it failed or was gone already, so the caller can move on. */
+    private int purge(Long postId, String content) {
+        // Posts of deleted accounts were hidden all at once, never through PostService#deletePost,
+        // so they leave the in-memory indexes here; for the others this is a no-op
+        postSearchIndex.onPostDeleted(postId, content);
+        trendingPosts.onPostDeleted(postId);
+        postFragments.onPostDeleted(postId);
+        try {
+            inBatches(postId, likeRepository::deleteBatchOfPost, likesPurged);
+            inBatches(postId, commentRepository::deleteBatchOfPost, commentsPurged);
+            inBatches(postId, timelineEntryRepository::deleteBatchOfPost, entriesPurged);
+            // Posts deleted one by one lost their tags already; those of deleted accounts did not
+            inBatches(postId, postHashtagRepository::deleteBatchOfPost, tagsPurged);
+            Integer deleted = transactionTemplate.execute(status -> postRepository.deleteTombstone(postId));
+            postsPurged.increment(deleted);
+            return deleted;
+        } catch (DataIntegrityViolationException e) {
+            // A like or comment slipped in before the tombstone was visible to its writer
+            log.debug("Rows of deleted post {} appeared during its purge", postId);
+            return 0;
+        } catch (RuntimeException e) {
+            log.warn("Purge of deleted post {} failed, retrying with the next run", postId, e);
+            return 0;
+        }
+    }
+
+    private void inBatches(Long postId, BatchDelete delete, Counter purged) {
+        int deleted;
+        do {
+            deleted = transactionTemplate.execute(status -> delete.apply(postId, batchSize));
+            purged.increment(deleted);
+        } while (deleted >= batchSize);
+    }
+
+    private void updateBacklog() {
+        Object[] backlog = postRepository.findTombstoneBacklog().get(0);
+        pending.set(((Number) backlog[0]).longValue());
+        Object oldest = backlog[1];
+        lagSeconds.set(oldest == null ? 0 : Duration.between(
+                oldest instanceof Timestamp sql ? sql.toLocalDateTime() : (LocalDateTime) oldest,
+                LocalDateTime.now()).toSeconds());
+    }
+
+    private static Counter purgedRows(String table, MeterRegistry meterRegistry) {
+        return Counter.builder("relay.purge.rows").tag("table", table).register(meterRegistry);
+    }
+
+    @FunctionalInterface
+    private interface BatchDelete {
+        int apply(Long postId, int limit);
+    }
+}
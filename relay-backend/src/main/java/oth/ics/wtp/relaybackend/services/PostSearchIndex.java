@@ -0,0 +1,497 @@
+package oth.ics.wtp.relaybackend.services;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import oth.ics.wtp.relaybackend.repositories.PostRepository;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static oth.ics.wtp.relaybackend.services.AfterCommit.afterCommitOrNow;
+
+/**
+ * Inverted index over post content. Content is split into lower-cased letter/digit tokens; every
+ * token has a posting list of the post ids containing it, in ascending id order, with the token's
+ * positions in each post for phrase matching. Queries match posts containing all terms and all
+ * quoted phrases, newest first or ranked by BM25.
+ * <p>
+ * Posting lists only grow at the end, so readers work on published snapshots without locking.
+ * Deleted posts stop matching at once and are dropped from their posting lists by a periodic
+ * compaction. The index is written to {@code relay.search.snapshot-path} periodically and on
+ * shutdown; at startup it is restored from there and only the posts created or deleted since are
+ * read from the database.
+ */
+@Service
+public class PostSearchIndex implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(PostSearchIndex.class);
+    private static final Pattern TOKEN = Pattern.compile("[\\p{L}\\p{N}]+");
+    private static final Pattern PHRASE = Pattern.compile("\"([^\"]*)\"");
+    private static final int SNAPSHOT_MAGIC = 0x52505349;
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final int CATCH_UP_BATCH = 500;
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private final PostRepository postRepository;
+    private final TransactionTemplate readTransaction;
+    private final Path snapshotPath;
+    private final Map<String, Postings> postings = new ConcurrentHashMap<>();
+    // Token count of every searchable post; removing a post from here hides it from all queries
+    private final Map<Long, Integer> lengths = new ConcurrentHashMap<>();
+    private final AtomicLong totalLength = new AtomicLong();
+    // Deleted posts still in the posting list of each term, until the next compaction drops them
+    private final Map<String, Set<Long>> removed = new ConcurrentHashMap<>();
+
+    public PostSearchIndex(PostRepository postRepository,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${relay.search.snapshot-path:}") String snapshotPath) {
+        this.postRepository = postRepository;
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setReadOnly(true);
+        this.snapshotPath = snapshotPath.isBlank() ? null : Path.of(snapshotPath);
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        load();
+    }
+
+    /** Restores the snapshot, if there is one, and brings the index up to date with the database. */
+    public synchronized void load() {
+        boolean restored = snapshotPath != null && restore();
+        readTransaction.executeWithoutResult(status -> {
+            if (restored) {
+                catchUp();
+            } else {
+                postRepository.streamAllContents().forEach(row -> index((Long) row[0], (String) row[1]));
+            }
+        });
+        log.info("Loaded post search index with {} posts and {} terms", lengths.size(), postings.size());
+    }
+
+    /** Ids of matching posts with ids below {@code beforeId} (if given), newest first. */
+    public List<Long> newest(String query, Long beforeId, int limit) {
+        List<Long> ids = new ArrayList<>();
+        forEachMatch(Query.parse(query), beforeId, match -> {
+            ids.add(match.id);
+            return ids.size() < limit;
+        });
+        return ids;
+    }
+
+    /** Ids of matching posts ranked by BM25, skipping the first {@code offset}. */
+    public List<Long> best(String query, int offset, int limit) {
+        Query parsed = Query.parse(query);
+        int wanted = offset + limit;
+        long documents = Math.max(1, lengths.size());
+        double averageLength = Math.max(1.0, (double) totalLength.get() / documents);
+        // Min-heap of the best matches seen so far
+        PriorityQueue<Scored> best = new PriorityQueue<>(Comparator.comparingDouble(Scored::score).thenComparingLong(Scored::id));
+        forEachMatch(parsed, null, match -> {
+            Scored scored = new Scored(match.id, score(match, documents, averageLength));
+            if (best.size() < wanted) {
+                best.add(scored);
+            } else if (best.comparator().compare(scored, best.peek()) > 0) {
+                best.poll();
+                best.add(scored);
+            }
+            return true;
+        });
+        List<Scored> ranked = new ArrayList<>(best);
+        ranked.sort(best.comparator().reversed());
+        return ranked.stream().skip(offset).map(Scored::id).toList();
+    }
+
+    public void onPostCreated(Long postId, String content) {
+        afterCommitOrNow(() -> index(postId, content));
+    }
+
+    public void onPostDeleted(Long postId, String content) {
+        afterCommitOrNow(() -> remove(postId, content));
+    }
+
+    /** Drops deleted posts from the posting lists they were in. */
+    @Scheduled(fixedDelayString = "${relay.search.compact-interval-ms:60000}")
+    public void compact() {
+        for (String term : removed.keySet()) {
+            // Only the ids recorded so far; ones recorded from here on are in a new set for the next run
+            Set<Long> gone = removed.remove(term);
+            if (gone != null) {
+                postings.computeIfPresent(term, (t, list) -> list.drop(gone) == 0 ? null : list);
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${relay.search.snapshot-interval-ms:600000}",
+            initialDelayString = "${relay.search.snapshot-interval-ms:600000}")
+    public void snapshot() {
+        if (snapshotPath == null) {
+            return;
+        }
+        try {
+            writeSnapshot();
+        } catch (IOException e) {
+            log.warn("Could not write search index snapshot to {}", snapshotPath, e);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        snapshot();
+    }
+
+    void index(long postId, String content) {
+        List<String> tokens = tokenize(content);
+        Map<String, List<Integer>> positions = new LinkedHashMap<>();
+        for (int i = 0; i < tokens.size(); i++) {
+            positions.computeIfAbsent(tokens.get(i), t -> new ArrayList<>()).add(i);
+        }
+        positions.forEach((term, at) -> {
+            int[] array = at.stream().mapToInt(Integer::intValue).toArray();
+            postings.compute(term, (t, list) -> {
+                Postings target = list == null ? new Postings() : list;
+                target.add(postId, array);
+                return target;
+            });
+        });
+        // Searchable only now that all of its postings are in place
+        if (lengths.putIfAbsent(postId, tokens.size()) == null) {
+            totalLength.addAndGet(tokens.size());
+        }
+    }
+
+    void remove(long postId, String content) {
+        Integer length = lengths.remove(postId);
+        if (length != null) {
+            totalLength.addAndGet(-length);
+            for (String term : new HashSet<>(tokenize(content))) {
+                // Updated inside compute, so compaction never takes the set while an id is being added
+                removed.compute(term, (t, ids) -> {
+                    Set<Long> target = ids == null ? new HashSet<>() : ids;
+                    target.add(postId);
+                    return target;
+                });
+            }
+        }
+    }
+
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        Matcher matcher = TOKEN.matcher(text.toLowerCase(Locale.ROOT));
+        while (matcher.find()) {
+            tokens.add(matcher.group());
+        }
+        return tokens;
+    }
+
+    /**
+     * Calls {@code consumer} for every live post containing all terms and phrases, from the highest
+     * id down, until it returns false. The shortest posting list drives the intersection; the others
+     * are probed by binary search.
+     */
+    private void forEachMatch(Query query, Long beforeId, Predicate<Match> consumer) {
+        List<String> terms = query.terms();
+        if (terms.isEmpty()) {
+            return;
+        }
+        Block[] blocks = new Block[terms.size()];
+        int driver = 0;
+        for (int i = 0; i < blocks.length; i++) {
+            Postings list = postings.get(terms.get(i));
+            if (list == null) {
+                return;
+            }
+            blocks[i] = list.block;
+            if (blocks[i].size() < blocks[driver].size()) {
+                driver = i;
+            }
+        }
+        Block driving = blocks[driver];
+        int start = driving.size() - 1;
+        if (beforeId != null) {
+            int found = Arrays.binarySearch(driving.ids(), 0, driving.size(), beforeId);
+            start = (found >= 0 ? found : -found - 1) - 1;
+        }
+        int[] slots = new int[blocks.length];
+        for (int at = start; at >= 0; at--) {
+            long id = driving.ids()[at];
+            if (!lengths.containsKey(id) || !locate(blocks, id, slots)) {
+                continue;
+            }
+            Match match = new Match(id, blocks, slots.clone());
+            if (query.phrases().stream().allMatch(match::contains) && !consumer.test(match)) {
+                return;
+            }
+        }
+    }
+
+    private static boolean locate(Block[] blocks, long id, int[] slots) {
+        for (int i = 0; i < blocks.length; i++) {
+            int slot = Arrays.binarySearch(blocks[i].ids(), 0, blocks[i].size(), id);
+            if (slot < 0) {
+                return false;
+            }
+            slots[i] = slot;
+        }
+        return true;
+    }
+
+    private double score(Match match, long documents, double averageLength) {
+        double lengthNorm = 1 - B + B * lengths.getOrDefault(match.id, 0) / averageLength;
+        double score = 0;
+        for (int i = 0; i < match.blocks.length; i++) {
+            int frequency = match.blocks[i].positions()[match.slots[i]].length;
+            int containing = match.blocks[i].size();
+            double idf = Math.log(1 + (documents - containing + 0.5) / (containing + 0.5));
+            score += idf * frequency * (K1 + 1) / (frequency + K1 * lengthNorm);
+        }
+        return score;
+    }
+
+    /** Makes the restored index match the database: adds posts created and drops posts deleted since the snapshot. */
+    private void catchUp() {
+        Set<Long> stale = new HashSet<>(lengths.keySet());
+        List<Long> missing = new ArrayList<>();
+        postRepository.streamAllIds().forEach(id -> {
+            if (!stale.remove(id)) {
+                missing.add(id);
+            }
+        });
+        for (int i = 0; i < missing.size(); i += CATCH_UP_BATCH) {
+            postRepository.findContentsByIdIn(missing.subList(i, Math.min(i + CATCH_UP_BATCH, missing.size())))
+                    .forEach(row -> index((Long) row[0], (String) row[1]));
+        }
+        if (!stale.isEmpty()) {
+            stale.forEach(id -> {
+                Integer length = lengths.remove(id);
+                if (length != null) {
+                    totalLength.addAndGet(-length);
+                }
+            });
+            // Their content is unknown, so every list is checked
+            for (String term : postings.keySet()) {
+                postings.computeIfPresent(term, (t, list) -> list.drop(stale) == 0 ? null : list);
+            }
+        }
+        log.info("Search index caught up: {} posts added, {} removed since the snapshot", missing.size(), stale.size());
+    }
+
+    private void writeSnapshot() throws IOException {
+        // Live posts first: a post in here has all its postings in place before the lists are read
+        Map<Long, Integer> docs = new HashMap<>(lengths);
+        List<Map.Entry<String, Block>> lists = new ArrayList<>(postings.size());
+        postings.forEach((term, list) -> lists.add(Map.entry(term, list.block)));
+
+        Files.createDirectories(snapshotPath.toAbsolutePath().getParent());
+        Path temporary = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeInt(docs.size());
+            for (Map.Entry<Long, Integer> doc : docs.entrySet()) {
+                out.writeLong(doc.getKey());
+                out.writeInt(doc.getValue());
+            }
+            out.writeInt(lists.size());
+            for (Map.Entry<String, Block> list : lists) {
+                Block block = list.getValue();
+                out.writeUTF(list.getKey());
+                out.writeInt(block.size());
+                for (int i = 0; i < block.size(); i++) {
+                    out.writeLong(block.ids()[i]);
+                    int[] positions = block.positions()[i];
+                    out.writeShort(positions.length);
+                    for (int position : positions) {
+                        out.writeShort(position);
+                    }
+                }
+            }
+        }
+        Files.move(temporary, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log.info("Wrote search index snapshot with {} posts and {} terms", docs.size(), lists.size());
+    }
+
+    private boolean restore() {
+        if (!Files.isReadable(snapshotPath)) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotPath)))) {
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) {
+                log.warn("Ignoring search index snapshot {} of an unknown format", snapshotPath);
+                return false;
+            }
+            Map<Long, Integer> docs = new HashMap<>();
+            long total = 0;
+            for (int count = in.readInt(); count > 0; count--) {
+                long id = in.readLong();
+                int length = in.readInt();
+                docs.put(id, length);
+                total += length;
+            }
+            Map<String, Postings> lists = new HashMap<>();
+            for (int count = in.readInt(); count > 0; count--) {
+                String term = in.readUTF();
+                Postings list = new Postings();
+                for (int size = in.readInt(); size > 0; size--) {
+                    long id = in.readLong();
+                    int[] positions = new int[in.readUnsignedShort()];
+                    for (int i = 0; i < positions.length; i++) {
+                        positions[i] = in.readUnsignedShort();
+                    }
+                    // Posts deleted or half-indexed while the snapshot was written
+                    if (docs.containsKey(id)) {
+                        list.add(id, positions);
+                    }
+                }
+                if (list.block.size() > 0) {
+                    lists.put(term, list);
+                }
+            }
+            postings.clear();
+            postings.putAll(lists);
+            removed.clear();
+            lengths.clear();
+            lengths.putAll(docs);
+            totalLength.set(total);
+            return true;
+        } catch (IOException e) {
+            log.warn("Could not read search index snapshot {}, rebuilding from the database", snapshotPath, e);
+            postings.clear();
+            removed.clear();
+            lengths.clear();
+            totalLength.set(0);
+            return false;
+        }
+    }
+
+    /** Distinct terms to intersect, and the phrases as sequences of indexes into {@code terms}. */
+    record Query(List<String> terms, List<int[]> phrases) {
+
+        static Query parse(String text) {
+            List<String> terms = new ArrayList<>();
+            List<int[]> phrases = new ArrayList<>();
+            Matcher quoted = PHRASE.matcher(text);
+            StringBuilder rest = new StringBuilder();
+            while (quoted.find()) {
+                List<String> words = tokenize(quoted.group(1));
+                if (words.size() > 1) {
+                    phrases.add(words.stream().mapToInt(word -> indexOf(terms, word)).toArray());
+                } else {
+                    words.forEach(word -> indexOf(terms, word));
+                }
+                quoted.appendReplacement(rest, " ");
+            }
+            quoted.appendTail(rest);
+            tokenize(rest.toString()).forEach(word -> indexOf(terms, word));
+            return new Query(terms, phrases);
+        }
+
+        private static int indexOf(List<String> terms, String term) {
+            int index = terms.indexOf(term);
+            if (index < 0) {
+                terms.add(term);
+                return terms.size() - 1;
+            }
+            return index;
+        }
+    }
+
+    private record Scored(long id, double score) {
+    }
+
+    /** A post containing all terms; {@code slots[i]} is its index in the posting list of term i. */
+    private record Match(long id, Block[] blocks, int[] slots) {
+
+        boolean contains(int[] phrase) {
+            int[] first = blocks[phrase[0]].positions()[slots[phrase[0]]];
+            for (int start : first) {
+                boolean matches = true;
+                for (int offset = 1; offset < phrase.length && matches; offset++) {
+                    int[] positions = blocks[phrase[offset]].positions()[slots[phrase[offset]]];
+                    matches = Arrays.binarySearch(positions, start + offset) >= 0;
+                }
+                if (matches) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /** An immutable view of the first {@code size} entries of a posting list. */
+    private record Block(long[] ids, int[][] positions, int size) {
+    }
+
+    /**
+     * Posting list of one term. Writers are serialized; an append stores into spare capacity
+     * beyond every published size and then publishes a new {@link Block}, so readers never see
+     * a partially written entry.
+     */
+    private static final class Postings {
+        volatile Block block = new Block(new long[2], new int[2][], 0);
+
+        synchronized void add(long id, int[] positions) {
+            Block current = block;
+            int size = current.size();
+            long[] ids = current.ids();
+            int[][] allPositions = current.positions();
+            if (size > 0 && ids[size - 1] >= id) {
+                // Commits finishing out of id order; rare, so a copy is fine
+                int found = Arrays.binarySearch(ids, 0, size, id);
+                if (found >= 0) {
+                    return;
+                }
+                int at = -found - 1;
+                long[] newIds = new long[Math.max(size + 1, ids.length)];
+                int[][] newPositions = new int[newIds.length][];
+                System.arraycopy(ids, 0, newIds, 0, at);
+                System.arraycopy(allPositions, 0, newPositions, 0, at);
+                newIds[at] = id;
+                newPositions[at] = positions;
+                System.arraycopy(ids, at, newIds, at + 1, size - at);
+                System.arraycopy(allPositions, at, newPositions, at + 1, size - at);
+                block = new Block(newIds, newPositions, size + 1);
+                return;
+            }
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                allPositions = Arrays.copyOf(allPositions, size * 2);
+            }
+            ids[size] = id;
+            allPositions[size] = positions;
+            block = new Block(ids, allPositions, size + 1);
+        }
+
+        /** Drops the given posts and returns the new size. */
+        synchronized int drop(Set<Long> gone) {
+            Block current = block;
+            long[] ids = new long[Math.max(2, current.size())];
+            int[][] positions = new int[ids.length][];
+            int size = 0;
+            for (int i = 0; i < current.size(); i++) {
+                if (!gone.contains(current.ids()[i])) {
+                    ids[size] = current.ids()[i];
+                    positions[size++] = current.positions()[i];
+                }
+            }
+            block = new Block(ids, positions, size);
+            return size;
+        }
+    }
+}
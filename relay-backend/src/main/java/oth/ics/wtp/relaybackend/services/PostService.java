@@ -2,18 +2,24 @@
 // Used ai for business logic patterns and validation implementation
 package oth.ics.wtp.relaybackend.services;
 
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
+import oth.ics.wtp.relaybackend.dtos.BatchDto;
 import oth.ics.wtp.relaybackend.dtos.CreatePostDto;
+import oth.ics.wtp.relaybackend.dtos.PageDto;
 import oth.ics.wtp.relaybackend.dtos.PostDto;
 import oth.ics.wtp.relaybackend.entities.Like;
 import oth.ics.wtp.relaybackend.entities.Post;
+import oth.ics.wtp.relaybackend.entities.PostHashtag;
 import oth.ics.wtp.relaybackend.entities.User;
 import oth.ics.wtp.relaybackend.entities.Comment;
+import oth.ics.wtp.relaybackend.events.PostCreatedEvent;
 import oth.ics.wtp.relaybackend.repositories.LikeRepository;
+import oth.ics.wtp.relaybackend.repositories.PostHashtagRepository;
 import oth.ics.wtp.relaybackend.repositories.PostRepository;
 import oth.ics.wtp.relaybackend.repositories.UserRepository;
 import oth.ics.wtp.relaybackend.repositories.CommentRepository;
@@ -21,7 +27,11 @@ import org.springframework.transaction.annotation.Transactional;
 import oth.ics.wtp.relaybackend.dtos.CommentDto;
 import jakarta.persistence.EntityManager;
 
+import java.time.LocalDateTime;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.stream.Collectors;
 
 @Service
@@ -32,17 +42,42 @@ public class PostService {
     private final LikeRepository likeRepository;
     private final CommentRepository commentRepository;
     private final EntityManager entityManager;
+    private final TimelineService timelineService;
+    private final PostHydrator postHydrator;
+    private final LikeCounters likeCounters;
+    private final UserStatsService userStatsService;
+    private final UserIds userIds;
+    private final PostSearchIndex postSearchIndex;
+    private final PostHashtagRepository postHashtagRepository;
+    private final TrendingTags trendingTags;
+    private final TrendingPosts trendingPosts;
+    private final ApplicationEventPublisher eventPublisher;
+    private final VersionStamps versionStamps;
+    private final PostFragments postFragments;
 
-    public PostService(PostRepository postRepository, UserRepository userRepository, LikeRepository likeRepository, CommentRepository commentRepository, EntityManager entityManager) {
+    public PostService(PostRepository postRepository, UserRepository userRepository, LikeRepository likeRepository, CommentRepository commentRepository, EntityManager entityManager, TimelineService timelineService, PostHydrator postHydrator, LikeCounters likeCounters, UserStatsService userStatsService, UserIds userIds, PostSearchIndex postSearchIndex, PostHashtagRepository postHashtagRepository, TrendingTags trendingTags, TrendingPosts trendingPosts, ApplicationEventPublisher eventPublisher, VersionStamps versionStamps, PostFragments postFragments) {
         this.postRepository = postRepository;
         this.userRepository = userRepository;
         this.likeRepository = likeRepository;
         this.commentRepository = commentRepository;
         this.entityManager = entityManager;
+        this.timelineService = timelineService;
+        this.postHydrator = postHydrator;
+        this.likeCounters = likeCounters;
+        this.userStatsService = userStatsService;
+        this.userIds = userIds;
+        this.postSearchIndex = postSearchIndex;
+        this.postHashtagRepository = postHashtagRepository;
+        this.trendingTags = trendingTags;
+        this.trendingPosts = trendingPosts;
+        this.eventPublisher = eventPublisher;
+        this.versionStamps = versionStamps;
+        this.postFragments = postFragments;
     }
 
+    @Transactional
     public PostDto createPost(CreatePostDto createPostDto, String username) {
-        User author = userRepository.findById(username)
+        User author = userRepository.findByUsername(username)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found"));
 
         if (createPostDto.content() == null || createPostDto.content().trim().isEmpty()) {
@@ -55,97 +90,176 @@ public class PostService {
 
         Post post = new Post(createPostDto.content().trim(), author);
         Post savedPost = postRepository.save(post);
+        List<String> tags = Hashtags.parse(savedPost.getContent());
+        for (String tag : tags) {
+            entityManager.persist(new PostHashtag(savedPost.getId(), tag));
+        }
+        userStatsService.onPostCreated(author.getId());
+        postSearchIndex.onPostCreated(savedPost.getId(), savedPost.getContent());
+        trendingTags.onPostCreated(tags);
+        versionStamps.bump(VersionStamps.Kind.POSTS, username);
+        eventPublisher.publishEvent(new PostCreatedEvent(savedPost.getId(), author.getId(), username, savedPost.getCreatedAt()));
 
-        return toDto(savedPost, username);
+        return postHydrator.hydrate(savedPost, username);
     }
 
-    public List<PostDto> getUserPosts(String username, String currentUsername) {
-        if (!userRepository.existsByUsername(username)) {
-            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found");
-        }
+    public PageDto<PostDto> getUserPosts(String username, String currentUsername, String cursor, int limit) {
+        Long authorId = userIds.require(username);
+
+        PageCursor after = PageCursor.decode(cursor);
+        // One extra row tells whether another page follows
+        Pageable pageable = PageRequest.of(0, PageCursor.checkLimit(limit) + 1);
+        List<Post> posts = after == null
+                ? postRepository.findByAuthorIdOrderByCreatedAtDescIdDesc(authorId, pageable)
+                : postRepository.findByAuthorIdBefore(authorId, after.localCreatedAt(), after.id(), pageable);
+        return toPostPage(posts, limit, currentUsername);
+    }
 
-        Pageable pageable = PageRequest.of(0, 20);
-        return postRepository.findByAuthorUsernameOrderByCreatedAtDesc(username, pageable)
-                .stream()
-                .map(post -> toDto(post, currentUsername))
-                .collect(Collectors.toList());
+    /** The posts with the given ids in request order, hydrated for the viewer with one query for posts and one for likes. */
+    public BatchDto<PostDto> getPosts(List<Long> ids, String currentUsername) {
+        List<Post> posts = postRepository.findByIdIn(Batches.distinct(ids));
+        Map<Long, PostDto> found = new HashMap<>();
+        postHydrator.hydrate(posts, currentUsername).forEach(dto -> found.put(dto.id(), dto));
+        return Batches.answer(ids, found);
     }
 
-    public List<PostDto> getTimelinePosts(String username) {
-        Pageable pageable = PageRequest.of(0, 20);
-        List<Post> posts = postRepository.findFollowedUsersPosts(username, pageable);
+    /** Newest posts with the hashtag, read from the tag index. */
+    public PageDto<PostDto> getTagPosts(String tag, String currentUsername, String cursor, int limit) {
+        String normalized = Hashtags.normalize(tag);
+        PageCursor after = PageCursor.decode(cursor);
+        Pageable pageable = PageRequest.of(0, PageCursor.checkLimit(limit) + 1);
+        List<Post> posts = after == null
+                ? postHashtagRepository.findTagPosts(normalized, pageable)
+                : postHashtagRepository.findTagPostsBefore(normalized, after.id(), pageable);
+        return toPostPage(posts, limit, currentUsername);
+    }
+
+    public PageDto<PostDto> getTimelinePosts(String username, String cursor, int limit) {
+        PageCursor after = PageCursor.decode(cursor);
+        List<Post> posts = timelineService.getTimeline(username, after, PageCursor.checkLimit(limit) + 1);
+        return toPostPage(posts, limit, username);
+    }
 
-        return posts.stream()
-                .map(post -> toDto(post, username))
-                .collect(Collectors.toList());
+    /**
+     * Posts containing every word and quoted phrase of the query, newest first ({@code recent}) or
+     * best match first ({@code relevance}). Recent pages continue below the last post id; relevance
+     * pages continue at an offset into the ranking.
+     */
+    public PageDto<PostDto> searchPosts(String query, String order, String currentUsername, String cursor, int limit) {
+        if (query == null || query.isBlank()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Search query cannot be empty");
+        }
+        PageCursor.checkLimit(limit);
+        List<Long> ids;
+        String nextCursor;
+        switch (order) {
+            case "recent" -> {
+                ids = postSearchIndex.newest(query, parseIdCursor(cursor), limit + 1);
+                nextCursor = ids.size() > limit ? String.valueOf(ids.get(limit - 1)) : null;
+            }
+            case "relevance" -> {
+                int offset = parseOffsetCursor(cursor);
+                ids = postSearchIndex.best(query, offset, limit + 1);
+                nextCursor = ids.size() > limit ? String.valueOf(offset + limit) : null;
+            }
+            default -> throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Order must be recent or relevance");
+        }
+        List<Post> posts = findInOrder(ids.size() > limit ? ids.subList(0, limit) : ids);
+        return new PageDto<>(postHydrator.hydrate(posts, currentUsername), nextCursor);
+    }
+
+    /** Posts with the most recent likes and comments first; pages continue at an offset into the ranking. */
+    public PageDto<PostDto> getTrendingPosts(String currentUsername, String cursor, int limit) {
+        PageCursor.checkLimit(limit);
+        int offset = parseOffsetCursor(cursor);
+        List<Long> ids = trendingPosts.top(offset, limit + 1);
+        String nextCursor = ids.size() > limit ? String.valueOf(offset + limit) : null;
+        List<Post> posts = findInOrder(ids.size() > limit ? ids.subList(0, limit) : ids);
+        return new PageDto<>(postHydrator.hydrate(posts, currentUsername), nextCursor);
     }
 
     public PostDto likePost(Long postId, String username) {
-        Post post = postRepository.findById(postId)
+        Post post = postRepository.findWithAuthorById(postId)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Post not found"));
 
-        User user = userRepository.findById(username)
+        User user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found"));
 
         if (post.getAuthor().getUsername().equals(username)) {
             throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Cannot like your own post");
         }
 
-        if (likeRepository.existsByUserAndPost(username, postId)) {
+        if (likeRepository.existsByUserAndPost(user.getId(), postId)) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Already liked");
         }
         Like like = new Like(user, post);
         likeRepository.save(like);
-        postRepository.findById(postId);
+        likeCounters.add(postId, 1);
+        trendingPosts.onLiked(postId);
+        versionStamps.bump(VersionStamps.Kind.POSTS, post.getAuthor().getUsername());
 
-        return toDto(post, username);
+        return postHydrator.hydrate(post, username);
     }
 
     @Transactional
     public void unlikePost(Long postId, String username) {
-        Post post = postRepository.findById(postId)
+        String author = postRepository.findAuthorUsernameById(postId)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Post not found"));
+        Long userId = userIds.require(username);
 
-        User user = userRepository.findById(username)
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found"));
-
-        likeRepository.deleteByUserAndPost(username, postId);
+        if (likeRepository.deleteByUserAndPost(userId, postId) > 0) {
+            likeCounters.add(postId, -1);
+            trendingPosts.onUnliked(postId);
+            versionStamps.bump(VersionStamps.Kind.POSTS, author);
+        }
         likeRepository.flush();
-        postRepository.findById(postId);
     }
 
     @Transactional
     public void deletePost(Long postId, String username) {
-        Post post = postRepository.findById(postId)
+        Post post = postRepository.findWithAuthorById(postId)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Post not found"));
         if (!post.getAuthor().getUsername().equals(username)) {
             throw new ResponseStatusException(HttpStatus.FORBIDDEN, "You can only delete your own posts");
         }
 
-        entityManager.createNativeQuery("DELETE FROM likes WHERE post_id = :postId")
-                .setParameter("postId", postId)
-                .executeUpdate();
-        
-        entityManager.createNativeQuery("DELETE FROM comments WHERE post_id = :postId")
-                .setParameter("postId", postId)
-                .executeUpdate();
-        
-        entityManager.createNativeQuery("DELETE FROM posts WHERE id = :postId")
+        // Likes, comments and timeline entries are left to PostPurger
+        entityManager.createNativeQuery("DELETE FROM post_hashtags WHERE post_id = :postId")
                 .setParameter("postId", postId)
                 .executeUpdate();
-        
-        entityManager.flush();
+
+        int deleted = postRepository.tombstone(postId, LocalDateTime.now());
+        if (deleted > 0) {
+            userStatsService.onPostDeleted(post.getAuthor().getId());
+            postSearchIndex.onPostDeleted(postId, post.getContent());
+            trendingPosts.onPostDeleted(postId);
+            postFragments.onPostDeleted(postId);
+            versionStamps.bump(VersionStamps.Kind.POSTS, username);
+        }
+
+        timelineService.onPostDeleted(postId, username);
     }
 
-    public List<CommentDto> getCommentsForPost(Long postId) {
-        Post post = postRepository.findById(postId)
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Post not found"));
-        return commentRepository.findByPostOrderByCreatedAtAsc(post)
-                .stream()
-                .map(this::toCommentDto)
-                .collect(Collectors.toList());
+    public PageDto<CommentDto> getCommentsForPost(Long postId, String cursor, int limit) {
+        PageCursor after = PageCursor.decode(cursor);
+        Pageable pageable = PageRequest.of(0, PageCursor.checkLimit(limit) + 1);
+        // Comments of a deleted post stay until PostPurger gets to them, so check the post itself
+        if (!postRepository.existsById(postId)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Post not found");
+        }
+        List<Comment> comments = after == null
+                ? commentRepository.findByPostIdOrderByCreatedAtAscIdAsc(postId, pageable)
+                : commentRepository.findByPostAfter(postId, after.createdAt(), after.id(), pageable);
+
+        boolean hasMore = comments.size() > limit;
+        List<Comment> page = hasMore ? comments.subList(0, limit) : comments;
+        String nextCursor = hasMore
+                ? new PageCursor(page.get(limit - 1).getCreatedAt(), page.get(limit - 1).getId()).encode()
+                : null;
+        return new PageDto<>(page.stream().map(this::toCommentDto).collect(Collectors.toList()), nextCursor);
     }
 
+    @Transactional
     public CommentDto addCommentToPost(Long postId, String username, String content) {
         if (content == null || content.trim().isEmpty()) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Comment content cannot be empty");
@@ -153,41 +267,81 @@ public class PostService {
         if (content.length() > 500) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Comment exceeds 500 characters");
         }
-        Post post = postRepository.findById(postId)
+        Post post = postRepository.findWithAuthorById(postId)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Post not found"));
-        User user = userRepository.findById(username)
+        User user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found"));
         Comment comment = new Comment(post, user, content.trim());
         Comment saved = commentRepository.save(comment);
+        postRepository.addToCommentCount(postId, 1);
+        trendingPosts.onCommented(postId);
+        versionStamps.bump(VersionStamps.Kind.POSTS, post.getAuthor().getUsername());
         return toCommentDto(saved);
     }
 
+    /** Deletes the one comment row; neither the post nor its other comments are loaded. */
     @Transactional
     public void deleteComment(Long commentId, String username) {
-        Comment comment = commentRepository.findById(commentId)
+        Object[] ownership = commentRepository.findOwnership(commentId).stream().findFirst()
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Comment not found"));
-        if (!comment.getUser().getUsername().equals(username)) {
+        if (!ownership[0].equals(username)) {
             throw new ResponseStatusException(HttpStatus.FORBIDDEN, "You can only delete your own comments");
         }
-        Post post = comment.getPost();
-        post.getComments().remove(comment);
-        postRepository.save(post);
+        if (commentRepository.deleteOne(commentId) > 0) {
+            postRepository.addToCommentCount((Long) ownership[1], -1);
+            versionStamps.bump(VersionStamps.Kind.POSTS, (String) ownership[2]);
+        }
+    }
+
+    private PageDto<PostDto> toPostPage(List<Post> posts, int limit, String currentUsername) {
+        boolean hasMore = posts.size() > limit;
+        List<Post> page = hasMore ? posts.subList(0, limit) : posts;
+        String nextCursor = hasMore
+                ? PageCursor.of(page.get(limit - 1).getCreatedAt(), page.get(limit - 1).getId()).encode()
+                : null;
+        return new PageDto<>(postHydrator.hydrate(page, currentUsername), nextCursor);
     }
 
-    private PostDto toDto(Post post, String currentUsername) {
-        boolean isLiked = false;
-        if (currentUsername != null) {
-            isLiked = likeRepository.existsByUserAndPost(currentUsername, post.getId());
+    /** The posts with the given ids in the given order; posts deleted meanwhile are left out. */
+    private List<Post> findInOrder(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, Post> byId = new HashMap<>();
+        postRepository.findByIdIn(ids).forEach(post -> byId.put(post.getId(), post));
+        return ids.stream().map(byId::get).filter(Objects::nonNull).toList();
+    }
+
+    /** The post id a page continues below, or null for the first page. */
+    private static Long parseIdCursor(String cursor) {
+        if (cursor == null) {
+            return null;
+        }
+        try {
+            long id = Long.parseLong(cursor);
+            if (id <= 0) {
+                throw new NumberFormatException(cursor);
+            }
+            return id;
+        } catch (NumberFormatException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+        }
+    }
+
+    /** The offset into a ranking a page continues at. */
+    private static int parseOffsetCursor(String cursor) {
+        if (cursor == null) {
+            return 0;
+        }
+        try {
+            int offset = Integer.parseInt(cursor);
+            if (offset < 0 || offset > Integer.MAX_VALUE - PageCursor.MAX_LIMIT) {
+                throw new NumberFormatException(cursor);
+            }
+            return offset;
+        } catch (NumberFormatException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
         }
-        int likeCount = likeRepository.countByPost(post.getId());
-        return new PostDto(
-                post.getId(),
-                post.getContent(),
-                post.getAuthor().getUsername(),
-                post.getCreatedAt(),
-                likeCount,
-                isLiked
-        );
     }
 
     private CommentDto toCommentDto(Comment comment) {
@@ -0,0 +1,335 @@
+package oth.ics.wtp.relaybackend.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import oth.ics.wtp.relaybackend.events.PostCreatedEvent;
+import oth.ics.wtp.relaybackend.repositories.PostRepository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static oth.ics.wtp.relaybackend.services.AfterCommit.alsoAfterCommit;
+
+/**
+ * Bounded ring of the newest post ids of each recently read author, so that timelines can be
+ * assembled by merging rings instead of querying the posts table.
+ * Rings are loaded on first use (one query for all cold authors of a read), appended to after a
+ * post commits and evicted least recently read first once more than
+ * {@code relay.timeline.ring.max-authors} are held.
+ */
+@Service
+public class RecentPostsCache {
+
+    private final PostRepository postRepository;
+    private final int ringSize;
+    private final int maxAuthors;
+    private final Map<String, AuthorRing> rings = new ConcurrentHashMap<>();
+    private final Counter hits;
+    private final Counter coldMisses;
+    private final Counter exhaustedMisses;
+
+    public RecentPostsCache(PostRepository postRepository,
+                            MeterRegistry meterRegistry,
+                            @Value("${relay.timeline.ring.size:64}") int ringSize,
+                            @Value("${relay.timeline.ring.max-authors:100000}") int maxAuthors) {
+        this.postRepository = postRepository;
+        this.ringSize = Integer.highestOneBit(Math.max(ringSize, 2) * 2 - 1);
+        this.maxAuthors = maxAuthors;
+        this.hits = Counter.builder("relay.timeline.ring").tag("result", "hit").register(meterRegistry);
+        this.coldMisses = Counter.builder("relay.timeline.ring").tag("result", "cold").register(meterRegistry);
+        this.exhaustedMisses = Counter.builder("relay.timeline.ring").tag("result", "exhausted").register(meterRegistry);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPostCreated(PostCreatedEvent event) {
+        AuthorRing ring = rings.get(event.authorUsername());
+        if (ring != null) {
+            ring.append(event.postId(), micros(event.createdAt()));
+        }
+    }
+
+    /** Drops the ring of a deleted account once its rename committed, so a new owner of the name starts cold. */
+    public void onUserDeleted(String username) {
+        rings.remove(username);
+        alsoAfterCommit(() -> rings.remove(username));
+    }
+
+    public void onPostDeleted(String authorUsername, Long postId) {
+        AuthorRing ring = rings.get(authorUsername);
+        if (ring != null) {
+            ring.remove(postId);
+        }
+    }
+
+    /**
+     * Ids of the given authors' posts strictly older than {@code after} (or the newest, if it is
+     * null), newest first and at most {@code limit}. Empty if the rings cannot answer exactly —
+     * because an author's ring is still loading or does not reach back far enough — and the
+     * caller has to query the database instead.
+     */
+    public Optional<List<Long>> newestPostIds(Collection<String> authors, PageCursor after, int limit) {
+        List<AuthorRing> selected = new ArrayList<>(authors.size());
+        Lookup lookup = collectWarm(authors, selected);
+        if (lookup == Lookup.BUSY) {
+            coldMisses.increment();
+            return Optional.empty();
+        }
+        long afterMicros = after == null ? Long.MAX_VALUE : micros(after.localCreatedAt());
+        long afterId = after == null ? Long.MAX_VALUE : after.id();
+
+        // The database holds older posts of authors whose ring overflowed; merged results stay exact
+        // only down to the newest of those rings' oldest entries
+        Entry barrier = null;
+        PriorityQueue<RingCursor> heads = new PriorityQueue<>();
+        for (AuthorRing ring : selected) {
+            RingCursor cursor = new RingCursor(ring.olderThan(afterMicros, afterId, limit));
+            if (cursor.hasNext()) {
+                heads.add(cursor);
+            }
+            if (!ring.holdsHistory()) {
+                Entry oldest = ring.oldest();
+                if (oldest == null) {
+                    exhaustedMisses.increment();
+                    return Optional.empty();
+                }
+                if (barrier == null || NEWEST_FIRST.compare(oldest, barrier) < 0) {
+                    barrier = oldest;
+                }
+            }
+        }
+
+        List<Long> ids = new ArrayList<>(limit);
+        Set<Long> seen = new HashSet<>();
+        while (ids.size() < limit && !heads.isEmpty()) {
+            RingCursor cursor = heads.poll();
+            Entry entry = cursor.next();
+            if (barrier != null && NEWEST_FIRST.compare(entry, barrier) > 0) {
+                exhaustedMisses.increment();
+                return Optional.empty();
+            }
+            if (seen.add(entry.postId())) {
+                ids.add(entry.postId());
+            }
+            if (cursor.hasNext()) {
+                heads.add(cursor);
+            }
+        }
+        if (ids.size() < limit && barrier != null) {
+            exhaustedMisses.increment();
+            return Optional.empty();
+        }
+        (lookup == Lookup.LOADED ? coldMisses : hits).increment();
+        return Optional.of(ids);
+    }
+
+    /** Drops the least recently read rings once more than the configured number of authors are held. */
+    @Scheduled(fixedDelayString = "${relay.timeline.ring.evict-interval-ms:60000}")
+    public void evict() {
+        int excess = rings.size() - maxAuthors;
+        if (excess <= 0) {
+            return;
+        }
+        rings.entrySet().stream()
+                .sorted(Comparator.comparingLong(entry -> entry.getValue().lastRead))
+                .limit(excess)
+                .toList()
+                .forEach(entry -> rings.remove(entry.getKey(), entry.getValue()));
+    }
+
+    private Lookup collectWarm(Collection<String> authors, List<AuthorRing> selected) {
+        Map<String, AuthorRing> loading = new HashMap<>();
+        boolean busy = false;
+        for (String author : authors) {
+            AuthorRing ring = rings.get(author);
+            if (ring == null) {
+                AuthorRing fresh = new AuthorRing(ringSize);
+                ring = rings.putIfAbsent(author, fresh);
+                if (ring == null) {
+                    loading.put(author, fresh);
+                    ring = fresh;
+                }
+            }
+            if (!ring.warm && !loading.containsKey(author)) {
+                // Another request is loading this author
+                busy = true;
+            }
+            selected.add(ring);
+        }
+        if (!loading.isEmpty()) {
+            load(loading);
+        }
+        return busy ? Lookup.BUSY : loading.isEmpty() ? Lookup.WARM : Lookup.LOADED;
+    }
+
+    private void load(Map<String, AuthorRing> loading) {
+        Map<String, List<Object[]>> rowsByAuthor = new HashMap<>();
+        try {
+            for (Object[] row : postRepository.findRecentPerAuthor(loading.keySet(), ringSize)) {
+                rowsByAuthor.computeIfAbsent((String) row[1], author -> new ArrayList<>()).add(row);
+            }
+        } catch (RuntimeException e) {
+            loading.forEach(rings::remove);
+            throw e;
+        }
+        loading.forEach((author, ring) -> {
+            List<Object[]> rows = rowsByAuthor.getOrDefault(author, List.of());
+            long[] ids = new long[rows.size()];
+            long[] times = new long[rows.size()];
+            for (int i = 0; i < rows.size(); i++) {
+                ids[i] = ((Number) rows.get(i)[0]).longValue();
+                times[i] = microsOf(rows.get(i)[2]);
+            }
+            ring.fill(ids, times, rows.size() < ringSize);
+        });
+    }
+
+    private static long microsOf(Object timestamp) {
+        return micros(timestamp instanceof Timestamp sql ? sql.toLocalDateTime() : (LocalDateTime) timestamp);
+    }
+
+    private static long micros(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + time.getNano() / 1_000;
+    }
+
+    private enum Lookup { WARM, LOADED, BUSY }
+
+    private record Entry(long seq, long postId, long createdAtMicros, boolean deleted) {
+        boolean isBefore(long micros, long id) {
+            return createdAtMicros < micros || (createdAtMicros == micros && postId < id);
+        }
+    }
+
+    private static final Comparator<Entry> NEWEST_FIRST = Comparator
+            .comparingLong(Entry::createdAtMicros)
+            .thenComparingLong(Entry::postId)
+            .reversed();
+
+    /**
+     * Single-author ring. Writers claim a sequence number and publish an immutable entry into its
+     * slot; readers validate each slot's sequence so that a slot overwritten or not yet published
+     * during the read is skipped rather than misread. No locks on either path.
+     */
+    static final class AuthorRing {
+        private final AtomicReferenceArray<Entry> slots;
+        private final int mask;
+        private final AtomicLong next = new AtomicLong();
+        private final Queue<long[]> pending = new ConcurrentLinkedQueue<>();
+        private volatile boolean warm;
+        private volatile boolean loadedHistory;
+        private volatile long lastRead = System.nanoTime();
+
+        AuthorRing(int size) {
+            this.slots = new AtomicReferenceArray<>(size);
+            this.mask = size - 1;
+        }
+
+        /** Loads the author's newest posts, given newest first; {@code complete} if that was all of them. */
+        void fill(long[] ids, long[] times, boolean complete) {
+            for (int i = ids.length - 1; i >= 0; i--) {
+                write(ids[i], times[i]);
+            }
+            loadedHistory = complete;
+            warm = true;
+            drainPending();
+        }
+
+        void append(long postId, long createdAtMicros) {
+            if (warm) {
+                write(postId, createdAtMicros);
+                return;
+            }
+            // Parked until the load finished; re-checked because it may have finished meanwhile
+            pending.add(new long[]{postId, createdAtMicros});
+            if (warm) {
+                drainPending();
+            }
+        }
+
+        void remove(long postId) {
+            for (int i = 0; i <= mask; i++) {
+                Entry entry = slots.get(i);
+                if (entry != null && entry.postId() == postId && !entry.deleted()) {
+                    slots.compareAndSet(i, entry, new Entry(entry.seq(), postId, entry.createdAtMicros(), true));
+                }
+            }
+        }
+
+        /** True if nothing of the author's history has fallen out of the ring. */
+        boolean holdsHistory() {
+            return loadedHistory && next.get() <= slots.length();
+        }
+
+        /** The oldest live entry still in the ring. */
+        Entry oldest() {
+            long end = next.get();
+            Entry oldest = null;
+            for (long seq = end - 1; seq >= 0 && seq >= end - slots.length(); seq--) {
+                Entry entry = slots.get((int) (seq & mask));
+                if (entry != null && entry.seq() == seq && !entry.deleted()
+                        && (oldest == null || NEWEST_FIRST.compare(entry, oldest) > 0)) {
+                    oldest = entry;
+                }
+            }
+            return oldest;
+        }
+
+        /** Up to {@code limit} live entries older than the given position, newest first. */
+        List<Entry> olderThan(long micros, long id, int limit) {
+            lastRead = System.nanoTime();
+            long end = next.get();
+            List<Entry> found = new ArrayList<>();
+            for (long seq = end - 1; seq >= 0 && seq >= end - slots.length(); seq--) {
+                Entry entry = slots.get((int) (seq & mask));
+                if (entry != null && entry.seq() == seq && !entry.deleted() && entry.isBefore(micros, id)) {
+                    found.add(entry);
+                }
+            }
+            found.sort(NEWEST_FIRST);
+            return found.size() > limit ? found.subList(0, limit) : found;
+        }
+
+        private void write(long postId, long createdAtMicros) {
+            long seq = next.getAndIncrement();
+            slots.set((int) (seq & mask), new Entry(seq, postId, createdAtMicros, false));
+        }
+
+        private void drainPending() {
+            long[] post;
+            while ((post = pending.poll()) != null) {
+                write(post[0], post[1]);
+            }
+        }
+    }
+
+    private static final class RingCursor implements Comparable<RingCursor> {
+        private final List<Entry> entries;
+        private int position;
+
+        RingCursor(List<Entry> entries) {
+            this.entries = entries;
+        }
+
+        boolean hasNext() {
+            return position < entries.size();
+        }
+
+        Entry next() {
+            return entries.get(position++);
+        }
+
+        @Override
+        public int compareTo(RingCursor other) {
+            return NEWEST_FIRST.compare(entries.get(position), other.entries.get(other.position));
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package oth.ics.wtp.relaybackend.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.transaction.event.TransactionalEventListener;
+import oth.ics.wtp.relaybackend.entities.Post;
+import oth.ics.wtp.relaybackend.entities.TimelineState;
+import oth.ics.wtp.relaybackend.entities.User;
+import oth.ics.wtp.relaybackend.events.PostCreatedEvent;
+import oth.ics.wtp.relaybackend.repositories.FollowRepository;
+import oth.ics.wtp.relaybackend.repositories.PostRepository;
+import oth.ics.wtp.relaybackend.repositories.TimelineEntryRepository;
+import oth.ics.wtp.relaybackend.repositories.TimelineStateRepository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Materialized home timelines (fan-out on write).
+ * New posts are pushed into the followers' timelines asynchronously after commit. Authors with
+ * more than {@code relay.timeline.fanout-threshold} followers stay pull-based and are merged in
+ * at read time. Timelines that were never built, or were dropped for inactivity, are rebuilt
+ * from the follow graph on their next read.
+ * With {@code relay.timeline.strategy=ring} nothing is materialized; timelines are merged at read
+ * time from the {@link RecentPostsCache} rings of the followed authors.
+ */
+@Service
+public class TimelineService {
+
+    private static final Logger log = LoggerFactory.getLogger(TimelineService.class);
+    private static final Duration TOUCH_INTERVAL = Duration.ofHours(1);
+
+    private final TimelineEntryRepository timelineEntryRepository;
+    private final TimelineStateRepository timelineStateRepository;
+    private final PostRepository postRepository;
+    private final FollowRepository followRepository;
+    private final RecentPostsCache recentPostsCache;
+    private final FollowGraph followGraph;
+    private final UserIds userIds;
+    private final TaskExecutor timelineExecutor;
+    private final TransactionTemplate fanoutTransaction;
+    private final TransactionTemplate rebuildTransaction;
+    private final long fanoutThreshold;
+    private final int capacity;
+    private final Duration inactivity;
+    private final boolean materialized;
+    private final Set<String> pullAuthors = ConcurrentHashMap.newKeySet();
+
+    public TimelineService(TimelineEntryRepository timelineEntryRepository,
+                           TimelineStateRepository timelineStateRepository,
+                           PostRepository postRepository,
+                           FollowRepository followRepository,
+                           RecentPostsCache recentPostsCache,
+                           FollowGraph followGraph,
+                           UserIds userIds,
+                           @Qualifier("timelineExecutor") TaskExecutor timelineExecutor,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${relay.timeline.fanout-threshold:10000}") long fanoutThreshold,
+                           @Value("${relay.timeline.capacity:800}") int capacity,
+                           @Value("${relay.timeline.inactivity-days:30}") int inactivityDays,
+                           @Value("${relay.timeline.strategy:fanout}") String strategy) {
+        this.timelineEntryRepository = timelineEntryRepository;
+        this.timelineStateRepository = timelineStateRepository;
+        this.postRepository = postRepository;
+        this.followRepository = followRepository;
+        this.recentPostsCache = recentPostsCache;
+        this.followGraph = followGraph;
+        this.userIds = userIds;
+        this.timelineExecutor = timelineExecutor;
+        // Fan-out runs after the post's transaction committed, possibly on the same thread
+        this.fanoutTransaction = new TransactionTemplate(transactionManager);
+        this.fanoutTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.rebuildTransaction = new TransactionTemplate(transactionManager);
+        this.rebuildTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.fanoutThreshold = fanoutThreshold;
+        this.capacity = capacity;
+        this.inactivity = Duration.ofDays(inactivityDays);
+        this.materialized = !"ring".equals(strategy);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadPullAuthors() {
+        pullAuthors.addAll(followRepository.findUsernamesWithFollowersAbove(fanoutThreshold));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPostCreated(PostCreatedEvent event) {
+        if (!materialized) {
+            return;
+        }
+        timelineExecutor.execute(() -> fanOut(event));
+    }
+
+    private void fanOut(PostCreatedEvent event) {
+        if (isPullAuthor(event.authorUsername())) {
+            return;
+        }
+        try {
+            fanoutTransaction.executeWithoutResult(status ->
+                    timelineEntryRepository.fanOut(event.postId(), event.authorId(), event.createdAt()));
+        } catch (RuntimeException e) {
+            // The affected timelines miss one post until they are rebuilt; never fail the author's request
+            log.warn("Timeline fan-out failed for post {}", event.postId(), e);
+        }
+    }
+
+    /** Copies the followed author's recent posts into the follower's timeline, if it is materialized. */
+    public void onFollow(User follower, User followed) {
+        if (materialized && timelineStateRepository.existsById(follower.getId()) && !isPullAuthor(followed.getUsername())) {
+            int copied = timelineEntryRepository.backfill(follower.getId(), followed.getId(), capacity);
+            if (copied >= capacity) {
+                timelineStateRepository.markTruncated(follower.getId());
+            }
+        }
+    }
+
+    public void onUnfollow(User follower, User followed) {
+        timelineEntryRepository.deleteByOwnerAndAuthor(follower.getId(), followed.getId());
+    }
+
+    /** Timeline entries of the post stay until PostPurger removes them; reads skip deleted posts. */
+    public void onPostDeleted(Long postId, String authorUsername) {
+        recentPostsCache.onPostDeleted(authorUsername, postId);
+    }
+
+    /**
+     * Newest-first timeline page strictly after {@code after} (or from the top if it is null):
+     * one indexed range scan plus, if any, the followed pull-based authors. Pages past the oldest
+     * materialized entry of a truncated timeline fall back to the pull query.
+     */
+    public List<Post> getTimeline(String username, PageCursor after, int limit) {
+        if (!materialized) {
+            List<String> authors = new ArrayList<>(followGraph.following(username));
+            authors.add(username);
+            return pull(authors, after, limit)
+                    .orElseGet(() -> pullFollowed(userIds.require(username), after, PageRequest.of(0, limit)));
+        }
+        Long userId = userIds.require(username);
+        TimelineState state = ensureMaterialized(userId);
+        Pageable page = PageRequest.of(0, limit);
+        List<Post> posts = after == null
+                ? timelineEntryRepository.findTimelinePosts(userId, page)
+                : timelineEntryRepository.findTimelinePostsBefore(userId, after.localCreatedAt(), after.id(), page);
+
+        if (posts.size() < limit && state.isTruncated()) {
+            PageCursor from = posts.isEmpty() ? after : cursorOf(posts.get(posts.size() - 1));
+            posts = merge(posts, pullFollowed(userId, from, page), limit);
+        }
+
+        List<String> pulled = followedPullAuthors(username);
+        if (pulled.isEmpty()) {
+            return posts;
+        }
+        List<Post> pulledPosts = pull(pulled, after, limit).orElseGet(() -> after == null
+                ? postRepository.findByAuthorUsernameInOrderByCreatedAtDescIdDesc(pulled, page)
+                : postRepository.findByAuthorUsernameInBefore(pulled, after.localCreatedAt(), after.id(), page));
+        return merge(posts, pulledPosts, limit);
+    }
+
+    private List<Post> pullFollowed(Long userId, PageCursor after, Pageable page) {
+        return after == null
+                ? postRepository.findFollowedUsersPosts(userId, page)
+                : postRepository.findFollowedUsersPostsBefore(userId, after.localCreatedAt(), after.id(), page);
+    }
+
+    /** The authors' newest posts after the cursor from their cached rings, if the rings can answer. */
+    private Optional<List<Post>> pull(Collection<String> authors, PageCursor after, int limit) {
+        return recentPostsCache.newestPostIds(authors, after, limit).map(ids -> {
+            if (ids.isEmpty()) {
+                return List.of();
+            }
+            Map<Long, Post> byId = new HashMap<>();
+            postRepository.findByIdIn(ids).forEach(post -> byId.put(post.getId(), post));
+            // Posts deleted since the ids were read are simply missing from the page
+            return ids.stream().map(byId::get).filter(Objects::nonNull).toList();
+        });
+    }
+
+    /** Drops and re-materializes a timeline from the owner's and the followed authors' recent posts. */
+    public TimelineState rebuild(Long userId) {
+        try {
+            return rebuildTransaction.execute(status -> {
+                // State row first: posts fanned out once this commits land here, the rest are copied below
+                TimelineState state = timelineStateRepository.saveAndFlush(new TimelineState(userId, false));
+                timelineEntryRepository.deleteByOwner(userId);
+                if (timelineEntryRepository.rebuild(userId, capacity) >= capacity) {
+                    timelineStateRepository.markTruncated(userId);
+                    return new TimelineState(userId, true);
+                }
+                return state;
+            });
+        } catch (DataIntegrityViolationException e) {
+            // A concurrent request rebuilt the same timeline first
+            log.debug("Concurrent rebuild of timeline of user {}", userId);
+            return timelineStateRepository.findById(userId).orElseGet(() -> new TimelineState(userId, true));
+        }
+    }
+
+    /** Forgets timelines of users who have not read them for a while so fan-out stops writing into them. */
+    @Scheduled(fixedDelayString = "${relay.timeline.prune-interval-ms:3600000}")
+    public void pruneInactive() {
+        if (!materialized) {
+            return;
+        }
+        LocalDateTime cutoff = LocalDateTime.now().minus(inactivity);
+        int entries = timelineStateRepository.deleteEntriesOfInactive(cutoff);
+        int states = timelineStateRepository.deleteInactive(cutoff);
+        if (states > 0) {
+            log.info("Dropped {} inactive timelines ({} entries)", states, entries);
+        }
+    }
+
+    private TimelineState ensureMaterialized(Long userId) {
+        Optional<TimelineState> state = timelineStateRepository.findById(userId);
+        if (state.isEmpty()) {
+            return rebuild(userId);
+        }
+        LocalDateTime now = LocalDateTime.now();
+        if (state.get().getLastReadAt().isBefore(now.minus(TOUCH_INTERVAL))) {
+            timelineStateRepository.touch(userId, now);
+        }
+        return state.get();
+    }
+
+    private boolean isPullAuthor(String username) {
+        if (pullAuthors.contains(username)) {
+            return true;
+        }
+        if (followGraph.followerCount(username) > fanoutThreshold) {
+            pullAuthors.add(username);
+            return true;
+        }
+        return false;
+    }
+
+    private List<String> followedPullAuthors(String username) {
+        if (pullAuthors.isEmpty()) {
+            return List.of();
+        }
+        List<String> pulled = new ArrayList<>(followGraph.followedAmong(username, pullAuthors));
+        if (pullAuthors.contains(username)) {
+            pulled.add(username);
+        }
+        return pulled;
+    }
+
+    private static PageCursor cursorOf(Post post) {
+        return PageCursor.of(post.getCreatedAt(), post.getId());
+    }
+
+    private static List<Post> merge(List<Post> first, List<Post> second, int limit) {
+        Comparator<Post> newestFirst = Comparator.comparing(Post::getCreatedAt)
+                .thenComparing(Post::getId)
+                .reversed();
+        Map<Long, Post> unique = new LinkedHashMap<>();
+        first.forEach(post -> unique.putIfAbsent(post.getId(), post));
+        second.forEach(post -> unique.putIfAbsent(post.getId(), post));
+        return unique.values().stream()
+                .sorted(newestFirst)
+                .limit(limit)
+                .toList();
+    }
+}
@@ -0,0 +1,256 @@
+package oth.ics.wtp.relaybackend.services;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import oth.ics.wtp.relaybackend.dtos.PostDto;
+import oth.ics.wtp.relaybackend.entities.Post;
+import oth.ics.wtp.relaybackend.events.PostCreatedEvent;
+import oth.ics.wtp.relaybackend.repositories.PostRepository;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Live home timelines over Server-Sent Events. New posts are pushed to the connected followers
+ * of their author (and the author), hydrated once per post. Each connection buffers at most
+ * {@code relay.stream.buffer-size} events; a connection that falls further behind loses its
+ * buffer and gets a {@code resync} event telling it to reload the timeline.
+ * <p>
+ * Event ids are post ids, so a reconnecting client's {@code Last-Event-ID} is answered from the
+ * timeline, or with {@code resync} if it missed more than a buffer's worth. An idle connection
+ * holds no thread, only its emitter and an empty buffer; heartbeats every
+ * {@code relay.stream.heartbeat-ms} keep proxies from closing it and detect dead clients.
+ */
+@Service
+public class TimelineStreams {
+
+    private static final Event HEARTBEAT = new Event(null, null, null);
+    private static final Event RESYNC = new Event(null, "resync", "resync");
+
+    private final TimelineService timelineService;
+    private final PostRepository postRepository;
+    private final PostHydrator postHydrator;
+    private final FollowGraph followGraph;
+    private final TaskExecutor streamExecutor;
+    private final long timeoutMillis;
+    private final int bufferSize;
+    private final Map<String, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicInteger connections = new AtomicInteger();
+
+    public TimelineStreams(TimelineService timelineService,
+                           PostRepository postRepository,
+                           PostHydrator postHydrator,
+                           FollowGraph followGraph,
+                           @Qualifier("streamExecutor") TaskExecutor streamExecutor,
+                           MeterRegistry meterRegistry,
+                           @Value("${relay.stream.timeout-ms:1800000}") long timeoutMillis,
+                           @Value("${relay.stream.buffer-size:64}") int bufferSize) {
+        this.timelineService = timelineService;
+        this.postRepository = postRepository;
+        this.postHydrator = postHydrator;
+        this.followGraph = followGraph;
+        this.streamExecutor = streamExecutor;
+        this.timeoutMillis = timeoutMillis;
+        this.bufferSize = bufferSize;
+        Gauge.builder("relay.stream.connections", connections, AtomicInteger::get).register(meterRegistry);
+    }
+
+    public SseEmitter subscribe(String username, String lastEventId) {
+        Long resumeAfter = parseLastEventId(lastEventId);
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        subscribe(username, resumeAfter, emitter);
+        return emitter;
+    }
+
+    /** Registers before resuming, so nothing is missed in between; a resumed post may arrive twice. */
+    void subscribe(String username, Long resumeAfter, SseEmitter emitter) {
+        Subscriber subscriber = new Subscriber(username, emitter);
+        emitter.onCompletion(() -> remove(subscriber));
+        emitter.onError(e -> remove(subscriber));
+        subscribers.computeIfAbsent(username, u -> ConcurrentHashMap.newKeySet()).add(subscriber);
+        connections.incrementAndGet();
+        if (resumeAfter != null) {
+            resume(subscriber, resumeAfter);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPostCreated(PostCreatedEvent event) {
+        if (!subscribers.isEmpty()) {
+            streamExecutor.execute(() -> deliver(event));
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${relay.stream.heartbeat-ms:15000}",
+            initialDelayString = "${relay.stream.heartbeat-ms:15000}")
+    public void heartbeat() {
+        subscribers.values().forEach(set -> set.forEach(subscriber -> subscriber.offerIfIdle(HEARTBEAT)));
+    }
+
+    private void deliver(PostCreatedEvent event) {
+        List<Subscriber> recipients = recipients(event.authorUsername());
+        if (recipients.isEmpty()) {
+            return;
+        }
+        Optional<Post> post = postRepository.findWithAuthorById(event.postId());
+        if (post.isEmpty()) {
+            return;
+        }
+        // A new post has no likes yet, so one rendering fits every viewer
+        PostDto dto = postHydrator.hydrate(post.get(), null);
+        Event message = new Event(String.valueOf(dto.id()), "post", dto);
+        recipients.forEach(subscriber -> subscriber.offer(message));
+    }
+
+    /** Connected followers of the author, walking whichever of followers and connections is smaller. */
+    private List<Subscriber> recipients(String author) {
+        List<Subscriber> recipients = new ArrayList<>(subscribers.getOrDefault(author, Set.of()));
+        if (followGraph.followerCount(author) <= subscribers.size()) {
+            for (String follower : followGraph.followers(author)) {
+                recipients.addAll(subscribers.getOrDefault(follower, Set.of()));
+            }
+        } else {
+            subscribers.forEach((username, set) -> {
+                if (followGraph.follows(username, author)) {
+                    recipients.addAll(set);
+                }
+            });
+        }
+        return recipients;
+    }
+
+    private void resume(Subscriber subscriber, long resumeAfter) {
+        List<Post> recent = timelineService.getTimeline(subscriber.username, null, bufferSize + 1);
+        List<Post> missed = recent.stream().filter(post -> post.getId() > resumeAfter).toList();
+        if (missed.size() > bufferSize) {
+            subscriber.offer(RESYNC);
+            return;
+        }
+        List<PostDto> dtos = new ArrayList<>(postHydrator.hydrate(missed, subscriber.username));
+        Collections.reverse(dtos);
+        dtos.forEach(dto -> subscriber.offer(new Event(String.valueOf(dto.id()), "post", dto)));
+    }
+
+    private void remove(Subscriber subscriber) {
+        subscribers.computeIfPresent(subscriber.username, (username, set) -> {
+            if (set.remove(subscriber)) {
+                connections.decrementAndGet();
+            }
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    private static Long parseLastEventId(String lastEventId) {
+        if (lastEventId == null || lastEventId.isBlank()) {
+            return null;
+        }
+        try {
+            return Long.parseLong(lastEventId.trim());
+        } catch (NumberFormatException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid Last-Event-ID");
+        }
+    }
+
+    /** An SSE event; one without name and data is sent as a heartbeat comment. */
+    private record Event(String id, String name, Object data) {
+
+        SseEmitter.SseEventBuilder toBuilder() {
+            if (data == null) {
+                return SseEmitter.event().comment("heartbeat");
+            }
+            SseEmitter.SseEventBuilder builder = SseEmitter.event().name(name).data(data, MediaType.APPLICATION_JSON);
+            return id == null ? builder : builder.id(id);
+        }
+    }
+
+    private final class Subscriber {
+        private final String username;
+        private final SseEmitter emitter;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final ArrayDeque<Event> buffer = new ArrayDeque<>();
+        private boolean draining;
+        private boolean closed;
+
+        Subscriber(String username, SseEmitter emitter) {
+            this.username = username;
+            this.emitter = emitter;
+        }
+
+        void offer(Event event) {
+            enqueue(event, false);
+        }
+
+        void offerIfIdle(Event event) {
+            enqueue(event, true);
+        }
+
+        private void enqueue(Event event, boolean onlyIfIdle) {
+            lock.lock();
+            try {
+                if (closed || (onlyIfIdle && (draining || !buffer.isEmpty()))) {
+                    return;
+                }
+                if (buffer.size() >= bufferSize) {
+                    buffer.clear();
+                    buffer.add(RESYNC);
+                }
+                buffer.add(event);
+                if (draining) {
+                    return;
+                }
+                draining = true;
+            } finally {
+                lock.unlock();
+            }
+            streamExecutor.execute(this::drain);
+        }
+
+        /** Sends until the buffer is empty; only one drain runs per connection at a time. */
+        private void drain() {
+            while (true) {
+                Event next;
+                lock.lock();
+                try {
+                    next = buffer.poll();
+                    if (next == null) {
+                        draining = false;
+                        return;
+                    }
+                } finally {
+                    lock.unlock();
+                }
+                try {
+                    emitter.send(next.toBuilder());
+                } catch (IOException | IllegalStateException e) {
+                    close();
+                    return;
+                }
+            }
+        }
+
+        private void close() {
+            lock.lock();
+            try {
+                closed = true;
+                buffer.clear();
+            } finally {
+                lock.unlock();
+            }
+            remove(this);
+            emitter.complete();
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package oth.ics.wtp.relaybackend.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static oth.ics.wtp.relaybackend.services.AfterCommit.afterCommitOrNow;
+
+/**
+ * Posts ranked by engagement velocity: every like and comment adds a weight that halves every
+ * {@code relay.trending.half-life-minutes}, and a post's score is the sum of what is left.
+ * <p>
+ * Scores are kept as {@code log(sum of weight * e^(lambda * (t - origin)))}, so events add in
+ * log space and a post's score never has to change while it sits idle: decaying all scores by
+ * the same factor does not change their order. The posts are held in an indexed max-heap bounded
+ * to {@code relay.trending.capacity} entries; when full, the lowest scored post makes room.
+ * The ranking lives only in memory and starts empty after a restart.
+ */
+@Service
+public class TrendingPosts {
+
+    private final double lambda;
+    private final long origin = System.currentTimeMillis();
+    private final double likeWeight;
+    private final double commentWeight;
+    private final int capacity;
+
+    private long[] ids;
+    private double[] scores;
+    private int size;
+    private final Map<Long, Integer> positions = new HashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+
+    public TrendingPosts(@Value("${relay.trending.half-life-minutes:60}") long halfLifeMinutes,
+                         @Value("${relay.trending.like-weight:1}") double likeWeight,
+                         @Value("${relay.trending.comment-weight:2}") double commentWeight,
+                         @Value("${relay.trending.capacity:10000}") int capacity) {
+        this.lambda = Math.log(2) / Duration.ofMinutes(halfLifeMinutes).toMillis();
+        this.likeWeight = likeWeight;
+        this.commentWeight = commentWeight;
+        this.capacity = capacity;
+        this.ids = new long[Math.min(capacity, 1024)];
+        this.scores = new double[ids.length];
+    }
+
+    public void onLiked(Long postId) {
+        afterCommitOrNow(() -> add(postId, likeWeight, System.currentTimeMillis()));
+    }
+
+    /** Takes back a like's weight as of now, which is at least what is left of it. */
+    public void onUnliked(Long postId) {
+        afterCommitOrNow(() -> add(postId, -likeWeight, System.currentTimeMillis()));
+    }
+
+    public void onCommented(Long postId) {
+        afterCommitOrNow(() -> add(postId, commentWeight, System.currentTimeMillis()));
+    }
+
+    public void onPostDeleted(Long postId) {
+        afterCommitOrNow(() -> remove(postId));
+    }
+
+    /** The ids of the best scored posts, skipping the first {@code offset}. */
+    public List<Long> top(int offset, int limit) {
+        lock.lock();
+        try {
+            List<Long> result = new ArrayList<>(limit);
+            // Best-first walk of the heap: only the children of taken entries become candidates
+            PriorityQueue<Integer> frontier = new PriorityQueue<>(Comparator.comparingDouble((Integer i) -> scores[i]).reversed());
+            if (size > 0) {
+                frontier.add(0);
+            }
+            for (int taken = 0; taken < offset + limit && !frontier.isEmpty(); taken++) {
+                int i = frontier.poll();
+                if (taken >= offset) {
+                    result.add(ids[i]);
+                }
+                if (2 * i + 1 < size) frontier.add(2 * i + 1);
+                if (2 * i + 2 < size) frontier.add(2 * i + 2);
+            }
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void add(long postId, double weight, long atMillis) {
+        lock.lock();
+        try {
+            double event = Math.log(Math.abs(weight)) + lambda * (atMillis - origin);
+            Integer position = positions.get(postId);
+            if (position == null) {
+                if (weight <= 0) {
+                    return;
+                }
+                if (size == capacity) {
+                    int lowest = lowest();
+                    if (scores[lowest] >= event) {
+                        return;
+                    }
+                    removeAt(lowest);
+                }
+                insert(postId, event);
+                return;
+            }
+            double score = scores[position];
+            if (weight > 0) {
+                // log(e^score + e^event) without overflowing
+                double high = Math.max(score, event);
+                scores[position] = high + Math.log1p(Math.exp(Math.min(score, event) - high));
+                siftUp(position);
+            } else if (score > event) {
+                scores[position] = score + Math.log1p(-Math.exp(event - score));
+                siftDown(position);
+            } else {
+                removeAt(position);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void remove(long postId) {
+        lock.lock();
+        try {
+            Integer position = positions.get(postId);
+            if (position != null) {
+                removeAt(position);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void insert(long postId, double score) {
+        if (size == ids.length) {
+            int grown = Math.min(capacity, ids.length * 2);
+            ids = Arrays.copyOf(ids, grown);
+            scores = Arrays.copyOf(scores, grown);
+        }
+        ids[size] = postId;
+        scores[size] = score;
+        positions.put(postId, size);
+        siftUp(size++);
+    }
+
+    private void removeAt(int position) {
+        positions.remove(ids[position]);
+        size--;
+        if (position == size) {
+            return;
+        }
+        move(size, position);
+        siftDown(position);
+        siftUp(position);
+    }
+
+    /** The lowest score of a max-heap is one of its leaves, the second half of the array. */
+    private int lowest() {
+        int lowest = size / 2;
+        for (int i = lowest + 1; i < size; i++) {
+            if (scores[i] < scores[lowest]) {
+                lowest = i;
+            }
+        }
+        return lowest;
+    }
+
+    private void siftUp(int i) {
+        long id = ids[i];
+        double score = scores[i];
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (scores[parent] >= score) {
+                break;
+            }
+            move(parent, i);
+            i = parent;
+        }
+        ids[i] = id;
+        scores[i] = score;
+        positions.put(id, i);
+    }
+
+    private void siftDown(int i) {
+        long id = ids[i];
+        double score = scores[i];
+        while (2 * i + 1 < size) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && scores[child + 1] > scores[child]) {
+                child++;
+            }
+            if (scores[child] <= score) {
+                break;
+            }
+            move(child, i);
+            i = child;
+        }
+        ids[i] = id;
+        scores[i] = score;
+        positions.put(id, i);
+    }
+
+    private void move(int from, int to) {
+        ids[to] = ids[from];
+        scores[to] = scores[from];
+        positions.put(ids[to], to);
+    }
+}
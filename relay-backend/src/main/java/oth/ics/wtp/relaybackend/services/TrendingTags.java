@@ -0,0 +1,223 @@
+package oth.ics.wtp.relaybackend.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import oth.ics.wtp.relaybackend.dtos.TrendDto;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static oth.ics.wtp.relaybackend.services.AfterCommit.afterCommitOrNow;
+
+/**
+ * Trending hashtags of the last hour and the last day, in constant memory however many distinct
+ * tags there are. Time is cut into buckets, five minutes wide for the hour and one hour wide for
+ * the day. Each bucket counts tags in a Count-Min sketch and keeps its heaviest tags in a
+ * space-saving summary. A window's trends are the summaries' tags, ranked by their sketch counts
+ * summed over the window's buckets.
+ * <p>
+ * Posting only appends the post's tags to a lock-free queue; a scheduled consumer drains it into
+ * the sketches. When the consumer falls behind by {@code relay.trends.queue-capacity} posts,
+ * further tags are dropped and counted in {@code relay.trends.dropped}.
+ */
+@Service
+public class TrendingTags {
+
+    public enum Window {
+        HOUR("1h", Duration.ofMinutes(5), 12),
+        DAY("24h", Duration.ofHours(1), 24);
+
+        private final String label;
+        private final long bucketMillis;
+        private final int buckets;
+
+        Window(String label, Duration bucket, int buckets) {
+            this.label = label;
+            this.bucketMillis = bucket.toMillis();
+            this.buckets = buckets;
+        }
+
+        public static Window of(String label) {
+            for (Window window : values()) {
+                if (window.label.equals(label)) {
+                    return window;
+                }
+            }
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Window must be 1h or 24h");
+        }
+    }
+
+    private static final int SKETCH_DEPTH = 4;
+    private static final int SKETCH_WIDTH = 2048;
+
+    private final ConcurrentLinkedQueue<Occurrence> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final int queueCapacity;
+    private final Counter dropped;
+    private final Map<Window, Bucket[]> rings = new EnumMap<>(Window.class);
+    private final ReentrantLock lock = new ReentrantLock();
+
+    public TrendingTags(MeterRegistry meterRegistry,
+                        @Value("${relay.trends.queue-capacity:100000}") int queueCapacity,
+                        @Value("${relay.trends.candidates:100}") int candidates) {
+        this.queueCapacity = queueCapacity;
+        this.dropped = meterRegistry.counter("relay.trends.dropped");
+        for (Window window : Window.values()) {
+            Bucket[] ring = new Bucket[window.buckets];
+            for (int i = 0; i < ring.length; i++) {
+                ring[i] = new Bucket(candidates);
+            }
+            rings.put(window, ring);
+        }
+    }
+
+    /** Counts the tags of a new post once the surrounding transaction, if any, has committed. */
+    public void onPostCreated(List<String> tags) {
+        if (tags.isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        afterCommitOrNow(() -> enqueue(now, tags));
+    }
+
+    void enqueue(long atMillis, List<String> tags) {
+        if (queued.incrementAndGet() > queueCapacity) {
+            queued.decrementAndGet();
+            dropped.increment();
+            return;
+        }
+        queue.offer(new Occurrence(atMillis, tags));
+    }
+
+    @Scheduled(fixedDelayString = "${relay.trends.drain-interval-ms:1000}")
+    public void drain() {
+        lock.lock();
+        try {
+            Occurrence occurrence;
+            while ((occurrence = queue.poll()) != null) {
+                queued.decrementAndGet();
+                for (Map.Entry<Window, Bucket[]> ring : rings.entrySet()) {
+                    Bucket bucket = bucket(ring.getKey(), ring.getValue(), occurrence.atMillis());
+                    if (bucket != null) {
+                        occurrence.tags().forEach(bucket::add);
+                    }
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public List<TrendDto> top(Window window, int limit) {
+        return top(window, PageCursor.checkLimit(limit), System.currentTimeMillis());
+    }
+
+    List<TrendDto> top(Window window, int limit, long nowMillis) {
+        lock.lock();
+        try {
+            long current = nowMillis / window.bucketMillis;
+            List<Bucket> live = new ArrayList<>();
+            for (Bucket bucket : rings.get(window)) {
+                if (bucket.epoch > current - window.buckets && bucket.epoch <= current) {
+                    live.add(bucket);
+                }
+            }
+            Set<String> candidates = new HashSet<>();
+            live.forEach(bucket -> candidates.addAll(bucket.heavy.keySet()));
+            List<TrendDto> trends = new ArrayList<>(candidates.size());
+            for (String tag : candidates) {
+                long hash = hash(tag);
+                long count = 0;
+                for (Bucket bucket : live) {
+                    count += bucket.estimate(hash);
+                }
+                trends.add(new TrendDto(tag, count));
+            }
+            trends.sort(Comparator.comparingLong(TrendDto::count).reversed().thenComparing(TrendDto::tag));
+            return trends.size() > limit ? List.copyOf(trends.subList(0, limit)) : trends;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** The bucket the time falls into, reset if it still holds an older period; null if the time is too old. */
+    private static Bucket bucket(Window window, Bucket[] ring, long atMillis) {
+        long epoch = atMillis / window.bucketMillis;
+        Bucket bucket = ring[(int) (epoch % ring.length)];
+        if (bucket.epoch > epoch) {
+            return null;
+        }
+        if (bucket.epoch < epoch) {
+            bucket.reset(epoch);
+        }
+        return bucket;
+    }
+
+    private static long hash(String tag) {
+        long h = tag.hashCode() * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 29);
+    }
+
+    private record Occurrence(long atMillis, List<String> tags) {
+    }
+
+    /** Count-Min sketch plus space-saving summary of one time bucket. */
+    private static final class Bucket {
+        private final int[][] counts = new int[SKETCH_DEPTH][SKETCH_WIDTH];
+        private final Map<String, Long> heavy;
+        private final int capacity;
+        private long epoch = Long.MIN_VALUE;
+
+        Bucket(int capacity) {
+            this.capacity = capacity;
+            this.heavy = new HashMap<>(capacity * 2);
+        }
+
+        void reset(long epoch) {
+            this.epoch = epoch;
+            for (int[] row : counts) {
+                Arrays.fill(row, 0);
+            }
+            heavy.clear();
+        }
+
+        void add(String tag) {
+            long hash = hash(tag);
+            for (int row = 0; row < SKETCH_DEPTH; row++) {
+                counts[row][slot(hash, row)]++;
+            }
+            Long count = heavy.get(tag);
+            if (count != null || heavy.size() < capacity) {
+                heavy.put(tag, count == null ? 1 : count + 1);
+                return;
+            }
+            // Space-saving: the new tag takes over the smallest counter, inheriting its count
+            Map.Entry<String, Long> smallest = Collections.min(heavy.entrySet(), Map.Entry.comparingByValue());
+            heavy.remove(smallest.getKey());
+            heavy.put(tag, smallest.getValue() + 1);
+        }
+
+        long estimate(long hash) {
+            int min = Integer.MAX_VALUE;
+            for (int row = 0; row < SKETCH_DEPTH; row++) {
+                min = Math.min(min, counts[row][slot(hash, row)]);
+            }
+            return min;
+        }
+
+        /** Row hashes derived from one 64-bit hash (Kirsch-Mitzenmacher). */
+        private static int slot(long hash, int row) {
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            return ((h1 + row * h2) & Integer.MAX_VALUE) % SKETCH_WIDTH;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package oth.ics.wtp.relaybackend.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import oth.ics.wtp.relaybackend.repositories.UserRepository;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static oth.ics.wtp.relaybackend.services.AfterCommit.alsoAfterCommit;
+
+/**
+ * Resolves usernames from request paths and tokens to surrogate user ids. Usernames cannot be
+ * changed, so a resolved id stays valid until the user is deleted; the cache is simply cleared
+ * when it reaches {@code relay.user-ids.cache-size}.
+ */
+@Service
+public class UserIds {
+
+    private final UserRepository userRepository;
+    private final int maxSize;
+    private final Map<String, Long> ids = new ConcurrentHashMap<>();
+
+    public UserIds(UserRepository userRepository,
+                   @Value("${relay.user-ids.cache-size:100000}") int maxSize) {
+        this.userRepository = userRepository;
+        this.maxSize = maxSize;
+    }
+
+    public Long require(String username) {
+        return find(username)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found"));
+    }
+
+    /** The user's id, or empty if no such user exists; only existing users are cached. */
+    public Optional<Long> find(String username) {
+        Long id = ids.get(username);
+        if (id != null) {
+            return Optional.of(id);
+        }
+        Optional<Long> found = userRepository.findIdByUsername(username);
+        found.ifPresent(value -> {
+            if (ids.size() >= maxSize) {
+                ids.clear();
+            }
+            ids.put(username, value);
+        });
+        return found;
+    }
+
+    /** Drops the user's id now and again after commit, so a re-registered username never maps to the old id. */
+    public void forget(String username) {
+        ids.remove(username);
+        alsoAfterCommit(() -> ids.remove(username));
+    }
+}
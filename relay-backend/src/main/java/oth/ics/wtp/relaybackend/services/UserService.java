@@ -2,27 +2,54 @@ package oth.ics.wtp.relaybackend.services;
 
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.server.ResponseStatusException;
-import oth.ics.wtp.relaybackend.WeakCrypto;
+import oth.ics.wtp.relaybackend.dtos.AccountDeletionDto;
+import oth.ics.wtp.relaybackend.dtos.BatchDto;
 import oth.ics.wtp.relaybackend.dtos.CreateUserDto;
+import oth.ics.wtp.relaybackend.dtos.PageDto;
 import oth.ics.wtp.relaybackend.dtos.UserDto;
 import oth.ics.wtp.relaybackend.dtos.UserSearchDto;
+import oth.ics.wtp.relaybackend.entities.AccountDeletion;
 import oth.ics.wtp.relaybackend.entities.User;
+import oth.ics.wtp.relaybackend.entities.UserStats;
 import oth.ics.wtp.relaybackend.repositories.UserRepository;
-import oth.ics.wtp.relaybackend.repositories.FollowRepository;
+import oth.ics.wtp.relaybackend.repositories.PostRepository;
+import oth.ics.wtp.relaybackend.repositories.AccountDeletionRepository;
 
+import java.time.LocalDateTime;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
 public class UserService {
 
     private final UserRepository userRepository;
-    private final FollowRepository followRepository;
-
-    public UserService(UserRepository userRepository, FollowRepository followRepository) {
+    private final PostRepository postRepository;
+    private final UserStatsService userStatsService;
+    private final FollowGraph followGraph;
+    private final UserIds userIds;
+    private final UsernameIndex usernameIndex;
+    private final PasswordHasher passwordHasher;
+    private final VersionStamps versionStamps;
+    private final AccountDeletionRepository accountDeletionRepository;
+    private final RecentPostsCache recentPostsCache;
+
+    public UserService(UserRepository userRepository, PostRepository postRepository, UserStatsService userStatsService, FollowGraph followGraph, UserIds userIds, UsernameIndex usernameIndex, PasswordHasher passwordHasher, VersionStamps versionStamps, AccountDeletionRepository accountDeletionRepository, RecentPostsCache recentPostsCache) {
         this.userRepository = userRepository;
-        this.followRepository = followRepository;
+        this.postRepository = postRepository;
+        this.userStatsService = userStatsService;
+        this.followGraph = followGraph;
+        this.userIds = userIds;
+        this.usernameIndex = usernameIndex;
+        this.passwordHasher = passwordHasher;
+        this.versionStamps = versionStamps;
+        this.accountDeletionRepository = accountDeletionRepository;
+        this.recentPostsCache = recentPostsCache;
     }
 
     public UserDto createUser(CreateUserDto createUserDto) {
@@ -30,33 +57,62 @@ public class UserService {
             throw new ResponseStatusException(HttpStatus.CONFLICT, "Username already exists");
         }
 
-        String hashedPassword = WeakCrypto.hashPassword(createUserDto.password());
+        String hashedPassword = passwordHasher.hash(createUserDto.password());
         User user = new User(createUserDto.username(), hashedPassword);
 
         User savedUser = userRepository.save(user);
+        userStatsService.onUserCreated(savedUser.getId());
+        usernameIndex.onUserCreated(savedUser.getUsername());
         return toDto(savedUser);
     }
 
     public UserDto getUserByUsername(String username) {
-        User user = userRepository.findById(username)
+        User user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found"));
         return toDto(user);
     }
 
-    public List<UserSearchDto> searchUsers(String query, String currentUsername) {
-        String pattern = "%" + query + "%";
-        List<User> users = userRepository.searchByUsernamePattern(pattern);
+    /** Profiles of the given users in request order, with the viewer's follow state; two queries in all. */
+    public BatchDto<UserDto> getUsers(List<String> usernames, String currentUsername) {
+        Set<String> distinct = Batches.distinct(usernames);
+        List<User> users = userRepository.findByUsernameIn(distinct);
+        Map<Long, UserStats> stats = userStatsService.getAll(users.stream().map(User::getId).toList());
+        Map<String, UserDto> found = new HashMap<>();
+        for (User user : users) {
+            Boolean isFollowing = currentUsername == null ? null : followGraph.follows(currentUsername, user.getUsername());
+            found.put(user.getUsername(), toDto(user, stats.get(user.getId()), isFollowing));
+        }
+        return Batches.answer(usernames, found);
+    }
 
-        return users.stream()
-                .map(user -> toSearchDto(user, currentUsername))
-                .collect(Collectors.toList());
+    /** Users whose name starts with the query, ignoring case; the cursor is the last username of the previous page. */
+    public PageDto<UserSearchDto> searchUsers(String query, String currentUsername, String cursor, int limit) {
+        List<String> usernames = usernameIndex.search(query.trim(), cursor, PageCursor.checkLimit(limit) + 1);
+        boolean hasMore = usernames.size() > limit;
+        List<String> page = hasMore ? usernames.subList(0, limit) : usernames;
+        return new PageDto<>(toSearchDtos(page, currentUsername), hasMore ? page.get(limit - 1) : null);
     }
 
-    public void deleteUser(String username) {
-        if (!userRepository.existsByUsername(username)) {
-            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found");
-        }
-        userRepository.deleteById(username);
+    /**
+     * Hides the account at once and leaves its rows to {@link AccountDeletions}: the username is
+     * released, tokens issued for it stop resolving and its posts are tombstoned.
+     */
+    @Transactional
+    public AccountDeletionDto deleteUser(String username) {
+        User user = userRepository.findByUsername(username)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found"));
+        AccountDeletion deletion = accountDeletionRepository.save(new AccountDeletion(user.getId(), username));
+        postRepository.tombstoneAllOf(user.getId(), LocalDateTime.now());
+        // Names registered through Basic auth cannot contain ':', so this never collides
+        user.setUsername("deleted:" + user.getId());
+        followGraph.onUserDeleted(username);
+        usernameIndex.onUserDeleted(username);
+        userIds.forget(username);
+        // The posts leave search and trending as AccountDeletions purges them
+        recentPostsCache.onUserDeleted(username);
+        // Like counts and follow lists of unknown other users change with it
+        versionStamps.invalidateAll();
+        return AccountDeletions.toDto(deletion);
     }
 
     public boolean userExists(String username) {
@@ -64,35 +120,36 @@ public class UserService {
     }
 
     public UserDto updateUserProfile(String username, String fullName, String email, String biography) {
-        User user = userRepository.findById(username)
+        User user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found"));
         user.setFullName(fullName);
         user.setEmail(email);
         user.setBiography(biography);
         userRepository.save(user);
+        versionStamps.bump(VersionStamps.Kind.PROFILE, username);
         return toDto(user);
     }
 
     private UserDto toDto(User user) {
-        int followerCount = (int) followRepository.countByFollowedUsername(user.getUsername());
-        int followingCount = (int) followRepository.countByFollowerUsername(user.getUsername());
-        
+        return toDto(user, userStatsService.get(user.getId()), null);
+    }
+
+    private UserDto toDto(User user, UserStats stats, Boolean isFollowing) {
         return new UserDto(
                 user.getUsername(),
                 user.getRegisteredAt().atZone(java.time.ZoneId.systemDefault()).toInstant(),
-                followerCount,
-                followingCount,
+                (int) stats.getFollowers(),
+                (int) stats.getFollowing(),
+                (int) stats.getPosts(),
                 user.getFullName(),
                 user.getEmail(),
-                user.getBiography()
+                user.getBiography(),
+                isFollowing
         );
     }
 
     private UserSearchDto toSearchDto(User user, String currentUsername) {
-        boolean isFollowing = false;
-        if (currentUsername != null) {
-            isFollowing = followRepository.existsByFollowerUsernameAndFollowedUsername(currentUsername, user.getUsername());
-        }
+        boolean isFollowing = currentUsername != null && followGraph.follows(currentUsername, user.getUsername());
 
         return new UserSearchDto(
                 user.getUsername(),
@@ -102,18 +159,32 @@ public class UserService {
     }
 
     public List<UserSearchDto> getFollowers(String username) {
-        User user = userRepository.findById(username)
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found"));
-        return followRepository.findFollowersByUsername(username).stream()
-                .map(follower -> toSearchDto(follower, username))
-                .collect(Collectors.toList());
+        requireExists(username);
+        return toSearchDtos(followGraph.followers(username), username);
     }
 
     public List<UserSearchDto> getFollowing(String username) {
-        User user = userRepository.findById(username)
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found"));
-        return followRepository.findFollowingByUsername(username).stream()
-                .map(following -> toSearchDto(following, username))
+        requireExists(username);
+        return toSearchDtos(followGraph.following(username), username);
+    }
+
+    private void requireExists(String username) {
+        if (!userRepository.existsByUsername(username)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found");
+        }
+    }
+
+    /** Search entries for the given users in the given order, resolved with one query. */
+    private List<UserSearchDto> toSearchDtos(List<String> usernames, String currentUsername) {
+        if (usernames.isEmpty()) {
+            return List.of();
+        }
+        Map<String, User> users = new HashMap<>();
+        userRepository.findByUsernameIn(usernames).forEach(user -> users.put(user.getUsername(), user));
+        return usernames.stream()
+                .map(users::get)
+                .filter(Objects::nonNull)
+                .map(user -> toSearchDto(user, currentUsername))
                 .collect(Collectors.toList());
     }
 }
\ No newline at end of file
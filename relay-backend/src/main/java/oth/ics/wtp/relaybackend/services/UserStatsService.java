@@ -0,0 +1,161 @@
+package oth.ics.wtp.relaybackend.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import oth.ics.wtp.relaybackend.entities.UserStats;
+import oth.ics.wtp.relaybackend.repositories.UserRepository;
+import oth.ics.wtp.relaybackend.repositories.UserStatsRepository;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToIntBiFunction;
+
+/**
+ * Follower, following and post counters per user. Changes are applied as relative updates in
+ * the transaction of the follow or post that causes them; a user without a counter row (e.g.
+ * registered before the table existed) gets one counted from the source tables on first use.
+ */
+@Service
+public class UserStatsService {
+
+    private static final Logger log = LoggerFactory.getLogger(UserStatsService.class);
+
+    private final UserStatsRepository userStatsRepository;
+    private final UserRepository userRepository;
+    private final TransactionTemplate separateTransaction;
+    private final int recomputeBatchSize;
+    private final VersionStamps versionStamps;
+
+    public UserStatsService(UserStatsRepository userStatsRepository,
+                            UserRepository userRepository,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${relay.user-stats.recompute-batch-size:500}") int recomputeBatchSize,
+                            VersionStamps versionStamps) {
+        this.userStatsRepository = userStatsRepository;
+        this.userRepository = userRepository;
+        // Missing rows are counted from committed data, outside the caller's pending change
+        this.separateTransaction = new TransactionTemplate(transactionManager);
+        this.separateTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.recomputeBatchSize = recomputeBatchSize;
+        this.versionStamps = versionStamps;
+    }
+
+    public UserStats get(Long userId) {
+        return userStatsRepository.findById(userId).orElseGet(() -> {
+            createCounted(userId);
+            return userStatsRepository.findById(userId).orElseGet(() -> new UserStats(userId));
+        });
+    }
+
+    /** Counters of several users with one query; users without a row get one counted first. */
+    public Map<Long, UserStats> getAll(Collection<Long> userIds) {
+        Map<Long, UserStats> stats = new HashMap<>();
+        userStatsRepository.findAllById(userIds).forEach(row -> stats.put(row.getUserId(), row));
+        List<Long> missing = userIds.stream().filter(id -> !stats.containsKey(id)).toList();
+        if (!missing.isEmpty()) {
+            try {
+                separateTransaction.executeWithoutResult(status -> userStatsRepository.insertCounted(missing));
+            } catch (DataIntegrityViolationException e) {
+                // Some were created concurrently
+                log.debug("Concurrent creation of counters for users {}", missing);
+            }
+            userStatsRepository.findAllById(missing).forEach(row -> stats.put(row.getUserId(), row));
+            missing.forEach(id -> stats.putIfAbsent(id, new UserStats(id)));
+        }
+        return stats;
+    }
+
+    public void onUserCreated(Long userId) {
+        userStatsRepository.save(new UserStats(userId));
+    }
+
+    public void onFollow(Long followerId, Long followedId) {
+        adjustFollow(followerId, followedId, 1);
+    }
+
+    public void onUnfollow(Long followerId, Long followedId) {
+        adjustFollow(followerId, followedId, -1);
+    }
+
+    public void onPostCreated(Long userId) {
+        adjust(userId, 1, userStatsRepository::addPosts);
+    }
+
+    public void onPostDeleted(Long userId) {
+        adjust(userId, -1, userStatsRepository::addPosts);
+    }
+
+    /** Takes a leaving user's deleted follow edges out of the counters of the users on their other ends. */
+    public void onEdgesDeleted(Collection<Long> followedIds, Collection<Long> followerIds) {
+        if (!followedIds.isEmpty()) {
+            userStatsRepository.addToFollowers(followedIds, -1);
+        }
+        if (!followerIds.isEmpty()) {
+            userStatsRepository.addToFollowing(followerIds, -1);
+        }
+    }
+
+    public void onUserDeleted(Long userId) {
+        userStatsRepository.deleteById(userId);
+    }
+
+    /** Recounts every user's counters, one transaction per batch of user ids. */
+    public int recomputeAll() {
+        int recomputed = 0;
+        long after = 0;
+        List<Long> batch;
+        do {
+            batch = userRepository.findIdsAfter(after, PageRequest.of(0, recomputeBatchSize));
+            if (batch.isEmpty()) {
+                break;
+            }
+            List<Long> userIds = batch;
+            separateTransaction.executeWithoutResult(status -> {
+                userStatsRepository.recount(userIds);
+                userStatsRepository.insertCounted(userIds);
+            });
+            recomputed += batch.size();
+            after = batch.get(batch.size() - 1);
+        } while (batch.size() == recomputeBatchSize);
+        // Corrected counts show up in profiles of any user
+        versionStamps.invalidateAll();
+        log.info("Recomputed counters of {} users", recomputed);
+        return recomputed;
+    }
+
+    private void adjustFollow(Long followerId, Long followedId, long delta) {
+        // Same row order in every transaction, so that opposite follows cannot deadlock
+        if (followerId < followedId) {
+            adjust(followerId, delta, userStatsRepository::addFollowing);
+            adjust(followedId, delta, userStatsRepository::addFollowers);
+        } else {
+            adjust(followedId, delta, userStatsRepository::addFollowers);
+            adjust(followerId, delta, userStatsRepository::addFollowing);
+        }
+    }
+
+    private void adjust(Long userId, long delta, ToIntBiFunction<Long, Long> update) {
+        if (update.applyAsInt(userId, delta) == 0) {
+            createCounted(userId);
+            update.applyAsInt(userId, delta);
+        }
+    }
+
+    private void createCounted(Long userId) {
+        try {
+            separateTransaction.executeWithoutResult(status -> userStatsRepository.insertCounted(List.of(userId)));
+        } catch (DataIntegrityViolationException e) {
+            // Created concurrently
+            log.debug("Concurrent creation of counters for user {}", userId);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package oth.ics.wtp.relaybackend.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import oth.ics.wtp.relaybackend.repositories.UserRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import static oth.ics.wtp.relaybackend.services.AfterCommit.afterCommitOrNow;
+
+/**
+ * Case-insensitive username prefix search. Usernames are kept in a skip list sorted by their
+ * lower-cased form, so a prefix query is a range scan that stops after the requested page,
+ * independent of the number of users. The index is loaded before the web server starts and
+ * follows registrations and deletions after their transactions commit.
+ */
+@Service
+public class UsernameIndex implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(UsernameIndex.class);
+    // Separates the folded name from the original, so that "Ann" and "ann" are distinct keys
+    private static final char SEPARATOR = '\0';
+
+    private final UserRepository userRepository;
+    private final TransactionTemplate readTransaction;
+    private final ConcurrentSkipListMap<String, String> usernames = new ConcurrentSkipListMap<>();
+
+    public UsernameIndex(UserRepository userRepository, PlatformTransactionManager transactionManager) {
+        this.userRepository = userRepository;
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setReadOnly(true);
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        load();
+    }
+
+    /** Replaces the index with the usernames currently in the database. */
+    public void load() {
+        ConcurrentSkipListMap<String, String> loaded = new ConcurrentSkipListMap<>();
+        readTransaction.executeWithoutResult(status -> userRepository.streamAllUsernames()
+                .forEach(username -> loaded.put(key(username), username)));
+        usernames.clear();
+        usernames.putAll(loaded);
+        log.info("Loaded username index with {} users", loaded.size());
+    }
+
+    /**
+     * Up to {@code limit} usernames starting with {@code prefix}, ignoring case, in case-folded
+     * order and strictly after the username {@code after} if it is given.
+     */
+    public List<String> search(String prefix, String after, int limit) {
+        String folded = fold(prefix);
+        // Every key with the prefix sorts below the prefix followed by the largest char
+        NavigableMap<String, String> matches = usernames.subMap(folded, true, folded + Character.MAX_VALUE, false);
+        if (after != null) {
+            matches = matches.tailMap(key(after), false);
+        }
+        List<String> page = new ArrayList<>(Math.min(limit, 64));
+        for (String username : matches.values()) {
+            if (page.size() == limit) {
+                break;
+            }
+            page.add(username);
+        }
+        return page;
+    }
+
+    public void onUserCreated(String username) {
+        afterCommitOrNow(() -> usernames.put(key(username), username));
+    }
+
+    public void onUserDeleted(String username) {
+        afterCommitOrNow(() -> usernames.remove(key(username)));
+    }
+
+    private static String key(String username) {
+        return fold(username) + SEPARATOR + username;
+    }
+
+    private static String fold(String text) {
+        return text.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,110 @@
+package oth.ics.wtp.relaybackend.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static oth.ics.wtp.relaybackend.services.AfterCommit.alsoAfterCommit;
+
+/**
+ * Version counters per user for what the profile and list endpoints render, turned into strong
+ * ETags so an unchanged resource can be answered with 304 before anything is read.
+ * <p>
+ * Writes bump the counters they affect now and again after commit: a reader that computed its tag
+ * in between and then saw the old rows serves them under a tag that goes stale on commit. Tags
+ * start with an epoch that is random per boot and changes whenever the counters are dropped,
+ * which happens when they exceed {@code relay.etags.max-entries} or after bulk changes such as an
+ * account deletion, so a missing counter never reproduces a tag handed out earlier.
+ */
+@Service
+public class VersionStamps {
+
+    /** What a counter covers; a profile depends on all three, since it shows post and follow counts. */
+    public enum Kind {
+        PROFILE, POSTS, FOLLOWS
+    }
+
+    private final int maxEntries;
+    // Swapped as a whole, so a tag never pairs an epoch with counters of another one
+    private final AtomicReference<Generation> generation =
+            new AtomicReference<>(new Generation(ThreadLocalRandom.current().nextLong()));
+
+    public VersionStamps(@Value("${relay.etags.max-entries:100000}") int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    public void bump(Kind kind, String username) {
+        String key = key(kind, username);
+        increment(key);
+        alsoAfterCommit(() -> increment(key));
+    }
+
+    /** Changes every tag, for writes that touch more users than are worth tracking. */
+    public void invalidateAll() {
+        reset();
+        alsoAfterCommit(this::reset);
+    }
+
+    public String profileTag(String username) {
+        return tag(null, username, Kind.PROFILE, Kind.POSTS, Kind.FOLLOWS);
+    }
+
+    /** Like flags depend on the viewer, so each viewer and page has its own tag. */
+    public String postsTag(String username, String viewer, String cursor, int limit) {
+        return tag(viewer + "|" + cursor + "|" + limit, username, Kind.POSTS);
+    }
+
+    public String followsTag(String username) {
+        return tag(null, username, Kind.FOLLOWS);
+    }
+
+    private String tag(String variant, String username, Kind... kinds) {
+        Generation current = generation.get();
+        StringBuilder tag = new StringBuilder("\"").append(Long.toHexString(current.epoch()));
+        for (Kind kind : kinds) {
+            tag.append('-').append(current.versions().getOrDefault(key(kind, username), 0L));
+        }
+        if (variant != null) {
+            tag.append('-').append(Long.toHexString(fingerprint(variant)));
+        }
+        return tag.append('"').toString();
+    }
+
+    private void increment(String key) {
+        Generation current = generation.get();
+        if (current.versions().size() >= maxEntries) {
+            reset();
+            current = generation.get();
+        }
+        current.versions().merge(key, 1L, Long::sum);
+    }
+
+    private void reset() {
+        generation.updateAndGet(previous -> new Generation(previous.epoch() + 1));
+    }
+
+    private static String key(Kind kind, String username) {
+        return kind.ordinal() + username;
+    }
+
+    /** 64-bit FNV-1a; only has to tell apart the variants of one resource. */
+    private static long fingerprint(String variant) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : variant.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private record Generation(long epoch, Map<String, Long> versions) {
+        Generation(long epoch) {
+            this(epoch, new ConcurrentHashMap<>());
+        }
+    }
+}
@@ -0,0 +1,14 @@
+-- Fills posts.comment_count for comments written before the column existed.
+-- Run once after the first start of a version with comment counts (which adds the column as 0):
+--   psql "$DB_URL" -v ON_ERROR_STOP=1 -f backfill-comment-counts.sql
+-- Safe to repeat; only posts whose count differs are written.
+
+BEGIN;
+
+UPDATE posts p SET comment_count = n.count
+FROM (SELECT p2.id, COUNT(c.id) AS count
+      FROM posts p2 LEFT JOIN comments c ON c.post_id = p2.id
+      GROUP BY p2.id) n
+WHERE n.id = p.id AND p.comment_count <> n.count;
+
+COMMIT;
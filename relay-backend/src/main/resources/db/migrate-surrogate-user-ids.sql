@@ -0,0 +1,67 @@
+-- Moves an existing Postgres database from username keys to numeric user ids.
+-- Run once with the backend stopped, before the first start of a version with surrogate ids:
+--   psql "$DB_URL" -v ON_ERROR_STOP=1 -f migrate-surrogate-user-ids.sql
+-- Hibernate's ddl-auto=update cannot do this itself: it never drops or rewrites columns.
+
+BEGIN;
+
+-- Existing rows are numbered in registration order
+ALTER TABLE relay_users ADD COLUMN id BIGINT GENERATED BY DEFAULT AS IDENTITY;
+UPDATE relay_users u SET id = n.rn
+FROM (SELECT username, ROW_NUMBER() OVER (ORDER BY registered_at, username) AS rn FROM relay_users) n
+WHERE u.username = n.username;
+SELECT setval(pg_get_serial_sequence('relay_users', 'id'), COALESCE((SELECT MAX(id) FROM relay_users), 0) + 1, false);
+
+ALTER TABLE posts ADD COLUMN author_id BIGINT;
+UPDATE posts p SET author_id = u.id FROM relay_users u WHERE u.username = p.author_username;
+
+ALTER TABLE comments ADD COLUMN user_id BIGINT;
+UPDATE comments c SET user_id = u.id FROM relay_users u WHERE u.username = c.user_username;
+
+ALTER TABLE likes ADD COLUMN user_id BIGINT;
+UPDATE likes l SET user_id = u.id FROM relay_users u WHERE u.username = l.user_username;
+
+ALTER TABLE user_follows ADD COLUMN follower_id BIGINT, ADD COLUMN followed_id BIGINT;
+UPDATE user_follows f SET follower_id = u.id FROM relay_users u WHERE u.username = f.follower_username;
+UPDATE user_follows f SET followed_id = u.id FROM relay_users u WHERE u.username = f.followed_username;
+
+ALTER TABLE user_stats ADD COLUMN user_id BIGINT;
+UPDATE user_stats s SET user_id = u.id FROM relay_users u WHERE u.username = s.username;
+DELETE FROM user_stats WHERE user_id IS NULL;
+
+-- Materialized timelines are a cache; they are rebuilt on the owner's next read
+DROP TABLE IF EXISTS timeline_entries;
+DROP TABLE IF EXISTS timeline_states;
+
+-- Dropping the username columns also drops the foreign keys, primary keys and indexes on them
+ALTER TABLE posts DROP COLUMN author_username CASCADE;
+ALTER TABLE comments DROP COLUMN user_username CASCADE;
+ALTER TABLE likes DROP COLUMN user_username CASCADE;
+ALTER TABLE user_follows DROP COLUMN follower_username CASCADE, DROP COLUMN followed_username CASCADE;
+ALTER TABLE user_stats DROP COLUMN username CASCADE;
+ALTER TABLE relay_users DROP CONSTRAINT relay_users_pkey CASCADE;
+
+ALTER TABLE relay_users ALTER COLUMN id SET NOT NULL, ADD PRIMARY KEY (id);
+CREATE UNIQUE INDEX uk_user_username ON relay_users (username);
+
+ALTER TABLE posts ALTER COLUMN author_id SET NOT NULL,
+    ADD FOREIGN KEY (author_id) REFERENCES relay_users (id);
+CREATE INDEX idx_post_author_created ON posts (author_id, created_at DESC, id DESC);
+
+ALTER TABLE comments ADD FOREIGN KEY (user_id) REFERENCES relay_users (id);
+
+ALTER TABLE likes ALTER COLUMN user_id SET NOT NULL,
+    ADD PRIMARY KEY (post_id, user_id),
+    ADD FOREIGN KEY (user_id) REFERENCES relay_users (id);
+CREATE INDEX idx_like_post ON likes (post_id);
+
+ALTER TABLE user_follows ALTER COLUMN follower_id SET NOT NULL, ALTER COLUMN followed_id SET NOT NULL,
+    ADD PRIMARY KEY (followed_id, follower_id),
+    ADD FOREIGN KEY (follower_id) REFERENCES relay_users (id),
+    ADD FOREIGN KEY (followed_id) REFERENCES relay_users (id);
+ALTER TABLE user_follows ADD UNIQUE (follower_id, followed_id);
+CREATE INDEX idx_follow_followed ON user_follows (followed_id);
+
+ALTER TABLE user_stats ALTER COLUMN user_id SET NOT NULL, ADD PRIMARY KEY (user_id);
+
+COMMIT;
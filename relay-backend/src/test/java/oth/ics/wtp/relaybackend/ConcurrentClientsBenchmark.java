@@ -0,0 +1,113 @@
+package oth.ics.wtp.relaybackend;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Closed-loop load against a running backend: each client reads its timeline and an author's
+ * posts in a loop, and the run reports throughput and latency percentiles. Start the backend once
+ * with {@code VIRTUAL_THREADS=false} and once with {@code VIRTUAL_THREADS=true}, then run
+ * {@code main} from the test classpath with {@code [baseUrl] [clients] [seconds]}, by default
+ * {@code http://localhost:8080 1000 30}.
+ */
+public class ConcurrentClientsBenchmark {
+    private static final Pattern TOKEN = Pattern.compile("\"token\"\\s*:\\s*\"([^\"]+)\"");
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = args.length > 0 ? args[0] : "http://localhost:8080";
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        Duration duration = Duration.ofSeconds(args.length > 2 ? Long.parseLong(args[2]) : 30);
+
+        HttpClient http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        String username = "bench" + System.currentTimeMillis();
+        String basic = WeakCrypto.createBasicAuthHeader(username, "benchmark");
+        send(http, HttpRequest.newBuilder(URI.create(baseUrl + "/api/users/register"))
+                .header("Authorization", basic).POST(HttpRequest.BodyPublishers.noBody()).build());
+        Matcher token = TOKEN.matcher(send(http, HttpRequest.newBuilder(URI.create(baseUrl + "/api/users/login"))
+                .header("Authorization", basic).POST(HttpRequest.BodyPublishers.noBody()).build()));
+        if (!token.find()) {
+            throw new IllegalStateException("Login returned no token");
+        }
+        String bearer = "Bearer " + token.group(1);
+        send(http, HttpRequest.newBuilder(URI.create(baseUrl + "/api/posts"))
+                .header("Authorization", bearer).header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"content\":\"benchmark post\"}")).build());
+
+        List<HttpRequest> requests = List.of(
+                HttpRequest.newBuilder(URI.create(baseUrl + "/api/posts/timeline?limit=20"))
+                        .header("Authorization", bearer).GET().build(),
+                HttpRequest.newBuilder(URI.create(baseUrl + "/api/posts/user/" + username + "?limit=20"))
+                        .header("Authorization", bearer).GET().build());
+
+        AtomicLong errors = new AtomicLong();
+        long deadline = System.nanoTime() + duration.toNanos();
+        List<Future<long[]>> results = new ArrayList<>(clients);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < clients; c++) {
+                int client = c;
+                results.add(executor.submit(() -> {
+                    long[] latencies = new long[1024];
+                    int count = 0;
+                    for (int i = client; System.nanoTime() < deadline; i++) {
+                        long start = System.nanoTime();
+                        try {
+                            HttpResponse<Void> response = http.send(requests.get(i % requests.size()),
+                                    HttpResponse.BodyHandlers.discarding());
+                            if (response.statusCode() != 200) {
+                                errors.incrementAndGet();
+                                continue;
+                            }
+                        } catch (Exception e) {
+                            errors.incrementAndGet();
+                            continue;
+                        }
+                        if (count == latencies.length) {
+                            latencies = Arrays.copyOf(latencies, count * 2);
+                        }
+                        latencies[count++] = System.nanoTime() - start;
+                    }
+                    return Arrays.copyOf(latencies, count);
+                }));
+            }
+        }
+
+        long[] all = results.stream().map(ConcurrentClientsBenchmark::join)
+                .flatMapToLong(Arrays::stream).sorted().toArray();
+        System.out.printf("clients=%d seconds=%d requests=%d errors=%d%n",
+                clients, duration.toSeconds(), all.length, errors.get());
+        System.out.printf("throughput=%.0f req/s p50=%.1f ms p99=%.1f ms max=%.1f ms%n",
+                all.length / (double) duration.toSeconds(),
+                percentile(all, 0.50), percentile(all, 0.99), all.length == 0 ? 0 : all[all.length - 1] / 1e6);
+    }
+
+    private static String send(HttpClient http, HttpRequest request) throws Exception {
+        return http.send(request, HttpResponse.BodyHandlers.ofString()).body();
+    }
+
+    private static long[] join(Future<long[]> future) {
+        try {
+            return future.get();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        return sorted.length == 0 ? 0 : sorted[(int) Math.min(sorted.length - 1, sorted.length * p)] / 1e6;
+    }
+}
@@ -0,0 +1,49 @@
+package oth.ics.wtp.relaybackend;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of authenticating a request with a bearer token seen before ({@code cached}) versus one
+ * seen for the first time ({@code uncached}, a cache of size zero). Run the {@code main} method
+ * from the test classpath, e.g. from the IDE.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtUtilBenchmark {
+    private static final String SECRET = "benchmark-secret-that-is-long-enough-for-hs256";
+
+    private JwtUtil cached;
+    private JwtUtil uncached;
+    private String token;
+
+    @Setup
+    public void setup() {
+        cached = new JwtUtil(SECRET, 10_000, new SimpleMeterRegistry());
+        uncached = new JwtUtil(SECRET, 0, new SimpleMeterRegistry());
+        token = cached.generateToken("benchmark-user");
+    }
+
+    @Benchmark
+    public String cached() {
+        return cached.validateToken(token);
+    }
+
+    @Benchmark
+    public String uncached() {
+        return uncached.validateToken(token);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(JwtUtilBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,69 @@
+package oth.ics.wtp.relaybackend;
+
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.security.SignatureException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JwtUtilTest {
+    private static final String SECRET = "test-secret-that-is-long-enough-for-hs256";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final JwtUtil jwtUtil = new JwtUtil(SECRET, 2, meterRegistry);
+
+    @Test
+    public void testRepeatedTokensAreServedFromCache() {
+        String token = jwtUtil.generateToken("alice");
+
+        assertEquals("alice", jwtUtil.validateToken(token));
+        assertEquals("alice", jwtUtil.validateToken(token));
+        assertEquals("alice", jwtUtil.validateToken(token));
+
+        assertEquals(1, count("miss"));
+        assertEquals(2, count("hit"));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedTokenIsEvicted() {
+        String alice = jwtUtil.generateToken("alice");
+        String bob = jwtUtil.generateToken("bob");
+        String carol = jwtUtil.generateToken("carol");
+
+        jwtUtil.validateToken(alice);
+        jwtUtil.validateToken(bob);
+        jwtUtil.validateToken(alice);
+        jwtUtil.validateToken(carol);
+        assertEquals(3, count("miss"));
+
+        jwtUtil.validateToken(alice);
+        assertEquals(3, count("miss"));
+        jwtUtil.validateToken(bob);
+        assertEquals(4, count("miss"));
+    }
+
+    @Test
+    public void testInvalidTokensAreRejectedAndNotCached() {
+        String foreign = new JwtUtil("some-other-secret-that-is-long-enough", 2, new SimpleMeterRegistry())
+                .generateToken("mallory");
+        assertThrows(SignatureException.class, () -> jwtUtil.validateToken(foreign));
+        assertThrows(SignatureException.class, () -> jwtUtil.validateToken(foreign));
+
+        String expired = Jwts.builder()
+                .subject("alice")
+                .expiration(new Date(System.currentTimeMillis() - 1000))
+                .signWith(Keys.hmacShaKeyFor(SECRET.getBytes()))
+                .compact();
+        assertThrows(ExpiredJwtException.class, () -> jwtUtil.validateToken(expired));
+        assertEquals(0, count("hit"));
+    }
+
+    private double count(String result) {
+        return meterRegistry.get("relay.jwt.cache").tag("result", result).counter().count();
+    }
+}
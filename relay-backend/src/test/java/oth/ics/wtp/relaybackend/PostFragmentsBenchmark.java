@@ -0,0 +1,90 @@
+package oth.ics.wtp.relaybackend;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.util.unit.DataSize;
+import oth.ics.wtp.relaybackend.dtos.PageDto;
+import oth.ics.wtp.relaybackend.dtos.PostDto;
+import oth.ics.wtp.relaybackend.services.PostFragments;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Cost of writing a page of 20 posts with Jackson, as the default converter does, versus splicing
+ * cached fragments, each plain and gzipped. Run the {@code main} method from the test classpath;
+ * add {@code -prof gc} through the JMH command line options to compare allocation per page.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PostFragmentsBenchmark {
+
+    private ObjectMapper objectMapper;
+    private PostFragments postFragments;
+    private PageDto<PostDto> page;
+    private ByteArrayOutputStream out;
+
+    @Setup
+    public void setup() throws IOException {
+        objectMapper = new ObjectMapper().registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        postFragments = new PostFragments(objectMapper, new SimpleMeterRegistry(), DataSize.ofMegabytes(8), 6);
+        List<PostDto> posts = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            posts.add(new PostDto((long) i, "A typical post of a few words, with a #hashtag and a mention of @someone " + i,
+                    "author" + i % 5, LocalDateTime.of(2024, 5, 1, 12, 0).plusMinutes(i), i * 3, i, i % 2 == 0));
+        }
+        page = new PageDto<>(posts, "MTcxNDU2NDgwMDowOjE5");
+        out = new ByteArrayOutputStream(16 * 1024);
+        postFragments.writeJson(page, out);
+    }
+
+    @Benchmark
+    public int jackson() throws IOException {
+        out.reset();
+        objectMapper.writeValue(out, page);
+        return out.size();
+    }
+
+    @Benchmark
+    public int spliced() throws IOException {
+        out.reset();
+        postFragments.writeJson(page, out);
+        return out.size();
+    }
+
+    @Benchmark
+    public int jacksonGzip() throws IOException {
+        out.reset();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            objectMapper.writeValue(gzip, page);
+        }
+        return out.size();
+    }
+
+    @Benchmark
+    public int splicedGzip() throws IOException {
+        out.reset();
+        postFragments.writeGzip(page, out);
+        return out.size();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(PostFragmentsBenchmark.class.getSimpleName()).build()).run();
+    }
+}
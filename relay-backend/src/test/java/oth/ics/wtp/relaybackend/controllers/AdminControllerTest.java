@@ -0,0 +1,32 @@
+package oth.ics.wtp.relaybackend.controllers;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.web.server.ResponseStatusException;
+import oth.ics.wtp.relaybackend.dtos.RecomputeResultDto;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestPropertySource(properties = "relay.admin.usernames=admin")
+public class AdminControllerTest extends RelayControllerTestBase {
+
+    @Autowired private AdminController controller;
+
+    @Test
+    public void testRecomputeRequiresAdmin() {
+        ResponseStatusException e = assertThrows(ResponseStatusException.class,
+                () -> controller.recomputeUserStats(user1()));
+        assertEquals(HttpStatus.FORBIDDEN, e.getStatusCode());
+    }
+
+    @Test
+    public void testAdminRecomputesAllUsers() {
+        userController.register(basic("admin", "adminpass"));
+
+        RecomputeResultDto result = controller.recomputeUserStats(mockRequest("admin", "adminpass"));
+
+        assertEquals(userRepository.count(), result.recomputed());
+    }
+}
@@ -7,7 +7,9 @@ import jakarta.servlet.http.HttpServletRequest;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.server.ResponseStatusException;
 import oth.ics.wtp.relaybackend.dtos.*;
 import java.util.List;
@@ -39,7 +41,7 @@ public class PostControllerTest extends RelayControllerTestBase {
     public void testGetUserPosts() {
         controller.createPost(new CreatePostDto("post1"), user1Req);
         controller.createPost(new CreatePostDto("post2"), user1Req);
-        List<PostDto> posts = controller.getUserPosts(USER1_USERNAME, user1Req);
+        List<PostDto> posts = controller.getUserPosts(USER1_USERNAME, null, 20, user1Req, webRequest(user1Req)).items();
         assertEquals(2, posts.size());
     }
 
@@ -48,7 +50,7 @@ public class PostControllerTest extends RelayControllerTestBase {
         userController.followUser(USER2_USERNAME, user1Req);
         controller.createPost(new CreatePostDto("own post"), user1Req);
         long id2 = controller.createPost(new CreatePostDto("followed post"), user2Req).id();
-        List<PostDto> timeline = controller.getTimeline(user1Req);
+        List<PostDto> timeline = controller.getTimeline(null, 20, user1Req).items();
         assertEquals(2, timeline.size());
         assertTrue(timeline.stream().anyMatch(p -> p.id() == id2));
     }
@@ -57,26 +59,65 @@ public class PostControllerTest extends RelayControllerTestBase {
     public void testLikeAndUnlikePost() {
         long postId = controller.createPost(new CreatePostDto("A great post!"), user1Req).id();
         controller.likePost(postId, user2Req);
-        List<PostDto> postsAfterLike = controller.getUserPosts(USER1_USERNAME, user2Req);
+        List<PostDto> postsAfterLike = controller.getUserPosts(USER1_USERNAME, null, 20, user2Req, webRequest(user2Req)).items();
         assertTrue(postsAfterLike.stream().anyMatch(p -> p.id() == postId && p.likeCount() == 1));
         controller.unlikePost(postId, user2Req);
-        List<PostDto> postsAfterUnlike = controller.getUserPosts(USER1_USERNAME, user2Req);
+        List<PostDto> postsAfterUnlike = controller.getUserPosts(USER1_USERNAME, null, 20, user2Req, webRequest(user2Req)).items();
         assertTrue(postsAfterUnlike.stream().anyMatch(p -> p.id() == postId && p.likeCount() == 0));
     }
 
+    @Test
+    public void testUserPostsTagDependsOnViewerAndLikes() {
+        long postId = controller.createPost(new CreatePostDto("tagged"), user1Req).id();
+        String user1Tag = userPostsTag(user1Req);
+        String user2Tag = userPostsTag(user2Req);
+        assertNotEquals(user1Tag, user2Tag);
+        assertEquals(user2Tag, userPostsTag(user2Req));
+
+        MockHttpServletRequest revalidate = mockRequest(USER2_USERNAME, USER2_PASSWORD);
+        revalidate.addHeader(HttpHeaders.IF_NONE_MATCH, user2Tag);
+        assertNull(controller.getUserPosts(USER1_USERNAME, null, 20, revalidate, webRequest(revalidate)));
+
+        controller.likePost(postId, user2Req);
+        assertNotEquals(user2Tag, userPostsTag(user2Req));
+        assertEquals(1, controller.getUserPosts(USER1_USERNAME, null, 20, revalidate, webRequest(revalidate))
+                .items().get(0).likeCount());
+    }
+
+    private String userPostsTag(HttpServletRequest request) {
+        ServletWebRequest webRequest = webRequest(request);
+        controller.getUserPosts(USER1_USERNAME, null, 20, request, webRequest);
+        return webRequest.getResponse().getHeader(HttpHeaders.ETAG);
+    }
+
     @Test
     public void testAddComment() {
         long postId = controller.createPost(new CreatePostDto("test post"), user1Req).id();
         controller.addComment(postId, "Great post!", user2Req);
-        var comments = controller.getComments(postId);
+        var comments = controller.getComments(postId, null, 20).items();
         assertEquals(1, comments.size());
         assertEquals("Great post!", comments.get(0).content());
     }
 
+    @Test
+    public void testCommentsArePaged() {
+        long postId = controller.createPost(new CreatePostDto("test post"), user1Req).id();
+        for (int i = 0; i < 3; i++) {
+            controller.addComment(postId, "comment " + i, user2Req);
+        }
+        PageDto<CommentDto> first = controller.getComments(postId, null, 2);
+        assertEquals(List.of("comment 0", "comment 1"), first.items().stream().map(CommentDto::content).toList());
+        assertNotNull(first.nextCursor());
+
+        PageDto<CommentDto> second = controller.getComments(postId, first.nextCursor(), 2);
+        assertEquals(List.of("comment 2"), second.items().stream().map(CommentDto::content).toList());
+        assertNull(second.nextCursor());
+    }
+
     @Test
     public void testDeletePost() {
         long postId = controller.createPost(new CreatePostDto("test post"), user1Req).id();
-        var postsBefore = controller.getUserPosts(USER1_USERNAME, user1Req);
+        var postsBefore = controller.getUserPosts(USER1_USERNAME, null, 20, user1Req, webRequest(user1Req)).items();
         assertTrue(postsBefore.stream().anyMatch(p -> p.id() == postId));
         
         // Test that delete operation completes without throwing an exception
@@ -90,10 +131,10 @@ public class PostControllerTest extends RelayControllerTestBase {
     public void testDeleteComment() {
         long postId = controller.createPost(new CreatePostDto("test post"), user1Req).id();
         controller.addComment(postId, "test comment", user2Req);
-        var comments = controller.getComments(postId);
+        var comments = controller.getComments(postId, null, 20).items();
         long commentId = comments.get(0).id();
         assertDoesNotThrow(() -> controller.deleteComment(commentId, user2Req));
-        comments = controller.getComments(postId);
+        comments = controller.getComments(postId, null, 20).items();
         assertEquals(0, comments.size());
     }
 
@@ -10,8 +10,10 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.HttpHeaders;
 import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.context.request.ServletWebRequest;
 import oth.ics.wtp.relaybackend.repositories.*;
 
 import java.nio.charset.StandardCharsets;
@@ -64,7 +66,7 @@ public abstract class RelayControllerTestBase {
     }
 
     private void createUser(String username, String password) {
-        if (userRepository.existsById(username)) {
+        if (userRepository.existsByUsername(username)) {
             return;
         }
 
@@ -87,6 +89,12 @@ public abstract class RelayControllerTestBase {
         return request;
     }
 
+    /** Wraps a mock request for the GET handlers that check {@code If-None-Match}. */
+    protected ServletWebRequest webRequest(HttpServletRequest request) {
+        ((MockHttpServletRequest) request).setMethod("GET");
+        return new ServletWebRequest(request, new MockHttpServletResponse());
+    }
+
     protected HttpServletRequest user1() {
         return mockRequest(USER1_USERNAME, USER1_PASSWORD);
     }
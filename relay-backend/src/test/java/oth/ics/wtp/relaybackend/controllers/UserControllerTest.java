@@ -3,9 +3,15 @@
 // Manually adapted for user management and follow functionality testing
 package oth.ics.wtp.relaybackend.controllers;
 
+import jakarta.persistence.EntityManagerFactory;
 import jakarta.servlet.http.HttpServletRequest;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.server.ResponseStatusException;
 import oth.ics.wtp.relaybackend.dtos.*;
 import java.util.List;
@@ -15,6 +21,7 @@ public class UserControllerTest extends RelayControllerTestBase {
 
     @Autowired private UserController controller;
     @Autowired private PostController postController;
+    @Autowired private EntityManagerFactory entityManagerFactory;
 
     @Test
     public void testRegisterAndLogin() {
@@ -36,16 +43,53 @@ public class UserControllerTest extends RelayControllerTestBase {
 
     @Test
     public void testGetUserByUsername() {
-        UserDto user = controller.getUser(USER1_USERNAME);
+        UserDto user = controller.getUser(USER1_USERNAME, webRequest(user1()));
         assertEquals(USER1_USERNAME, user.username());
     }
 
+    @Test
+    public void testUnchangedProfileIsNotModifiedWithoutQueries() {
+        ServletWebRequest first = webRequest(user1());
+        controller.getUser(USER1_USERNAME, first);
+        String etag = first.getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotNull(etag);
+
+        MockHttpServletRequest revalidate = new MockHttpServletRequest();
+        revalidate.addHeader(HttpHeaders.IF_NONE_MATCH, etag);
+        ServletWebRequest second = webRequest(revalidate);
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        assertNull(controller.getUser(USER1_USERNAME, second));
+        assertEquals(304, second.getResponse().getStatus());
+        assertEquals(0, statistics.getPrepareStatementCount());
+
+        // A new follower changes the counts shown, and so the tag
+        controller.followUser(USER1_USERNAME, user2());
+        ServletWebRequest third = webRequest(revalidate);
+        assertEquals(1, controller.getUser(USER1_USERNAME, third).followerCount());
+        assertNotEquals(etag, third.getResponse().getHeader(HttpHeaders.ETAG));
+    }
+
+    @Test
+    public void testFollowListTagsChangeWithFollows() {
+        ServletWebRequest before = webRequest(user1());
+        controller.getFollowers(USER2_USERNAME, before);
+        String etag = before.getResponse().getHeader(HttpHeaders.ETAG);
+
+        controller.followUser(USER2_USERNAME, user1());
+
+        MockHttpServletRequest revalidate = new MockHttpServletRequest();
+        revalidate.addHeader(HttpHeaders.IF_NONE_MATCH, etag);
+        assertEquals(1, controller.getFollowers(USER2_USERNAME, webRequest(revalidate)).size());
+        assertEquals(1, controller.getFollowing(USER1_USERNAME, webRequest(revalidate)).size());
+    }
+
     @Test
     public void testSearchUsers() {
         controller.register(basic("alice", "pass1"));
         controller.register(basic("alex", "pass2"));
         
-        List<UserSearchDto> results = controller.searchUsers("al", user1());
+        List<UserSearchDto> results = controller.searchUsers("al", null, 20, user1()).items();
         assertTrue(results.size() >= 2);
     }
 
@@ -80,9 +124,11 @@ public class UserControllerTest extends RelayControllerTestBase {
             null,
             0,
             0,
+            0,
             "Updated Name",
             "updated@example.com",
-            "Updated bio"
+            "Updated bio",
+            null
         );
         
         UserDto updated = controller.updateCurrentUserProfile(updateDto, user1());
@@ -101,11 +147,11 @@ public class UserControllerTest extends RelayControllerTestBase {
         controller.followUser("followed", followerReq);
         
         // Get followers
-        var followers = controller.getFollowers("followed");
+        var followers = controller.getFollowers("followed", webRequest(followerReq));
         assertEquals(1, followers.size());
         
         // Get following
-        var following = controller.getFollowing("follower");
+        var following = controller.getFollowing("follower", webRequest(followerReq));
         assertEquals(1, following.size());
     }
 
@@ -132,4 +178,14 @@ public class UserControllerTest extends RelayControllerTestBase {
         assertThrows(ResponseStatusException.class,
                 () -> controller.register(basic(username, password)));
     }
+
+    @Test
+    public void testDeleteCurrentUserLogsItOutAtOnce() {
+        AccountDeletionDto deletion = controller.deleteCurrentUser(user2());
+
+        assertEquals(USER2_USERNAME, deletion.username());
+        assertNull(deletion.finishedAt());
+        assertThrows(ResponseStatusException.class, () -> controller.getCurrentUserProfile(user2()));
+        assertThrows(ResponseStatusException.class, () -> controller.getUser(USER2_USERNAME, webRequest(user1())));
+    }
 }
@@ -0,0 +1,139 @@
+package oth.ics.wtp.relaybackend.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import oth.ics.wtp.relaybackend.dtos.AccountDeletionDto;
+import oth.ics.wtp.relaybackend.dtos.CreatePostDto;
+import oth.ics.wtp.relaybackend.dtos.CreateUserDto;
+import oth.ics.wtp.relaybackend.dtos.PostDto;
+import oth.ics.wtp.relaybackend.repositories.CommentRepository;
+import oth.ics.wtp.relaybackend.repositories.FollowRepository;
+import oth.ics.wtp.relaybackend.repositories.LikeRepository;
+import oth.ics.wtp.relaybackend.repositories.PostHashtagRepository;
+import oth.ics.wtp.relaybackend.repositories.PostRepository;
+import oth.ics.wtp.relaybackend.repositories.UserRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ActiveProfiles("test")
+@SpringBootTest(properties = "relay.account-deletion.chunk-size=2")
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+public class AccountDeletionsTest {
+    private static final List<String> FRIENDS = List.of("amy", "ben", "cat");
+
+    @Autowired private AccountDeletions accountDeletions;
+    @Autowired private PostPurger postPurger;
+    @Autowired private UserService userService;
+    @Autowired private PostService postService;
+    @Autowired private FollowService followService;
+    @Autowired private UserStatsService userStatsService;
+    @Autowired private UserIds userIds;
+    @Autowired private PostSearchIndex postSearchIndex;
+    @Autowired private TrendingPosts trendingPosts;
+    @Autowired private UserRepository userRepository;
+    @Autowired private PostRepository postRepository;
+    @Autowired private LikeRepository likeRepository;
+    @Autowired private CommentRepository commentRepository;
+    @Autowired private FollowRepository followRepository;
+    @Autowired private PostHashtagRepository postHashtagRepository;
+
+    private final List<Long> friendPosts = new ArrayList<>();
+    private final List<Long> ownPosts = new ArrayList<>();
+
+    @BeforeEach
+    public void setup() {
+        userService.createUser(new CreateUserDto("leaver", "pass"));
+        for (String friend : FRIENDS) {
+            userService.createUser(new CreateUserDto(friend, "pass"));
+            followService.followUser("leaver", friend);
+            followService.followUser(friend, "leaver");
+            long friendPost = postService.createPost(new CreatePostDto("by " + friend), friend).id();
+            friendPosts.add(friendPost);
+            postService.likePost(friendPost, "leaver");
+            postService.addCommentToPost(friendPost, "leaver", "nice");
+            long ownPost = postService.createPost(new CreatePostDto("for " + friend), "leaver").id();
+            ownPosts.add(ownPost);
+            postService.likePost(ownPost, friend);
+            postService.addCommentToPost(ownPost, friend, "thanks");
+        }
+    }
+
+    @Test
+    public void testAccountIsHiddenAtOnceAndDeletedInChunks() {
+        Long leaver = userIds.require("leaver");
+
+        AccountDeletionDto requested = userService.deleteUser("leaver");
+
+        assertNull(requested.finishedAt());
+        assertFalse(userService.userExists("leaver"));
+        assertEquals(3, postService.getPosts(ownPosts, "amy").notFound().size());
+        assertTrue(userRepository.existsById(leaver));
+
+        accountDeletions.run();
+
+        AccountDeletionDto done = accountDeletions.getProgress(leaver);
+        assertNotNull(done.finishedAt());
+        assertEquals(6, done.follows());
+        assertEquals(3, done.likes());
+        assertEquals(3, done.comments());
+        assertEquals(3, done.posts());
+        assertFalse(userRepository.existsById(leaver));
+        assertEquals(0, likeRepository.count());
+        assertEquals(0, commentRepository.count());
+        assertEquals(0, followRepository.count());
+        for (String friend : FRIENDS) {
+            assertEquals(0, userStatsService.get(userIds.require(friend)).getFollowers());
+            assertEquals(0, userStatsService.get(userIds.require(friend)).getFollowing());
+        }
+        for (PostDto post : postService.getPosts(friendPosts, "amy").items()) {
+            assertEquals(0, post.likeCount());
+            assertEquals(0, post.commentCount());
+        }
+        assertTrue(postSearchIndex.newest("for", null, 10).isEmpty());
+        assertTrue(trendingPosts.top(0, 10).stream().noneMatch(ownPosts::contains));
+    }
+
+    @Test
+    public void testPostsPurgedBeforeTheDeletionRunLeaveTheIndexes() {
+        userService.deleteUser("leaver");
+
+        postPurger.purge();
+        accountDeletions.run();
+
+        assertEquals(0, postRepository.findTombstones(10).size());
+        assertTrue(postSearchIndex.newest("for", null, 10).isEmpty());
+        assertTrue(trendingPosts.top(0, 10).stream().noneMatch(ownPosts::contains));
+    }
+
+    @Test
+    public void testTagsOfDeletedPostsArePurged() {
+        postService.createPost(new CreatePostDto("leaving #farewell"), "leaver");
+        assertEquals(1, postHashtagRepository.count());
+
+        userService.deleteUser("leaver");
+        accountDeletions.run();
+
+        assertEquals(0, postHashtagRepository.count());
+    }
+
+    @Test
+    public void testUsernameIsFreeWhileRowsAreBeingDeleted() {
+        Long old = userIds.require("leaver");
+        userService.deleteUser("leaver");
+
+        userService.createUser(new CreateUserDto("leaver", "new"));
+        postService.createPost(new CreatePostDto("fresh start"), "leaver");
+        accountDeletions.run();
+
+        assertNotEquals(old, userIds.require("leaver"));
+        assertEquals(FRIENDS.size() + 1, postRepository.count());
+        assertEquals(1, userService.getUserByUsername("leaver").postCount());
+    }
+}
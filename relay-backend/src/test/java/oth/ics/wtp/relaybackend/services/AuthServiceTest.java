@@ -1,17 +1,23 @@
 package oth.ics.wtp.relaybackend.services;
 
+import jakarta.persistence.EntityManagerFactory;
 import jakarta.servlet.http.HttpSession;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.web.server.ResponseStatusException;
 import oth.ics.wtp.relaybackend.WeakCrypto;
+import oth.ics.wtp.relaybackend.entities.Post;
 import oth.ics.wtp.relaybackend.entities.User;
+import oth.ics.wtp.relaybackend.repositories.PostRepository;
 import oth.ics.wtp.relaybackend.repositories.UserRepository;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -21,7 +27,10 @@ import static org.junit.jupiter.api.Assertions.*;
 @DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
 public class AuthServiceTest {
     @Autowired private AuthService authService;
+    @Autowired private UserService userService;
     @Autowired private UserRepository userRepository;
+    @Autowired private PostRepository postRepository;
+    @Autowired private EntityManagerFactory entityManagerFactory;
 
     @BeforeEach
     public void setup() {
@@ -125,6 +134,56 @@ public class AuthServiceTest {
         assertEquals("authtest123", user.getUsername());
     }
 
+    @Test
+    public void testGetAuthenticatedUserDoesNotLoadPostHistory() {
+        User author = userRepository.findByUsername("authtest123").orElseThrow();
+        for (int i = 0; i < 25; i++) {
+            postRepository.save(new Post("Post " + i, author));
+        }
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(HttpHeaders.AUTHORIZATION, "Basic " +
+                WeakCrypto.base64encode("authtest123:testpass"));
+        authService.logIn(request);
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        authService.getAuthenticatedUser(request);
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(1, statistics.getEntityLoadCount());
+    }
+
+    @Test
+    public void testPrincipalIsResolvedWithoutQueries() {
+        MockHttpServletRequest warmup = new MockHttpServletRequest();
+        warmup.setAttribute("authenticatedUsername", "authtest123");
+        AuthenticatedUser principal = authService.getPrincipal(warmup);
+
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setAttribute("authenticatedUsername", "authtest123");
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        assertEquals(principal, authService.getPrincipal(request));
+        assertSame(authService.getPrincipal(request), authService.getPrincipal(request));
+        assertDoesNotThrow(() -> authService.requireUser(request, "authtest123"));
+        assertEquals(0, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void testPrincipalOfDeletedUserIsRejected() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setAttribute("authenticatedUsername", "authtest123");
+        authService.getPrincipal(request);
+
+        userService.deleteUser("authtest123");
+
+        MockHttpServletRequest next = new MockHttpServletRequest();
+        next.setAttribute("authenticatedUsername", "authtest123");
+        ResponseStatusException e = assertThrows(ResponseStatusException.class, () -> authService.getPrincipal(next));
+        assertEquals(HttpStatus.UNAUTHORIZED, e.getStatusCode());
+    }
+
     @Test
     public void testGetAuthenticatedUserNotLoggedIn() {
         MockHttpServletRequest request = new MockHttpServletRequest();
@@ -141,7 +200,7 @@ public class AuthServiceTest {
         authService.logIn(request);
         
         // Delete the user from database to simulate invalid session
-        userRepository.deleteById("authtest123");
+        userRepository.delete(userRepository.findByUsername("authtest123").orElseThrow());
         
         assertThrows(ResponseStatusException.class,
                 () -> authService.getAuthenticatedUser(request));
@@ -168,7 +227,7 @@ public class AuthServiceTest {
         authService.logIn(request);
         
         // Delete the user from database to simulate invalid session
-        userRepository.deleteById("authtest123");
+        userRepository.delete(userRepository.findByUsername("authtest123").orElseThrow());
         
         assertFalse(authService.isAuthenticated(request));
     }
@@ -0,0 +1,81 @@
+package oth.ics.wtp.relaybackend.services;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import oth.ics.wtp.relaybackend.dtos.CreateUserDto;
+import oth.ics.wtp.relaybackend.dtos.UserSearchDto;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ActiveProfiles("test")
+@SpringBootTest
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+public class FollowGraphTest {
+    @Autowired private FollowGraph followGraph;
+    @Autowired private FollowService followService;
+    @Autowired private UserService userService;
+    @Autowired private EntityManagerFactory entityManagerFactory;
+
+    @BeforeEach
+    public void setup() {
+        for (String name : List.of("alice", "bob", "carol", "dave")) {
+            userService.createUser(new CreateUserDto(name, "pass"));
+        }
+        followService.followUser("alice", "bob");
+        followService.followUser("alice", "carol");
+        followService.followUser("bob", "carol");
+    }
+
+    @Test
+    public void testTracksFollowsAndUnfollows() {
+        assertTrue(followGraph.follows("alice", "bob"));
+        assertFalse(followGraph.follows("bob", "alice"));
+        assertEquals(Set.of("alice", "bob"), Set.copyOf(followGraph.followers("carol")));
+        assertEquals(2, followGraph.followerCount("carol"));
+
+        followService.unfollowUser("alice", "carol");
+
+        assertFalse(followGraph.follows("alice", "carol"));
+        assertEquals(List.of("bob"), followGraph.followers("carol"));
+    }
+
+    @Test
+    public void testBulkLoadMatchesIncrementalUpdates() {
+        followGraph.load();
+
+        assertEquals(Set.of("bob", "carol"), Set.copyOf(followGraph.following("alice")));
+        assertEquals(Set.of("carol"), followGraph.followedAmong("bob", List.of("alice", "carol", "dave", "nobody")));
+        assertTrue(followGraph.following("dave").isEmpty());
+    }
+
+    @Test
+    public void testDeletedUserLeavesNoEdges() {
+        userService.deleteUser("carol");
+
+        assertEquals(List.of("bob"), followGraph.following("alice"));
+        assertTrue(followGraph.following("bob").isEmpty());
+        assertTrue(followGraph.followers("carol").isEmpty());
+    }
+
+    @Test
+    public void testFollowerListIsResolvedWithoutPerEdgeQueries() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        List<UserSearchDto> following = userService.getFollowing("alice");
+
+        assertEquals(2, following.size());
+        // Existence check and one batch load of the listed users
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+}
@@ -0,0 +1,114 @@
+package oth.ics.wtp.relaybackend.services;
+
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+import oth.ics.wtp.relaybackend.dtos.CreatePostDto;
+import oth.ics.wtp.relaybackend.dtos.CreateUserDto;
+import oth.ics.wtp.relaybackend.repositories.PostRepository;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ActiveProfiles("test")
+@SpringBootTest
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+public class LikeCountersTest {
+    @Autowired private LikeCounters likeCounters;
+    @Autowired private PostService postService;
+    @Autowired private UserService userService;
+    @Autowired private PostRepository postRepository;
+    @Autowired private EntityManager entityManager;
+    @Autowired private TransactionTemplate transactionTemplate;
+
+    private Long postId;
+
+    @BeforeEach
+    public void setup() {
+        userService.createUser(new CreateUserDto("author", "pass"));
+        userService.createUser(new CreateUserDto("fan1", "pass"));
+        userService.createUser(new CreateUserDto("fan2", "pass"));
+        postId = postService.createPost(new CreatePostDto("Popular"), "author").id();
+    }
+
+    @Test
+    public void testLikesAreVisibleBeforeFlush() {
+        postService.likePost(postId, "fan1");
+        postService.likePost(postId, "fan2");
+
+        assertEquals(0, persistedCount());
+        assertEquals(2, likeCounters.unflushed(postId));
+        assertEquals(2, renderedCount());
+    }
+
+    @Test
+    public void testFlushWritesDeltasToPosts() {
+        postService.likePost(postId, "fan1");
+        postService.likePost(postId, "fan2");
+        postService.unlikePost(postId, "fan1");
+
+        likeCounters.flush();
+
+        assertEquals(1, persistedCount());
+        assertEquals(0, likeCounters.unflushed(postId));
+        assertEquals(1, renderedCount());
+    }
+
+    @Test
+    public void testFlushesNeverCountALikeTwice() throws Exception {
+        AtomicBoolean done = new AtomicBoolean();
+        Set<Integer> seen = ConcurrentHashMap.newKeySet();
+        Thread reader = new Thread(() -> {
+            while (!done.get()) {
+                seen.add(renderedCount());
+            }
+        });
+        reader.start();
+        for (int i = 0; i < 100; i++) {
+            postService.likePost(postId, "fan1");
+            likeCounters.flush();
+            postService.unlikePost(postId, "fan1");
+            likeCounters.flush();
+        }
+        done.set(true);
+        reader.join();
+
+        assertTrue(Set.of(0, 1).containsAll(seen), "Counts seen: " + seen);
+    }
+
+    @Test
+    public void testUnlikeWithoutLikeDoesNotCount() {
+        postService.unlikePost(postId, "fan1");
+        assertEquals(0, likeCounters.unflushed(postId));
+    }
+
+    @Test
+    public void testReconcileRepairsLostDeltas() {
+        postService.likePost(postId, "fan1");
+        likeCounters.flush();
+        // As if the process died with deltas that were never flushed
+        transactionTemplate.executeWithoutResult(status -> entityManager
+                .createNativeQuery("UPDATE posts SET like_count = 7 WHERE id = :id")
+                .setParameter("id", postId)
+                .executeUpdate());
+
+        assertEquals(1, likeCounters.reconcile());
+        assertEquals(1, persistedCount());
+    }
+
+    private int renderedCount() {
+        return postService.getUserPosts("author", null, null, 20).items().get(0).likeCount();
+    }
+
+    private long persistedCount() {
+        return postRepository.findById(postId).orElseThrow().getLikeCount();
+    }
+}
@@ -0,0 +1,95 @@
+package oth.ics.wtp.relaybackend.services;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.server.ResponseStatusException;
+import oth.ics.wtp.relaybackend.WeakCrypto;
+import oth.ics.wtp.relaybackend.dtos.CreateUserDto;
+import oth.ics.wtp.relaybackend.entities.User;
+import oth.ics.wtp.relaybackend.repositories.UserRepository;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ActiveProfiles("test")
+@SpringBootTest(properties = {
+        "relay.passwords.bcrypt-cost=5",
+        "relay.passwords.threads=1",
+        "relay.passwords.queue-capacity=1"})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+public class PasswordHasherTest {
+    @Autowired private PasswordHasher passwordHasher;
+    @Autowired private AuthService authService;
+    @Autowired private UserService userService;
+    @Autowired private UserRepository userRepository;
+    @Autowired private MeterRegistry meterRegistry;
+    @Autowired @Qualifier("passwordExecutor") private ThreadPoolTaskExecutor passwordExecutor;
+
+    @Test
+    public void testRegisterHashesWithConfiguredCost() {
+        userService.createUser(new CreateUserDto("alice", "secret"));
+
+        String hash = userRepository.findByUsername("alice").orElseThrow().getHashedPassword();
+        assertTrue(hash.startsWith("$2a$05$"));
+        assertFalse(passwordHasher.needsRehash(hash));
+        assertTrue(passwordHasher.verify("secret", hash));
+        assertEquals(1, meterRegistry.get("relay.passwords").tag("operation", "hash").timer().count());
+    }
+
+    @Test
+    public void testLoginRehashesOtherCosts() {
+        userRepository.save(new User("bob", new BCryptPasswordEncoder(4).encode("secret")));
+
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(HttpHeaders.AUTHORIZATION, WeakCrypto.createBasicAuthHeader("bob", "secret"));
+        authService.logIn(request);
+
+        String hash = userRepository.findByUsername("bob").orElseThrow().getHashedPassword();
+        assertTrue(hash.startsWith("$2a$05$"));
+        assertTrue(passwordHasher.verify("secret", hash));
+    }
+
+    @Test
+    public void testSaturatedPoolAnswersServiceUnavailable() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        // One task occupies the only thread, a second one fills the queue
+        passwordExecutor.execute(() -> {
+            started.countDown();
+            awaitQuietly(release);
+        });
+        started.await();
+        passwordExecutor.execute(() -> awaitQuietly(release));
+
+        ResponseStatusException e = assertThrows(ResponseStatusException.class, () -> passwordHasher.hash("secret"));
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, e.getStatusCode());
+        assertEquals("2", e.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        assertEquals(1, meterRegistry.get("relay.passwords.queue").gauge().value());
+        assertEquals(1, meterRegistry.get("relay.passwords.rejected").counter().count());
+
+        release.countDown();
+        while (!passwordExecutor.getThreadPoolExecutor().getQueue().isEmpty()) {
+            Thread.sleep(10);
+        }
+        assertNotNull(passwordHasher.hash("secret"));
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
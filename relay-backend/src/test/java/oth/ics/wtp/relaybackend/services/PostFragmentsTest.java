@@ -0,0 +1,103 @@
+package oth.ics.wtp.relaybackend.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import oth.ics.wtp.relaybackend.dtos.PageDto;
+import oth.ics.wtp.relaybackend.dtos.PostDto;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ActiveProfiles("test")
+@SpringBootTest(properties = "relay.post-cache.capacity=8KB")
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+public class PostFragmentsTest {
+    @Autowired private PostFragments postFragments;
+    @Autowired private ObjectMapper objectMapper;
+
+    @Test
+    public void testPagesAreWrittenAsJacksonWould() throws IOException {
+        PageDto<PostDto> page = new PageDto<>(List.of(
+                post(3, "Quotes \" and \\ backslashes\nand a line break", 12, true),
+                post(2, "Ünïcödé and emoji 🚀 #tag", 0, false)), "2");
+        String expected = jackson(page);
+
+        assertEquals(expected, json(page));
+        assertEquals(2, postFragments.cachedCount());
+        // Served from the cache, with counts and like flag as of this response
+        assertEquals(expected, json(page));
+        PageDto<PostDto> liked = new PageDto<>(List.of(post(3, page.items().get(0).content(), 13, false)), null);
+        assertEquals(jackson(liked), json(liked));
+        assertEquals("{\"items\":[]}", json(new PageDto<>(List.of(), null)));
+    }
+
+    @Test
+    public void testGzipDecodesToTheSameJson() throws IOException {
+        List<PostDto> posts = new ArrayList<>();
+        for (int i = 1; i <= 20; i++) {
+            posts.add(post(i, "Post number " + i + " with the same words as the others", i, i % 2 == 0));
+        }
+        PageDto<PostDto> page = new PageDto<>(posts, "cursor \"quoted\"");
+        String expected = jackson(page);
+
+        assertEquals(expected, gunzip(page));
+        assertEquals(expected, gunzip(page));
+    }
+
+    @Test
+    public void testRingOverwritesOldestFragments() throws IOException {
+        List<PostDto> posts = new ArrayList<>();
+        for (int i = 1; i <= 200; i++) {
+            posts.add(post(i, "A post long enough that two hundred of them do not fit into eight kilobytes " + i, 0, false));
+        }
+        PageDto<PostDto> page = new PageDto<>(posts, null);
+        String expected = jackson(page);
+
+        assertEquals(expected, json(page));
+        assertTrue(postFragments.cachedCount() < 200);
+        assertEquals(expected, json(page));
+        assertEquals(expected, gunzip(page));
+    }
+
+    @Test
+    public void testDeletedPostIsDropped() throws IOException {
+        json(new PageDto<>(List.of(post(1, "first", 0, false), post(2, "second", 0, false)), null));
+        postFragments.onPostDeleted(1L);
+        assertEquals(1, postFragments.cachedCount());
+    }
+
+    /** What the Jackson message converter writes, which escapes surrogate pairs unlike writeValueAsString. */
+    private String jackson(PageDto<PostDto> page) throws IOException {
+        return new String(objectMapper.writeValueAsBytes(page), StandardCharsets.UTF_8);
+    }
+
+    private String json(PageDto<PostDto> page) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        postFragments.writeJson(page, out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private String gunzip(PageDto<PostDto> page) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        postFragments.writeGzip(page, out);
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static PostDto post(long id, String content, int likes, boolean liked) {
+        return new PostDto(id, content, "author", LocalDateTime.of(2024, 5, 1, 12, 30, 15, 123_000_000).plusMinutes(id), likes, (int) id % 3, liked);
+    }
+}
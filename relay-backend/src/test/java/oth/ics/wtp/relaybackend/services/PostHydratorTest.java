@@ -0,0 +1,77 @@
+package oth.ics.wtp.relaybackend.services;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import oth.ics.wtp.relaybackend.dtos.CreatePostDto;
+import oth.ics.wtp.relaybackend.dtos.CreateUserDto;
+import oth.ics.wtp.relaybackend.dtos.PostDto;
+import oth.ics.wtp.relaybackend.entities.Post;
+import oth.ics.wtp.relaybackend.repositories.PostRepository;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ActiveProfiles("test")
+@SpringBootTest
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+public class PostHydratorTest {
+    private static final int PAGE_SIZE = 20;
+
+    @Autowired private PostHydrator postHydrator;
+    @Autowired private PostService postService;
+    @Autowired private UserService userService;
+    @Autowired private PostRepository postRepository;
+    @Autowired private UserIds userIds;
+    @Autowired private EntityManagerFactory entityManagerFactory;
+
+    @BeforeEach
+    public void setup() {
+        userService.createUser(new CreateUserDto("author", "pass"));
+        userService.createUser(new CreateUserDto("viewer", "pass"));
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            long postId = postService.createPost(new CreatePostDto("Post " + i), "author").id();
+            if (i % 2 == 0) {
+                postService.likePost(postId, "viewer");
+            }
+        }
+    }
+
+    @Test
+    public void testPageIsHydratedWithOneQuery() {
+        List<Post> posts = postRepository.findByAuthorIdOrderByCreatedAtDescIdDesc(userIds.require("author"), PageRequest.of(0, PAGE_SIZE));
+        Statistics statistics = statistics();
+
+        List<PostDto> dtos = postHydrator.hydrate(posts, "viewer");
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(PAGE_SIZE, dtos.size());
+        assertEquals(PAGE_SIZE / 2, dtos.stream().filter(PostDto::isLikedByCurrentUser).count());
+        assertTrue(dtos.stream().allMatch(dto -> dto.likeCount() == (dto.isLikedByCurrentUser() ? 1 : 0)));
+    }
+
+    @Test
+    public void testAnonymousPageIsHydratedWithoutQueries() {
+        List<Post> posts = postRepository.findByAuthorIdOrderByCreatedAtDescIdDesc(userIds.require("author"), PageRequest.of(0, PAGE_SIZE));
+        Statistics statistics = statistics();
+
+        List<PostDto> dtos = postHydrator.hydrate(posts, null);
+
+        assertEquals(0, statistics.getPrepareStatementCount());
+        assertTrue(dtos.stream().noneMatch(PostDto::isLikedByCurrentUser));
+    }
+
+    private Statistics statistics() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        return statistics;
+    }
+}
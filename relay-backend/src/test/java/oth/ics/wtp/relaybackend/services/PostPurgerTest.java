@@ -0,0 +1,79 @@
+package oth.ics.wtp.relaybackend.services;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.server.ResponseStatusException;
+import oth.ics.wtp.relaybackend.dtos.CreatePostDto;
+import oth.ics.wtp.relaybackend.dtos.CreateUserDto;
+import oth.ics.wtp.relaybackend.repositories.CommentRepository;
+import oth.ics.wtp.relaybackend.repositories.LikeRepository;
+import oth.ics.wtp.relaybackend.repositories.PostRepository;
+import oth.ics.wtp.relaybackend.repositories.TimelineEntryRepository;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ActiveProfiles("test")
+@SpringBootTest(properties = "relay.purge.batch-size=2")
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+public class PostPurgerTest {
+    private static final List<String> FANS = List.of("fan1", "fan2", "fan3", "fan4", "fan5");
+
+    @Autowired private PostPurger postPurger;
+    @Autowired private PostService postService;
+    @Autowired private UserService userService;
+    @Autowired private FollowService followService;
+    @Autowired private TimelineService timelineService;
+    @Autowired private PostRepository postRepository;
+    @Autowired private LikeRepository likeRepository;
+    @Autowired private CommentRepository commentRepository;
+    @Autowired private TimelineEntryRepository timelineEntryRepository;
+    @Autowired private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    public void setup() {
+        userService.createUser(new CreateUserDto("author", "pass"));
+        for (String fan : FANS) {
+            userService.createUser(new CreateUserDto(fan, "pass"));
+            followService.followUser(fan, "author");
+            timelineService.getTimeline(fan, null, 20);
+        }
+    }
+
+    @Test
+    public void testDeletedPostIsHiddenAtOnceAndPurgedInBatches() {
+        long postId = postService.createPost(new CreatePostDto("viral"), "author").id();
+        for (String fan : FANS) {
+            postService.likePost(postId, fan);
+            postService.addCommentToPost(postId, fan, "wow");
+        }
+
+        postService.deletePost(postId, "author");
+
+        // Gone for every reader while its rows are still there
+        assertTrue(postRepository.findById(postId).isEmpty());
+        assertEquals(List.of(String.valueOf(postId)), postService.getPosts(List.of(postId), "fan1").notFound());
+        assertTrue(timelineService.getTimeline("fan1", null, 20).isEmpty());
+        assertThrows(ResponseStatusException.class, () -> postService.likePost(postId, "fan1"));
+        ResponseStatusException comments = assertThrows(ResponseStatusException.class,
+                () -> postService.getCommentsForPost(postId, null, 20));
+        assertEquals(HttpStatus.NOT_FOUND, comments.getStatusCode());
+        assertEquals(5, likeRepository.countByPost(postId));
+
+        postPurger.purge();
+
+        assertEquals(0, likeRepository.countByPost(postId));
+        assertEquals(0, commentRepository.count());
+        assertEquals(0, timelineEntryRepository.count());
+        assertTrue(postRepository.findTombstones(10).isEmpty());
+        assertEquals(5, meterRegistry.get("relay.purge.rows").tag("table", "likes").counter().count());
+        assertEquals(0, meterRegistry.get("relay.purge.pending").gauge().value());
+    }
+}
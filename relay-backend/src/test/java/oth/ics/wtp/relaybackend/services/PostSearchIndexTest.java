@@ -0,0 +1,148 @@
+package oth.ics.wtp.relaybackend.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.server.ResponseStatusException;
+import oth.ics.wtp.relaybackend.dtos.CreatePostDto;
+import oth.ics.wtp.relaybackend.dtos.CreateUserDto;
+import oth.ics.wtp.relaybackend.dtos.PageDto;
+import oth.ics.wtp.relaybackend.dtos.PostDto;
+import oth.ics.wtp.relaybackend.entities.Post;
+import oth.ics.wtp.relaybackend.repositories.PostRepository;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ActiveProfiles("test")
+@SpringBootTest(properties = "relay.search.snapshot-path=target/search-index-test.snapshot")
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+public class PostSearchIndexTest {
+    @Autowired private PostSearchIndex postSearchIndex;
+    @Autowired private PostService postService;
+    @Autowired private UserService userService;
+    @Autowired private PostRepository postRepository;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        Files.deleteIfExists(Path.of("target/search-index-test.snapshot"));
+        postSearchIndex.load();
+        userService.createUser(new CreateUserDto("author", "pass"));
+    }
+
+    @Test
+    public void testAllTermsMustMatch() {
+        long coffee = post("Morning coffee with friends");
+        long both = post("Coffee and tea, both fine");
+        post("Just tea today");
+
+        assertEquals(List.of(both, coffee), postSearchIndex.newest("COFFEE", null, 10));
+        assertEquals(List.of(both), postSearchIndex.newest("tea coffee", null, 10));
+        assertTrue(postSearchIndex.newest("coffee espresso", null, 10).isEmpty());
+    }
+
+    @Test
+    public void testPhrasesMatchAdjacentWords() {
+        long phrase = post("The red fox jumps");
+        post("A fox that is red");
+
+        assertEquals(List.of(phrase), postSearchIndex.newest("\"red fox\"", null, 10));
+        assertEquals(2, postSearchIndex.newest("red fox", null, 10).size());
+    }
+
+    @Test
+    public void testRelevancePrefersDenseMatches() {
+        long dense = post("rust rust rust");
+        post("learning rust and go and many other languages this year");
+
+        assertEquals(dense, postSearchIndex.best("rust", 0, 10).get(0));
+        assertEquals(1, postSearchIndex.best("rust", 1, 10).size());
+    }
+
+    @Test
+    public void testSearchPagesNewestFirst() {
+        List<Long> expected = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            expected.add(0, post("update number " + i));
+        }
+
+        List<Long> found = new ArrayList<>();
+        String cursor = null;
+        do {
+            PageDto<PostDto> page = postService.searchPosts("update", "recent", null, cursor, 2);
+            page.items().forEach(post -> found.add(post.id()));
+            cursor = page.nextCursor();
+        } while (cursor != null);
+
+        assertEquals(expected, found);
+        // Recent cursors are post ids, which can pass the int range
+        assertEquals(2, postService.searchPosts("update", "recent", null, String.valueOf(1L << 40), 2).items().size());
+        assertThrows(ResponseStatusException.class, () -> postService.searchPosts("update", "relevance", null, String.valueOf(1L << 40), 2));
+        assertThrows(ResponseStatusException.class, () -> postService.searchPosts(" ", "recent", null, null, 2));
+        assertThrows(ResponseStatusException.class, () -> postService.searchPosts("update", "oldest", null, null, 2));
+    }
+
+    @Test
+    public void testDeletedPostsStopMatching() {
+        long kept = post("garden photos");
+        long deleted = post("more garden photos");
+
+        postService.deletePost(deleted, "author");
+        assertEquals(List.of(kept), postSearchIndex.newest("garden", null, 10));
+
+        postSearchIndex.compact();
+        assertEquals(List.of(kept), postSearchIndex.newest("photos", null, 10));
+    }
+
+    @Test
+    public void testCompactionKeepsPostsIndexedMeanwhile() throws Exception {
+        int posts = 2000;
+        long firstId = 1_000_000;
+        Thread compactor = new Thread(() -> {
+            for (long id = firstId; id < firstId + posts; id += 2) {
+                postSearchIndex.remove(id - posts, "shared term");
+                postSearchIndex.compact();
+            }
+        });
+        for (long id = firstId - posts; id < firstId; id += 2) {
+            postSearchIndex.index(id, "shared term");
+        }
+
+        compactor.start();
+        for (long id = firstId; id < firstId + posts; id++) {
+            postSearchIndex.index(id, "shared term");
+        }
+        compactor.join();
+        postSearchIndex.compact();
+
+        assertEquals(posts, postSearchIndex.newest("shared", null, 2 * posts).size());
+        assertEquals(posts, postSearchIndex.newest("\"shared term\"", null, 2 * posts).size());
+    }
+
+    @Test
+    public void testSnapshotIsCaughtUpOnLoad() {
+        long kept = post("snapshot survives restarts");
+        long deleted = post("snapshot then deleted");
+        postSearchIndex.snapshot();
+
+        // Changes the index does not see, as if they happened after the snapshot was written
+        postRepository.deleteById(deleted);
+        Post added = postRepository.save(new Post("snapshot missed this", postRepository.findById(kept).orElseThrow().getAuthor()));
+
+        postSearchIndex.load();
+
+        assertEquals(List.of(added.getId(), kept), postSearchIndex.newest("snapshot", null, 10));
+        assertEquals(List.of(kept), postSearchIndex.newest("\"survives restarts\"", null, 10));
+    }
+
+    private long post(String content) {
+        return postService.createPost(new CreatePostDto(content), "author").id();
+    }
+}
@@ -8,15 +8,23 @@ import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.web.server.ResponseStatusException;
 import oth.ics.wtp.relaybackend.WeakCrypto;
+import oth.ics.wtp.relaybackend.dtos.BatchDto;
+import oth.ics.wtp.relaybackend.dtos.CommentDto;
 import oth.ics.wtp.relaybackend.dtos.CreatePostDto;
+import oth.ics.wtp.relaybackend.dtos.PageDto;
 import oth.ics.wtp.relaybackend.dtos.PostDto;
 import oth.ics.wtp.relaybackend.entities.Post;
 import oth.ics.wtp.relaybackend.entities.User;
 import oth.ics.wtp.relaybackend.repositories.LikeRepository;
+import oth.ics.wtp.relaybackend.repositories.PostHashtagRepository;
 import oth.ics.wtp.relaybackend.repositories.PostRepository;
 import oth.ics.wtp.relaybackend.repositories.UserRepository;
 import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -30,7 +38,9 @@ public class PostServiceTest {
     @Autowired private UserRepository userRepository;
     @Autowired private PostRepository postRepository;
     @Autowired private LikeRepository likeRepository;
+    @Autowired private PostHashtagRepository postHashtagRepository;
     @Autowired private EntityManager em;
+    @Autowired private EntityManagerFactory entityManagerFactory;
 
     @BeforeEach
     public void setup() {
@@ -71,21 +81,47 @@ public class PostServiceTest {
         postService.createPost(new CreatePostDto("Post 2"), "user1");
         postService.createPost(new CreatePostDto("Post 3"), "user2");
 
-        List<PostDto> user1Posts = postService.getUserPosts("user1", "user1");
+        List<PostDto> user1Posts = postService.getUserPosts("user1", "user1", null, 20).items();
         assertEquals(2, user1Posts.size());
         // Posts are ordered by createdAt DESC, so Post 2 comes first
         assertEquals("Post 2", user1Posts.get(0).content());
         assertEquals("Post 1", user1Posts.get(1).content());
 
-        List<PostDto> user2Posts = postService.getUserPosts("user2", "user1");
+        List<PostDto> user2Posts = postService.getUserPosts("user2", "user1", null, 20).items();
         assertEquals(1, user2Posts.size());
         assertEquals("Post 3", user2Posts.get(0).content());
     }
 
+    @Test
+    public void testGetUserPostsWithCursor() {
+        for (int i = 1; i <= 5; i++) {
+            postService.createPost(new CreatePostDto("Post " + i), "user1");
+        }
+
+        List<String> contents = new ArrayList<>();
+        String cursor = null;
+        do {
+            PageDto<PostDto> page = postService.getUserPosts("user1", "user2", cursor, 2);
+            assertTrue(page.items().size() <= 2);
+            page.items().forEach(post -> contents.add(post.content()));
+            cursor = page.nextCursor();
+        } while (cursor != null);
+
+        assertEquals(List.of("Post 5", "Post 4", "Post 3", "Post 2", "Post 1"), contents);
+    }
+
+    @Test
+    public void testInvalidCursorAndLimit() {
+        assertThrows(ResponseStatusException.class,
+                () -> postService.getUserPosts("user1", "user1", "not-a-cursor", 20));
+        assertThrows(ResponseStatusException.class,
+                () -> postService.getUserPosts("user1", "user1", null, 0));
+    }
+
     @Test
     public void testGetPostsByNonExistentUser() {
         assertThrows(ResponseStatusException.class,
-                () -> postService.getUserPosts("nonexistent", "user1"));
+                () -> postService.getUserPosts("nonexistent", "user1", null, 20).items());
     }
 
     @Test
@@ -136,6 +172,24 @@ public class PostServiceTest {
                 () -> postService.likePost(created.id(), "user2"));
     }
 
+    @Test
+    public void testBatchLookupKeepsOrderAndMarksMissingPosts() {
+        long first = postService.createPost(new CreatePostDto("first"), "user1").id();
+        long second = postService.createPost(new CreatePostDto("second"), "user1").id();
+        postService.likePost(second, "user2");
+
+        BatchDto<PostDto> batch = postService.getPosts(List.of(second, 999_999L, first), "user2");
+
+        assertEquals(3, batch.items().size());
+        assertEquals(second, batch.items().get(0).id());
+        assertTrue(batch.items().get(0).isLikedByCurrentUser());
+        assertEquals(1, batch.items().get(0).likeCount());
+        assertNull(batch.items().get(1));
+        assertEquals(first, batch.items().get(2).id());
+        assertFalse(batch.items().get(2).isLikedByCurrentUser());
+        assertEquals(List.of("999999"), batch.notFound());
+    }
+
     @Test
     public void testUnlikePost() {
         CreatePostDto dto = new CreatePostDto("Test post");
@@ -161,9 +215,67 @@ public class PostServiceTest {
         postService.createPost(new CreatePostDto("User1 post"), "user1");
         postService.createPost(new CreatePostDto("User2 post"), "user2");
 
-        List<PostDto> timeline = postService.getTimelinePosts("user1");
+        List<PostDto> timeline = postService.getTimelinePosts("user1", null, 20).items();
         // Timeline should show user's own posts (1) but not posts from unfollowed users
         assertEquals(1, timeline.size());
         assertEquals("User1 post", timeline.get(0).content());
     }
-} 
\ No newline at end of file
+
+    @Test
+    public void testHashtagsAreParsed() {
+        assertEquals(List.of("java", "spring_boot"), Hashtags.parse("#Java and #spring_boot, not c#sharp or #java again"));
+        assertTrue(Hashtags.parse("#" + "x".repeat(51)).isEmpty());
+        assertEquals("java", Hashtags.normalize("#JAVA"));
+        assertThrows(ResponseStatusException.class, () -> Hashtags.normalize("no spaces"));
+    }
+
+    @Test
+    public void testTagFeedPagesNewestFirst() {
+        List<Long> expected = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            expected.add(0, postService.createPost(new CreatePostDto("Post " + i + " #Relay"), "user1").id());
+        }
+        postService.createPost(new CreatePostDto("untagged relay post"), "user2");
+
+        List<Long> found = new ArrayList<>();
+        String cursor = null;
+        do {
+            PageDto<PostDto> page = postService.getTagPosts("relay", null, cursor, 2);
+            page.items().forEach(post -> found.add(post.id()));
+            cursor = page.nextCursor();
+        } while (cursor != null);
+
+        assertEquals(expected, found);
+    }
+
+    @Test
+    public void testDeletedPostsLeaveTheTagFeed() {
+        PostDto kept = postService.createPost(new CreatePostDto("#news one"), "user1");
+        PostDto deleted = postService.createPost(new CreatePostDto("#news two"), "user1");
+
+        postService.deletePost(deleted.id(), "user1");
+
+        List<PostDto> feed = postService.getTagPosts("#news", null, null, 20).items();
+        assertEquals(List.of(kept.id()), feed.stream().map(PostDto::id).toList());
+        assertEquals(1, postHashtagRepository.count());
+    }
+
+    @Test
+    public void testCommentCountFollowsCommentsAndDeleteTouchesOneRow() {
+        PostDto post = postService.createPost(new CreatePostDto("Discuss"), "user1");
+        CommentDto first = postService.addCommentToPost(post.id(), "user2", "first");
+        postService.addCommentToPost(post.id(), "user2", "second");
+        assertEquals(2, postService.getPosts(List.of(post.id()), "user2").items().get(0).commentCount());
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        postService.deleteComment(first.id(), "user2");
+
+        // Ownership lookup, the comment row and the post's count; no post or comment is loaded
+        assertEquals(3, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+        assertEquals(1, postService.getPosts(List.of(post.id()), "user2").items().get(0).commentCount());
+        assertEquals(List.of("second"), postService.getCommentsForPost(post.id(), null, 20).items().stream()
+                .map(CommentDto::content).toList());
+    }
+}
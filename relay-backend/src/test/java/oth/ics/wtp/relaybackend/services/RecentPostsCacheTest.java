@@ -0,0 +1,102 @@
+package oth.ics.wtp.relaybackend.services;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import oth.ics.wtp.relaybackend.dtos.CreatePostDto;
+import oth.ics.wtp.relaybackend.dtos.CreateUserDto;
+import oth.ics.wtp.relaybackend.dtos.PostDto;
+import oth.ics.wtp.relaybackend.entities.Post;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ActiveProfiles("test")
+@SpringBootTest(properties = {"relay.timeline.strategy=ring", "relay.timeline.ring.size=4"})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+public class RecentPostsCacheTest {
+    @Autowired private TimelineService timelineService;
+    @Autowired private PostService postService;
+    @Autowired private UserService userService;
+    @Autowired private FollowService followService;
+    @Autowired private MeterRegistry meterRegistry;
+    @Autowired private EntityManagerFactory entityManagerFactory;
+
+    @BeforeEach
+    public void setup() {
+        userService.createUser(new CreateUserDto("reader", "pass"));
+        userService.createUser(new CreateUserDto("author", "pass"));
+        userService.createUser(new CreateUserDto("other", "pass"));
+        followService.followUser("reader", "author");
+    }
+
+    @Test
+    public void testWarmTimelineIsMergedFromRings() {
+        PostDto first = postService.createPost(new CreatePostDto("first"), "author");
+        PostDto own = postService.createPost(new CreatePostDto("own"), "reader");
+        postService.createPost(new CreatePostDto("not followed"), "other");
+        timelineService.getTimeline("reader", null, 20);
+        assertEquals(1.0, count("cold"));
+
+        PostDto second = postService.createPost(new CreatePostDto("second"), "author");
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        List<Post> timeline = timelineService.getTimeline("reader", null, 20);
+
+        assertEquals(List.of(second.id(), own.id(), first.id()), ids(timeline));
+        assertEquals(1.0, count("hit"));
+        // Only the posts themselves; followed authors come from the follow graph
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void testDeletedPostsAreTrimmedFromRings() {
+        PostDto kept = postService.createPost(new CreatePostDto("kept"), "author");
+        PostDto deleted = postService.createPost(new CreatePostDto("deleted"), "author");
+        timelineService.getTimeline("reader", null, 20);
+
+        postService.deletePost(deleted.id(), "author");
+
+        assertEquals(List.of(kept.id()), ids(timelineService.getTimeline("reader", null, 20)));
+        assertEquals(1.0, count("hit"));
+    }
+
+    @Test
+    public void testPagingPastTheRingFallsBackToDatabase() {
+        List<Long> expected = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            expected.add(0, postService.createPost(new CreatePostDto("post " + i), "author").id());
+        }
+
+        List<Post> all = new ArrayList<>();
+        PageCursor after = null;
+        List<Post> page;
+        do {
+            page = timelineService.getTimeline("reader", after, 3);
+            all.addAll(page);
+            if (!page.isEmpty()) {
+                after = PageCursor.of(page.get(page.size() - 1).getCreatedAt(), page.get(page.size() - 1).getId());
+            }
+        } while (page.size() == 3);
+
+        assertEquals(expected, ids(all));
+        assertTrue(count("exhausted") >= 1.0);
+    }
+
+    private double count(String result) {
+        return meterRegistry.get("relay.timeline.ring").tag("result", result).counter().count();
+    }
+
+    private static List<Long> ids(List<Post> posts) {
+        return posts.stream().map(Post::getId).toList();
+    }
+}
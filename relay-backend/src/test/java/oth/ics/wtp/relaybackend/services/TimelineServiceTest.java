@@ -0,0 +1,123 @@
+package oth.ics.wtp.relaybackend.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import oth.ics.wtp.relaybackend.dtos.CreatePostDto;
+import oth.ics.wtp.relaybackend.dtos.CreateUserDto;
+import oth.ics.wtp.relaybackend.dtos.PostDto;
+import oth.ics.wtp.relaybackend.entities.Post;
+import oth.ics.wtp.relaybackend.repositories.TimelineEntryRepository;
+import oth.ics.wtp.relaybackend.repositories.TimelineStateRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ActiveProfiles("test")
+@SpringBootTest(properties = {"relay.timeline.fanout-threshold=1", "relay.timeline.capacity=3"})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+public class TimelineServiceTest {
+    @Autowired private TimelineService timelineService;
+    @Autowired private PostService postService;
+    @Autowired private UserService userService;
+    @Autowired private FollowService followService;
+    @Autowired private TimelineEntryRepository timelineEntryRepository;
+    @Autowired private TimelineStateRepository timelineStateRepository;
+    @Autowired private UserIds userIds;
+
+    @BeforeEach
+    public void setup() {
+        userService.createUser(new CreateUserDto("reader", "pass"));
+        userService.createUser(new CreateUserDto("author", "pass"));
+        userService.createUser(new CreateUserDto("other", "pass"));
+    }
+
+    @Test
+    public void testFirstReadMaterializesTimeline() {
+        followService.followUser("reader", "author");
+        postService.createPost(new CreatePostDto("before first read"), "author");
+        assertFalse(timelineStateRepository.existsById(userIds.require("reader")));
+
+        List<Post> timeline = timelineService.getTimeline("reader", null, 20);
+        assertEquals(1, timeline.size());
+        assertTrue(timelineStateRepository.existsById(userIds.require("reader")));
+    }
+
+    @Test
+    public void testNewPostsAreFannedOut() {
+        followService.followUser("reader", "author");
+        timelineService.getTimeline("reader", null, 20);
+
+        PostDto post = postService.createPost(new CreatePostDto("fanned out"), "author");
+        postService.createPost(new CreatePostDto("not followed"), "other");
+
+        List<Post> timeline = timelineService.getTimeline("reader", null, 20);
+        assertEquals(1, timeline.size());
+        assertEquals(post.id(), timeline.get(0).getId());
+    }
+
+    @Test
+    public void testFollowBackfillsAndUnfollowRemoves() {
+        postService.createPost(new CreatePostDto("older post"), "author");
+        timelineService.getTimeline("reader", null, 20);
+
+        followService.followUser("reader", "author");
+        assertEquals(1, timelineService.getTimeline("reader", null, 20).size());
+
+        followService.unfollowUser("reader", "author");
+        assertTrue(timelineService.getTimeline("reader", null, 20).isEmpty());
+    }
+
+    @Test
+    public void testHighFollowerAuthorsArePulledAtReadTime() {
+        followService.followUser("reader", "author");
+        followService.followUser("other", "author");
+        timelineService.getTimeline("reader", null, 20);
+
+        postService.createPost(new CreatePostDto("own post"), "reader");
+        PostDto pulled = postService.createPost(new CreatePostDto("from a popular author"), "author");
+
+        List<Post> timeline = timelineService.getTimeline("reader", null, 20);
+        assertEquals(2, timeline.size());
+        assertEquals(pulled.id(), timeline.get(0).getId());
+        assertEquals(1, timelineEntryRepository.count());
+    }
+
+    @Test
+    public void testPagingPastTheMaterializedHorizon() {
+        followService.followUser("reader", "author");
+        for (int i = 1; i <= 5; i++) {
+            postService.createPost(new CreatePostDto("Post " + i), "author");
+        }
+
+        List<String> contents = new ArrayList<>();
+        PageCursor cursor = null;
+        List<Post> page;
+        do {
+            page = timelineService.getTimeline("reader", cursor, 2);
+            page.forEach(post -> contents.add(post.getContent()));
+            if (!page.isEmpty()) {
+                Post last = page.get(page.size() - 1);
+                cursor = PageCursor.of(last.getCreatedAt(), last.getId());
+            }
+        } while (!page.isEmpty());
+
+        assertEquals(List.of("Post 5", "Post 4", "Post 3", "Post 2", "Post 1"), contents);
+        assertTrue(timelineStateRepository.findById(userIds.require("reader")).orElseThrow().isTruncated());
+    }
+
+    @Test
+    public void testDeletedPostsLeaveTheTimeline() {
+        followService.followUser("reader", "author");
+        timelineService.getTimeline("reader", null, 20);
+        PostDto post = postService.createPost(new CreatePostDto("to delete"), "author");
+
+        postService.deletePost(post.id(), "author");
+        assertTrue(timelineService.getTimeline("reader", null, 20).isEmpty());
+    }
+}
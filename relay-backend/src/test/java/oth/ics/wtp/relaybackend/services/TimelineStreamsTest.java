@@ -0,0 +1,150 @@
+package oth.ics.wtp.relaybackend.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import oth.ics.wtp.relaybackend.dtos.CreatePostDto;
+import oth.ics.wtp.relaybackend.dtos.CreateUserDto;
+import oth.ics.wtp.relaybackend.dtos.PostDto;
+import oth.ics.wtp.relaybackend.entities.Post;
+import oth.ics.wtp.relaybackend.events.PostCreatedEvent;
+import oth.ics.wtp.relaybackend.repositories.PostRepository;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ActiveProfiles("test")
+@SpringBootTest(properties = "relay.stream.buffer-size=2")
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+public class TimelineStreamsTest {
+    @Autowired private TimelineStreams timelineStreams;
+    @Autowired private PostService postService;
+    @Autowired private UserService userService;
+    @Autowired private FollowService followService;
+    @Autowired private PostRepository postRepository;
+
+    @BeforeEach
+    public void setup() {
+        userService.createUser(new CreateUserDto("reader", "pass"));
+        userService.createUser(new CreateUserDto("author", "pass"));
+        userService.createUser(new CreateUserDto("other", "pass"));
+        followService.followUser("reader", "author");
+    }
+
+    @Test
+    public void testNewPostsReachConnectedFollowersOnly() {
+        RecordingEmitter reader = new RecordingEmitter();
+        RecordingEmitter author = new RecordingEmitter();
+        RecordingEmitter other = new RecordingEmitter();
+        timelineStreams.subscribe("reader", null, reader);
+        timelineStreams.subscribe("author", null, author);
+        timelineStreams.subscribe("other", null, other);
+
+        long id = post("live");
+
+        assertEquals(List.of("post:" + id), reader.events);
+        assertEquals(List.of("post:" + id), author.events);
+        assertTrue(other.events.isEmpty());
+    }
+
+    @Test
+    public void testLastEventIdResumesFromTimeline() {
+        long seen = post("seen");
+        long first = post("missed one");
+        long second = post("missed two");
+
+        RecordingEmitter resumed = new RecordingEmitter();
+        timelineStreams.subscribe("reader", seen, resumed);
+        assertEquals(List.of("post:" + first, "post:" + second), resumed.events);
+
+        // More missed posts than one buffer holds
+        RecordingEmitter tooFarBehind = new RecordingEmitter();
+        timelineStreams.subscribe("reader", seen - 1, tooFarBehind);
+        assertEquals(List.of("resync"), tooFarBehind.events);
+    }
+
+    @Test
+    public void testOverflowingBufferIsReplacedByResync() {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            ids.add(post("post " + i));
+        }
+        RecordingEmitter slow = new RecordingEmitter();
+        // While the first post is being written, three more arrive and overflow the buffer of two
+        slow.onFirstSend = () -> ids.subList(1, 4).forEach(this::publish);
+        timelineStreams.subscribe("reader", null, slow);
+
+        publish(ids.get(0));
+
+        assertEquals(List.of("post:" + ids.get(0), "resync", "post:" + ids.get(3)), slow.events);
+    }
+
+    @Test
+    public void testBrokenConnectionIsDropped() {
+        RecordingEmitter broken = new RecordingEmitter();
+        broken.failing = true;
+        timelineStreams.subscribe("reader", null, broken);
+        post("first");
+        broken.failing = false;
+
+        post("second");
+        timelineStreams.heartbeat();
+
+        assertTrue(broken.events.isEmpty());
+    }
+
+    private long post(String content) {
+        return postService.createPost(new CreatePostDto(content), "author").id();
+    }
+
+    private void publish(long postId) {
+        Post post = postRepository.findWithAuthorById(postId).orElseThrow();
+        timelineStreams.onPostCreated(new PostCreatedEvent(post.getId(), post.getAuthor().getId(),
+                post.getAuthor().getUsername(), post.getCreatedAt()));
+    }
+
+    /** Records what would be written: {@code name:id} per event, {@code resync}, or {@code heartbeat}. */
+    private static class RecordingEmitter extends SseEmitter {
+        final List<String> events = new ArrayList<>();
+        Runnable onFirstSend;
+        boolean failing;
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            if (failing) {
+                throw new IOException("Broken pipe");
+            }
+            StringBuilder text = new StringBuilder();
+            Object data = null;
+            for (var part : builder.build()) {
+                if (part.getData() instanceof String s) {
+                    text.append(s);
+                } else {
+                    data = part.getData();
+                }
+            }
+            if (data instanceof PostDto post) {
+                events.add("post:" + post.id());
+            } else if (text.toString().contains("event:resync")) {
+                events.add("resync");
+            } else if (text.toString().startsWith(":")) {
+                events.add("heartbeat");
+            } else {
+                throw new HttpMessageNotWritableException("Unexpected event " + text);
+            }
+            if (onFirstSend != null) {
+                Runnable hook = onFirstSend;
+                onFirstSend = null;
+                hook.run();
+            }
+        }
+    }
+}
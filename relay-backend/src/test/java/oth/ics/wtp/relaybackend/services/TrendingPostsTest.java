@@ -0,0 +1,115 @@
+package oth.ics.wtp.relaybackend.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import oth.ics.wtp.relaybackend.dtos.CreatePostDto;
+import oth.ics.wtp.relaybackend.dtos.CreateUserDto;
+import oth.ics.wtp.relaybackend.dtos.PageDto;
+import oth.ics.wtp.relaybackend.dtos.PostDto;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ActiveProfiles("test")
+@SpringBootTest(properties = "relay.trending.capacity=4")
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+public class TrendingPostsTest {
+    private static final long HOUR = Duration.ofHours(1).toMillis();
+
+    @Autowired private TrendingPosts trendingPosts;
+    @Autowired private PostService postService;
+    @Autowired private UserService userService;
+
+    @BeforeEach
+    public void setup() {
+        userService.createUser(new CreateUserDto("author", "pass"));
+        userService.createUser(new CreateUserDto("fan", "pass"));
+        userService.createUser(new CreateUserDto("other", "pass"));
+    }
+
+    @Test
+    public void testLikesAndCommentsRankPosts() {
+        long quiet = post("quiet");
+        long liked = post("liked");
+        long discussed = post("discussed");
+
+        postService.likePost(liked, "fan");
+        postService.likePost(discussed, "fan");
+        postService.addCommentToPost(discussed, "other", "nice");
+
+        assertEquals(List.of(discussed, liked), ids(postService.getTrendingPosts(null, null, 10)));
+
+        postService.unlikePost(liked, "fan");
+        postService.deletePost(discussed, "author");
+        assertTrue(ids(postService.getTrendingPosts(null, null, 10)).isEmpty());
+        assertFalse(trendingPosts.top(0, 10).contains(quiet));
+    }
+
+    @Test
+    public void testRecentEngagementOutranksOlderEngagement() {
+        long now = 100 * HOUR;
+        trendingPosts.add(1, 1, now - 3 * HOUR);
+        trendingPosts.add(1, 1, now - 3 * HOUR);
+        trendingPosts.add(1, 1, now - 3 * HOUR);
+        trendingPosts.add(2, 1, now);
+        // Three likes three half-lives ago weigh 3/8 of one like now
+        assertEquals(List.of(2L, 1L), trendingPosts.top(0, 10));
+
+        trendingPosts.add(1, 1, now);
+        assertEquals(List.of(1L, 2L), trendingPosts.top(0, 10));
+        assertEquals(List.of(2L), trendingPosts.top(1, 10));
+    }
+
+    @Test
+    public void testFullRankingEvictsTheLowestScore() {
+        long now = 100 * HOUR;
+        for (long id = 1; id <= 4; id++) {
+            trendingPosts.add(id, 1, now + id);
+        }
+        trendingPosts.add(4, 1, now + 4);
+
+        trendingPosts.add(5, 1, now + 5);
+        assertEquals(List.of(4L, 5L, 3L, 2L), trendingPosts.top(0, 10));
+
+        trendingPosts.add(6, 1, now - HOUR);
+        assertFalse(trendingPosts.top(0, 10).contains(6L));
+    }
+
+    @Test
+    public void testTrendingPagesByOffset() {
+        List<Long> expected = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            long id = post("post " + i);
+            for (int j = 0; j <= i; j++) {
+                postService.addCommentToPost(id, "fan", "comment " + j);
+            }
+            expected.add(0, id);
+        }
+
+        List<Long> found = new ArrayList<>();
+        String cursor = null;
+        do {
+            PageDto<PostDto> page = postService.getTrendingPosts("fan", cursor, 2);
+            found.addAll(ids(page));
+            cursor = page.nextCursor();
+        } while (cursor != null);
+
+        // Capacity 4: the least commented post made room for the others
+        assertEquals(expected.subList(0, 4), found);
+    }
+
+    private long post(String content) {
+        return postService.createPost(new CreatePostDto(content), "author").id();
+    }
+
+    private static List<Long> ids(PageDto<PostDto> page) {
+        return page.items().stream().map(PostDto::id).toList();
+    }
+}
@@ -0,0 +1,88 @@
+package oth.ics.wtp.relaybackend.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.server.ResponseStatusException;
+import oth.ics.wtp.relaybackend.dtos.CreatePostDto;
+import oth.ics.wtp.relaybackend.dtos.CreateUserDto;
+import oth.ics.wtp.relaybackend.dtos.TrendDto;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ActiveProfiles("test")
+@SpringBootTest(properties = {"relay.trends.queue-capacity=100", "relay.trends.candidates=8"})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+public class TrendingTagsTest {
+    private static final long HOUR = Duration.ofHours(1).toMillis();
+
+    @Autowired private TrendingTags trendingTags;
+    @Autowired private PostService postService;
+    @Autowired private UserService userService;
+
+    @BeforeEach
+    public void setup() {
+        userService.createUser(new CreateUserDto("author", "pass"));
+    }
+
+    @Test
+    public void testNewPostsAreCountedOnceDrained() {
+        postService.createPost(new CreatePostDto("#Java and #spring"), "author");
+        postService.createPost(new CreatePostDto("more #java"), "author");
+        assertTrue(trendingTags.top(TrendingTags.Window.HOUR, 10).isEmpty());
+
+        trendingTags.drain();
+
+        assertEquals(List.of(new TrendDto("java", 2), new TrendDto("spring", 1)),
+                trendingTags.top(TrendingTags.Window.HOUR, 10));
+        assertEquals(List.of(new TrendDto("java", 2)), trendingTags.top(TrendingTags.Window.DAY, 1));
+    }
+
+    @Test
+    public void testOldBucketsLeaveTheWindow() {
+        long now = 1000 * HOUR;
+        trendingTags.enqueue(now - 3 * HOUR, List.of("yesterday"));
+        trendingTags.enqueue(now - 10 * 60_000, List.of("recent"));
+        trendingTags.enqueue(now - 25 * HOUR, List.of("expired"));
+        trendingTags.drain();
+
+        assertEquals(List.of(new TrendDto("recent", 1)), trendingTags.top(TrendingTags.Window.HOUR, 10, now));
+        assertEquals(List.of(new TrendDto("recent", 1), new TrendDto("yesterday", 1)),
+                trendingTags.top(TrendingTags.Window.DAY, 10, now));
+        assertTrue(trendingTags.top(TrendingTags.Window.DAY, 10, now + 24 * HOUR).isEmpty());
+    }
+
+    @Test
+    public void testHeavyTagsSurviveManyDistinctTags() {
+        long now = 1000 * HOUR;
+        for (int i = 0; i < 90; i++) {
+            trendingTags.enqueue(now, i % 3 == 0 ? List.of("hot", "tag" + i) : List.of("tag" + i));
+            if (i % 10 == 9) {
+                trendingTags.drain();
+            }
+        }
+
+        TrendDto top = trendingTags.top(TrendingTags.Window.HOUR, 1, now).get(0);
+        assertEquals("hot", top.tag());
+        assertTrue(top.count() >= 30);
+        assertTrue(trendingTags.top(TrendingTags.Window.HOUR, 100, now).size() <= 8);
+    }
+
+    @Test
+    public void testFullQueueDropsInsteadOfBlocking() {
+        long now = 1000 * HOUR;
+        for (int i = 0; i < 150; i++) {
+            trendingTags.enqueue(now, List.of("flood"));
+        }
+        trendingTags.drain();
+
+        assertEquals(List.of(new TrendDto("flood", 100)), trendingTags.top(TrendingTags.Window.HOUR, 10, now));
+        assertThrows(ResponseStatusException.class, () -> TrendingTags.Window.of("7d"));
+    }
+}
@@ -1,5 +1,8 @@
 package oth.ics.wtp.relaybackend.services;
 
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -10,6 +13,7 @@ import oth.ics.wtp.relaybackend.dtos.*;
 import oth.ics.wtp.relaybackend.entities.User;
 import oth.ics.wtp.relaybackend.repositories.UserRepository;
 
+import java.util.Collections;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -21,6 +25,39 @@ public class UserServiceTest {
     @Autowired private UserService userService;
     @Autowired private UserRepository userRepository;
     @Autowired private FollowService followService;
+    @Autowired private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    public void testBatchLookupKeepsOrderAndMarksMissingUsers() {
+        userService.createUser(new CreateUserDto("carol", "pass"));
+        userService.createUser(new CreateUserDto("dave", "pass"));
+        userService.createUser(new CreateUserDto("erin", "pass"));
+        followService.followUser("erin", "dave");
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        BatchDto<UserDto> batch = userService.getUsers(List.of("dave", "nobody", "carol", "dave"), "erin");
+
+        assertEquals(2, statistics.getPrepareStatementCount());
+        assertEquals(4, batch.items().size());
+        assertEquals("dave", batch.items().get(0).username());
+        assertEquals(1, batch.items().get(0).followerCount());
+        assertTrue(batch.items().get(0).isFollowing());
+        assertNull(batch.items().get(1));
+        assertEquals("carol", batch.items().get(2).username());
+        assertFalse(batch.items().get(2).isFollowing());
+        assertEquals("dave", batch.items().get(3).username());
+        assertEquals(List.of("nobody"), batch.notFound());
+        // Without a viewer there is no follow state to report
+        assertNull(userService.getUsers(List.of("dave"), null).items().get(0).isFollowing());
+    }
+
+    @Test
+    public void testBatchSizeIsLimited() {
+        List<String> tooMany = Collections.nCopies(Batches.MAX_SIZE + 1, "someone");
+        assertThrows(ResponseStatusException.class, () -> userService.getUsers(tooMany, null));
+        assertThrows(ResponseStatusException.class, () -> userService.getUsers(List.of(), null));
+    }
 
     @Test
     public void testCreateUser() {
@@ -65,10 +102,10 @@ public class UserServiceTest {
         userService.createUser(new CreateUserDto("alex", "pass"));
         userService.createUser(new CreateUserDto("bob", "pass"));
 
-        List<UserSearchDto> results = userService.searchUsers("al", null);
+        List<UserSearchDto> results = userService.searchUsers("al", null, null, 20).items();
         assertEquals(2, results.size());
 
-        results = userService.searchUsers("b", null);
+        results = userService.searchUsers("b", null, null, 20).items();
         assertEquals(1, results.size());
         assertEquals("bob", results.get(0).username());
     }
@@ -80,7 +117,7 @@ public class UserServiceTest {
 
         followService.followUser("searcher", "target");
 
-        List<UserSearchDto> results = userService.searchUsers("target", "searcher");
+        List<UserSearchDto> results = userService.searchUsers("target", "searcher", null, 20).items();
         assertEquals(1, results.size());
         assertTrue(results.get(0).isFollowing());
     }
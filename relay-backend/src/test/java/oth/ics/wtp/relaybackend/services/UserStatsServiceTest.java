@@ -0,0 +1,108 @@
+package oth.ics.wtp.relaybackend.services;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+import oth.ics.wtp.relaybackend.dtos.CreatePostDto;
+import oth.ics.wtp.relaybackend.dtos.CreateUserDto;
+import oth.ics.wtp.relaybackend.dtos.UserDto;
+import oth.ics.wtp.relaybackend.repositories.UserStatsRepository;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ActiveProfiles("test")
+@SpringBootTest(properties = "relay.user-stats.recompute-batch-size=2")
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+public class UserStatsServiceTest {
+    @Autowired private UserStatsService userStatsService;
+    @Autowired private UserService userService;
+    @Autowired private AccountDeletions accountDeletions;
+    @Autowired private FollowService followService;
+    @Autowired private PostService postService;
+    @Autowired private UserStatsRepository userStatsRepository;
+    @Autowired private UserIds userIds;
+    @Autowired private EntityManager entityManager;
+    @Autowired private EntityManagerFactory entityManagerFactory;
+    @Autowired private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    public void setup() {
+        userService.createUser(new CreateUserDto("alice", "pass"));
+        userService.createUser(new CreateUserDto("bob", "pass"));
+        userService.createUser(new CreateUserDto("carol", "pass"));
+    }
+
+    @Test
+    public void testFollowsAndPostsAreCounted() {
+        followService.followUser("bob", "alice");
+        followService.followUser("carol", "alice");
+        followService.followUser("alice", "bob");
+        followService.unfollowUser("carol", "alice");
+        long postId = postService.createPost(new CreatePostDto("one"), "alice").id();
+        postService.createPost(new CreatePostDto("two"), "alice");
+        postService.deletePost(postId, "alice");
+
+        UserDto alice = userService.getUserByUsername("alice");
+        assertEquals(1, alice.followerCount());
+        assertEquals(1, alice.followingCount());
+        assertEquals(1, alice.postCount());
+        assertEquals(0, userService.getUserByUsername("carol").followingCount());
+    }
+
+    @Test
+    public void testProfileReadIsTwoPrimaryKeyLookups() {
+        followService.followUser("bob", "alice");
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        userService.getUserByUsername("alice");
+
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void testMissingRowIsCountedOnFirstUse() {
+        followService.followUser("bob", "alice");
+        userStatsRepository.deleteById(userIds.require("alice"));
+
+        followService.followUser("carol", "alice");
+
+        assertEquals(2, userStatsService.get(userIds.require("alice")).getFollowers());
+    }
+
+    @Test
+    public void testDeletedUserLeavesOtherCounters() {
+        followService.followUser("bob", "alice");
+        followService.followUser("alice", "carol");
+        Long alice = userIds.require("alice");
+
+        userService.deleteUser("alice");
+        accountDeletions.run();
+
+        assertEquals(0, userStatsService.get(userIds.require("bob")).getFollowing());
+        assertEquals(0, userStatsService.get(userIds.require("carol")).getFollowers());
+        assertFalse(userStatsRepository.existsById(alice));
+    }
+
+    @Test
+    public void testRecomputeAllRepairsDrift() {
+        followService.followUser("bob", "alice");
+        transactionTemplate.executeWithoutResult(status -> entityManager
+                .createNativeQuery("UPDATE user_stats SET followers = 42, posts = 7")
+                .executeUpdate());
+
+        assertEquals(3, userStatsService.recomputeAll());
+
+        assertEquals(1, userStatsService.get(userIds.require("alice")).getFollowers());
+        assertEquals(0, userStatsService.get(userIds.require("alice")).getPosts());
+        assertEquals(0, userStatsService.get(userIds.require("bob")).getFollowers());
+    }
+}
@@ -0,0 +1,73 @@
+package oth.ics.wtp.relaybackend.services;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import oth.ics.wtp.relaybackend.dtos.CreateUserDto;
+import oth.ics.wtp.relaybackend.dtos.PageDto;
+import oth.ics.wtp.relaybackend.dtos.UserSearchDto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ActiveProfiles("test")
+@SpringBootTest
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+public class UsernameIndexTest {
+    @Autowired private UsernameIndex usernameIndex;
+    @Autowired private UserService userService;
+    @Autowired private EntityManagerFactory entityManagerFactory;
+
+    @BeforeEach
+    public void setup() {
+        for (String name : List.of("anna", "Annika", "anton", "ben", "ann")) {
+            userService.createUser(new CreateUserDto(name, "pass"));
+        }
+    }
+
+    @Test
+    public void testPrefixMatchIgnoresCase() {
+        assertEquals(List.of("ann", "anna", "Annika"), usernameIndex.search("ANN", null, 10));
+        assertEquals(List.of("anton"), usernameIndex.search("ant", null, 10));
+        assertTrue(usernameIndex.search("nn", null, 10).isEmpty());
+    }
+
+    @Test
+    public void testSearchPagesThroughMatches() {
+        List<String> found = new ArrayList<>();
+        String cursor = null;
+        do {
+            PageDto<UserSearchDto> page = userService.searchUsers("an", null, cursor, 2);
+            page.items().forEach(user -> found.add(user.username()));
+            cursor = page.nextCursor();
+        } while (cursor != null);
+
+        assertEquals(List.of("ann", "anna", "Annika", "anton"), found);
+    }
+
+    @Test
+    public void testDeletedUsersLeaveTheIndex() {
+        userService.deleteUser("anna");
+
+        assertEquals(List.of("ann", "Annika"), usernameIndex.search("ann", null, 10));
+    }
+
+    @Test
+    public void testSearchPageIsOneQuery() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        userService.searchUsers("a", null, null, 20);
+
+        // Only the matched users' rows; the matching itself never reaches the database
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+}
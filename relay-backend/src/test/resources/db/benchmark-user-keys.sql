@@ -0,0 +1,118 @@
+-- Compares username keys with surrogate user ids on a seeded copy of the schema.
+-- Works in a scratch schema and leaves the application's tables alone:
+--   psql "$DB_URL" -v ON_ERROR_STOP=1 -f benchmark-user-keys.sql
+-- Seeds the username-keyed layout, reports index sizes and the timeline query plan, then runs
+-- the production migration and reports the same for the id-keyed layout.
+
+\set users 20000
+\set follows_per_user 100
+\set posts_per_user 25
+\set likes_per_user 200
+
+DROP SCHEMA IF EXISTS relay_bench CASCADE;
+CREATE SCHEMA relay_bench;
+SET search_path = relay_bench;
+
+-- Layout before the migration, as created by Hibernate for the username-keyed entities
+CREATE TABLE relay_users (
+    username VARCHAR(50) PRIMARY KEY,
+    hashed_password VARCHAR(255) NOT NULL,
+    full_name VARCHAR(100),
+    email VARCHAR(100),
+    biography VARCHAR(500),
+    registered_at TIMESTAMP(6) NOT NULL
+);
+CREATE TABLE posts (
+    id BIGSERIAL PRIMARY KEY,
+    content VARCHAR(280) NOT NULL,
+    created_at TIMESTAMP(6) NOT NULL,
+    like_count BIGINT NOT NULL DEFAULT 0,
+    author_username VARCHAR(50) NOT NULL REFERENCES relay_users (username)
+);
+CREATE INDEX idx_post_created ON posts (created_at DESC);
+CREATE INDEX idx_post_author_created ON posts (author_username, created_at DESC, id DESC);
+CREATE TABLE comments (
+    id BIGSERIAL PRIMARY KEY,
+    post_id BIGINT REFERENCES posts (id),
+    user_username VARCHAR(50) REFERENCES relay_users (username),
+    content VARCHAR(500) NOT NULL,
+    created_at TIMESTAMP(6) NOT NULL
+);
+CREATE TABLE likes (
+    post_id BIGINT NOT NULL REFERENCES posts (id),
+    user_username VARCHAR(50) NOT NULL REFERENCES relay_users (username),
+    liked_at TIMESTAMP(6) NOT NULL,
+    PRIMARY KEY (post_id, user_username)
+);
+CREATE TABLE user_follows (
+    followed_username VARCHAR(50) NOT NULL REFERENCES relay_users (username),
+    follower_username VARCHAR(50) NOT NULL REFERENCES relay_users (username),
+    followed_at TIMESTAMP(6) NOT NULL,
+    PRIMARY KEY (followed_username, follower_username),
+    UNIQUE (follower_username, followed_username)
+);
+CREATE TABLE user_stats (
+    username VARCHAR(50) PRIMARY KEY,
+    followers BIGINT NOT NULL,
+    following BIGINT NOT NULL,
+    posts BIGINT NOT NULL
+);
+
+-- Realistic username lengths; follows and likes are spread pseudo-randomly
+INSERT INTO relay_users (username, hashed_password, registered_at)
+SELECT 'relay_member_' || lpad(n::text, 8, '0'), 'x', now() - ((:users - n) || ' seconds')::interval
+FROM generate_series(1, :users) n;
+
+INSERT INTO user_follows (follower_username, followed_username, followed_at)
+SELECT DISTINCT 'relay_member_' || lpad(u::text, 8, '0'),
+       'relay_member_' || lpad((1 + (u * 7919 + k * 104729) % :users)::text, 8, '0'), now()
+FROM generate_series(1, :users) u, generate_series(1, :follows_per_user) k
+WHERE 1 + (u * 7919 + k * 104729) % :users <> u;
+
+INSERT INTO posts (content, created_at, author_username)
+SELECT 'post ' || k, now() - ((u * :posts_per_user + k) || ' seconds')::interval,
+       'relay_member_' || lpad(u::text, 8, '0')
+FROM generate_series(1, :users) u, generate_series(1, :posts_per_user) k;
+
+INSERT INTO likes (post_id, user_username, liked_at)
+SELECT DISTINCT 1 + (u * 15485863 + k * 32452843) % (:users * :posts_per_user),
+       'relay_member_' || lpad(u::text, 8, '0'), now()
+FROM generate_series(1, :users) u, generate_series(1, :likes_per_user) k;
+
+INSERT INTO user_stats (username, followers, following, posts)
+SELECT username, 0, 0, 0 FROM relay_users;
+
+VACUUM ANALYZE;
+
+\echo '== username keys: index sizes'
+SELECT indexrelid::regclass AS index, pg_size_pretty(pg_relation_size(indexrelid)) AS size
+FROM pg_index WHERE indrelid::regclass::text IN ('relay_users', 'posts', 'likes', 'user_follows', 'user_stats')
+ORDER BY 1;
+SELECT pg_size_pretty(SUM(pg_relation_size(indexrelid))) AS total_index_size
+FROM pg_index WHERE indrelid::regclass::text IN ('relay_users', 'posts', 'likes', 'user_follows', 'user_stats');
+
+\echo '== username keys: first timeline page (PostRepository.findFollowedUsersPosts)'
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT p.* FROM posts p
+WHERE p.author_username = 'relay_member_00001000'
+   OR p.author_username IN (SELECT f.followed_username FROM user_follows f WHERE f.follower_username = 'relay_member_00001000')
+ORDER BY p.created_at DESC, p.id DESC LIMIT 21;
+
+\ir ../../../main/resources/db/migrate-surrogate-user-ids.sql
+VACUUM ANALYZE;
+
+\echo '== surrogate ids: index sizes'
+SELECT indexrelid::regclass AS index, pg_size_pretty(pg_relation_size(indexrelid)) AS size
+FROM pg_index WHERE indrelid::regclass::text IN ('relay_users', 'posts', 'likes', 'user_follows', 'user_stats')
+ORDER BY 1;
+SELECT pg_size_pretty(SUM(pg_relation_size(indexrelid))) AS total_index_size
+FROM pg_index WHERE indrelid::regclass::text IN ('relay_users', 'posts', 'likes', 'user_follows', 'user_stats');
+
+\echo '== surrogate ids: first timeline page (PostRepository.findFollowedUsersPosts)'
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT p.* FROM posts p
+WHERE p.author_id = 1000
+   OR p.author_id IN (SELECT f.followed_id FROM user_follows f WHERE f.follower_id = 1000)
+ORDER BY p.created_at DESC, p.id DESC LIMIT 21;
+
+DROP SCHEMA relay_bench CASCADE;
@@ -34,7 +34,7 @@ function CommentList({ postId, currentUser, onCommentDeleted, refresh }) {
     useEffect(() => {
         setLoading(true)
         httpClient.get(`/posts/${postId}/comments`)
-            .then(setComments)
+            .then(page => setComments(page.items))
             .catch(err => setError(err.message))
             .finally(() => setLoading(false))
     }, [postId, refresh])
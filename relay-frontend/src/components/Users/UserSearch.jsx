@@ -24,7 +24,7 @@ function UserSearch() {
             try {
 
                 const results = await httpClient.findUsers(query)
-                setUsers(results || [])
+                setUsers(results?.items || [])
             } catch (err) {
                 console.error('Search failed:', err)
                 setSearchError(err.message)
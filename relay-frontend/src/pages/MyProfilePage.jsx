@@ -24,7 +24,7 @@ function MyProfilePage() {
 
     // Fetch posts for the current user
     const username = user?.username
-    const { data: posts, loading: postsLoading, error: postsError } = useApi(username ? `/posts/user/${username}` : null, [username])
+    const { data: postsPage, loading: postsLoading, error: postsError } = useApi(username ? `/posts/user/${username}` : null, [username])
 
     const fetchProfile = async () => {
         setLoading(true)
@@ -173,7 +173,7 @@ function MyProfilePage() {
             <h2 className="page-title" style={{ textAlign: 'left', margin: '2rem 0 1.5rem' }}>My Posts</h2>
             {postsLoading && <div className="loading">Loading posts...</div>}
             {postsError && <div className="error-message">Error loading posts: {postsError}</div>}
-            {!postsLoading && !postsError && <PostList posts={posts || []} emptyMessage="You haven't posted anything yet." key={posts?.length} />}
+            {!postsLoading && !postsError && <PostList posts={postsPage?.items || []} emptyMessage="You haven't posted anything yet." key={postsPage?.items.length} />}
         </div>
 
         {showFollowersFollowing && (
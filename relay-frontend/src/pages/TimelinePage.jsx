@@ -10,7 +10,7 @@ function TimelinePage() {
     const fetchPosts = async () => {
         try {
             const result = await call('/posts/timeline')
-            setPosts(result)
+            setPosts(result.items)
         } catch (err) {
             console.error('Failed to fetch timeline:', err)
         }
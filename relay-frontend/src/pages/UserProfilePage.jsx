@@ -12,7 +12,7 @@ function UserProfilePage() {
     const { user: currentUser } = useAuth()
 
     const { data: userInfo, loading: userLoading, error: userError } = useApi(`/users/${username}`)
-    const { data: posts, loading: postsLoading, error: postsError } = useApi(`/posts/user/${username}`)
+    const { data: postsPage, loading: postsLoading, error: postsError } = useApi(`/posts/user/${username}`)
 
     const [isFollowing, setIsFollowing] = useState(false)
     const [followLoading, setFollowLoading] = useState(false)
@@ -26,7 +26,7 @@ function UserProfilePage() {
 
             try {
                 const searchResults = await httpClient.findUsers(username)
-                const userResult = searchResults?.find(u => u.username === username)
+                const userResult = searchResults?.items?.find(u => u.username === username)
                 if (userResult) {
                     setIsFollowing(userResult.isFollowing)
                 }
@@ -152,7 +152,7 @@ function UserProfilePage() {
             )}
 
             <h2 className="page-title" style={{ textAlign: 'left', marginBottom: '1.5rem' }}>Posts by {username}</h2>
-            <PostList posts={posts || []} />
+            <PostList posts={postsPage?.items || []} />
 
             {showFollowersFollowing && (
                 <div className="modal-overlay" onClick={handleFollowersFollowingClose}>